@@ -1,6 +1,6 @@
 package controller;
 
-import model.Game; //game class from model package
+import engine.SimulationLoop; //runs the game model on its own thread
 import view.GUI; //gui from view package
 
 import java.awt.event.ActionEvent;
@@ -14,23 +14,24 @@ import java.awt.event.KeyEvent;
  * <p>
  * This is the controller in an MVC format. Checks for keyboard 'events'
  * to move the player and for action events like the restart button.
+ * Both are handed to the simulation loop, which applies them on its next tick.
  * </p>
  * 
  * @author Melangelo Guanzon
  * @version 1.0
  */
 public class GameController extends KeyAdapter implements ActionListener{
-    private Game game;
+    private SimulationLoop simulation;
     private GUI gui;
     
     /**
-     * Constructs a GameController with the game model and the view with GUI.
+     * Constructs a GameController with the simulation running the game and the view with GUI.
      * 
-     * @param game the game model to be controlled
+     * @param simulation the loop running the game model to be controlled
      * @param gui the GUI to be updated
      */
-    public GameController(Game game, GUI gui){
-        this.game = game;
+    public GameController(SimulationLoop simulation, GUI gui){
+        this.simulation = simulation;
         this.gui = gui;
     }
     
@@ -38,25 +39,44 @@ public class GameController extends KeyAdapter implements ActionListener{
      * Handles keyboard input.
      * 
      * <p>
-     * Updates the game model based on the clicked key then refreshes the GUI
-     * and checks the current game state.
+     * Queues the clicked key for the simulation, the GUI is refreshed and the game state
+     * checked once the tick that applies it is published. Holding a direction key repeats
+     * the move at the simulation's own pace, the OS key repeat is ignored.
+     * F3 shows the input latency overlay and F4 writes the latency histograms to a file.
      * </p>
      * 
      * @param e the keyEvent containing info about the key clicked.
      */
     @Override
     public void keyPressed(KeyEvent e){
+        if (e.getKeyCode() == KeyEvent.VK_F3){
+            gui.toggleLatencyOverlay(); //debug overlay with the input latency
+            return;
+        }
+        if (e.getKeyCode() == KeyEvent.VK_F4){
+            gui.dumpLatency();
+            return;
+        }
+
         char keyChar = e.getKeyChar();
-        game.processInput(keyChar); //update model
-        gui.refreshMap(); //update GUI
-        gui.checkGameState(); //check what is happening to player
+        simulation.press(keyChar, e.getWhen()); //update model on a coming tick
+    }
+
+    /**
+     * Handles a key being let go, which stops repeating its move.
+     * 
+     * @param e the keyEvent containing info about the key released.
+     */
+    @Override
+    public void keyReleased(KeyEvent e){
+        simulation.release(e.getKeyChar(), e.getWhen());
     }
 
     /**
      * Handles the restart button click event.
      * 
      * <p>
-     * Resets the game, then refreshes the map again, then makes sure
+     * Asks the simulation to reset the game, then makes sure
      * the focus is returned to the main window.
      * </p>
      * 
@@ -64,8 +84,7 @@ public class GameController extends KeyAdapter implements ActionListener{
      */
     @Override
     public void actionPerformed(ActionEvent e){
-        game.resetGame();
-        gui.refreshMap();
+        simulation.post(() -> simulation.getEngine().reset());
         gui.requestFocusToFrame();
     }
 
@@ -0,0 +1,77 @@
+package engine;
+
+import java.util.Random;
+
+/**
+ * Measures how many ticks per second the headless engine can run on the built-in levels.
+ *
+ * <p>
+ * Each iteration is one random move followed by one enemy tick. Whenever the player dies
+ * or finishes, the level is restarted so the run never stalls. The result for each level is
+ * printed after a short warm up so that the JIT has compiled the model.
+ * </p>
+ *
+ * <p>
+ * Running (from src): java engine.EngineBenchmark [seconds per level]
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.0
+ */
+public class EngineBenchmark {
+    private static final char[] MOVES = {'w', 'a', 's', 'd'};
+    private static final long WARMUP_ITERATIONS = 2_000_000;
+
+    /**
+     * Runs the benchmark on level 1 and level 2.
+     *
+     * @param args optional number of seconds to measure each level (default 3).
+     */
+    public static void main(String[] args){
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3.0;
+        HeadlessEngine engine = new HeadlessEngine();
+
+        for (int level = 1; level <= engine.getGame().getTotalLevels(); level++){
+            run(engine, level, WARMUP_ITERATIONS, 0);
+            long durationNanos = (long) (seconds * 1_000_000_000L);
+            long start = System.nanoTime();
+            long[] result = run(engine, level, Long.MAX_VALUE, durationNanos);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("Level %d: %,d ticks in %.2f s = %,.0f ticks/sec (%,d restarts)%n",
+                level, result[0], elapsed, result[0] / elapsed, result[1]);
+        }
+    }
+
+    /**
+     * Runs random iterations on a level until either limit is reached.
+     *
+     * @param engine the engine to drive.
+     * @param level the level number.
+     * @param maxIterations the maximum number of iterations.
+     * @param durationNanos the time limit in nanoseconds, 0 for no time limit.
+     * @return the number of iterations and the number of restarts.
+     */
+    private static long[] run(HeadlessEngine engine, int level, long maxIterations, long durationNanos){
+        Random random = new Random(level);
+        long deadline = System.nanoTime() + durationNanos;
+        long iterations = 0;
+        long restarts = 0;
+
+        engine.loadLevel(level);
+        while (iterations < maxIterations){
+            engine.step(MOVES[random.nextInt(MOVES.length)]);
+            if (engine.tick() != HeadlessEngine.Status.RUNNING){
+                engine.reset();
+                restarts++;
+            }
+            iterations++;
+
+            // checking the clock every iteration would cost more than the tick itself
+            if (durationNanos > 0 && (iterations & 0xFFF) == 0 && System.nanoTime() >= deadline){
+                break;
+            }
+        }
+        return new long[] {iterations, restarts};
+    }
+}
@@ -0,0 +1,684 @@
+package engine;
+
+import model.Cell;
+import model.Enemy;
+import model.Game;
+import model.Inventory;
+import model.Maps;
+import model.Player;
+
+import java.util.Arrays;
+
+/**
+ * Everything the renderer needs to draw one simulation tick, copied out of the model.
+ *
+ * <p>
+ * The model is only touched by the {@link SimulationLoop} thread. After every tick the loop copies
+ * the cells, the characters and the inventory counts into a snapshot and publishes it, so the
+ * renderer never reads the model while it is being changed. The positions of the characters on the
+ * previous tick are kept too, so the renderer can interpolate between the two ticks.
+ * </p>
+ *
+ * <p>
+ * Snapshots are reused through a {@link SnapshotBuffer}, and their arrays are only reallocated
+ * when the map or the number of enemies grows, so publishing a tick doesn't allocate.
+ * </p>
+ *
+ * <p>
+ * A map bigger than the view size is not copied whole: the snapshot holds a window of the view size
+ * starting at {@link #getOriginX()}, {@link #getOriginY()}. The window is a camera following the player,
+ * centred on them except near the edges of the map, where it stops so it never shows past them.
+ * Every coordinate of the snapshot is relative to the window, and only the enemies inside it are kept,
+ * found cell by cell through the map's occupancy index rather than by going over every enemy of the level,
+ * so taking and drawing a snapshot costs the same whatever the size of the map and its number of enemies.
+ * </p>
+ *
+ * <p>
+ * A snapshot also takes the map's dirty cells that are in its window (and empties the map's queue), so
+ * the renderer only redraws those. They're the cells changed since the snapshot the renderer last took:
+ * when the previous snapshot was never taken, its dirty cells are carried over into this one.
+ * When they're too many or the view changed, every cell counts as changed (see {@link #isAllDirty()}).
+ * The enemies are also kept per cell, so {@link #symbolAt(int, int)} doesn't go over all of them.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.4
+ */
+public class GameSnapshot {
+    private long tick;
+    private long tickNanos;
+    private long tickPeriodNanos;
+    private HeadlessEngine.Status status;
+    private long inputSequence;
+    private long inputNanos;
+    private long inputAppliedNanos;
+
+    private Maps map;
+    private int levelNumber;
+    private int requiredChips;
+    private long view; // changes whenever the window shows another map, moves or is resized
+    private int originX; // map position of the window's first row and column
+    private int originY;
+    private int width; // of the window
+    private int height;
+    private short[] cells;
+    private int[] dirtyCells; // window cells changed since the snapshot the renderer last took
+    private int dirtyCount;
+    private boolean isAllDirty; // too many changed, or the view changed, so every cell has to be redrawn
+    private char[] enemySymbols; // per window cell: the sprite of the enemy drawn there, 0 if none
+
+    private int playerX;
+    private int playerY;
+    private int previousPlayerX;
+    private int previousPlayerY;
+    private char playerSprite;
+    private int chips;
+    private int redKeys;
+    private int blueKeys;
+    private boolean hasFlippers;
+    private boolean hasFireBoots;
+    private boolean hasTeleportBoots;
+
+    private int enemyCount;
+    private int[] enemyIndex; // the enemy's position in the game's list, to match it with the previous tick
+    private int[] enemyX;
+    private int[] enemyY;
+    private int[] previousEnemyX;
+    private int[] previousEnemyY;
+    private char[] enemySprites;
+
+    /**
+     * Constructs an empty snapshot, filled by {@link #capture}.
+     */
+    GameSnapshot(){
+        this.cells = new short[0];
+        this.dirtyCells = new int[0];
+        this.enemySymbols = new char[0];
+        this.enemyIndex = new int[0];
+        this.enemyX = new int[0];
+        this.enemyY = new int[0];
+        this.previousEnemyX = new int[0];
+        this.previousEnemyY = new int[0];
+        this.enemySprites = new char[0];
+    }
+
+    /**
+     * Copies the state of the game into this snapshot.
+     *
+     * <p>
+     * pre-condition: called on the thread that owns the model
+     * post-condition: the snapshot describes the game as it is now, and the previous positions are
+     * taken from the given snapshot when it shows the same map and they're in the window (otherwise
+     * they equal the current ones), and the map has no dirty cells left
+     * </p>
+     *
+     * @param engine the engine running the game.
+     * @param previous the snapshot of the previous tick, null if there is none.
+     * @param isPreviousUnseen true if the renderer hasn't taken the previous snapshot (yet), so its dirty
+     * cells are still to be drawn.
+     * @param viewRows the most rows to copy.
+     * @param viewCols the most columns to copy.
+     * @param tick the simulation tick number.
+     * @param tickNanos the System.nanoTime of the tick.
+     * @param tickPeriodNanos the length of one tick.
+     * @param inputSequence the number of key presses applied so far.
+     * @param inputNanos when the last applied key was pressed.
+     * @param inputAppliedNanos when the model finished applying it.
+     */
+    void capture(HeadlessEngine engine, GameSnapshot previous, boolean isPreviousUnseen, int viewRows, int viewCols,
+            long tick, long tickNanos, long tickPeriodNanos, long inputSequence, long inputNanos, long inputAppliedNanos){
+        Game game = engine.getGame();
+        Player player = game.getPlayer();
+        Inventory inventory = player.getInventory();
+
+        this.tick = tick;
+        this.tickNanos = tickNanos;
+        this.tickPeriodNanos = tickPeriodNanos;
+        this.status = engine.getStatus();
+        this.inputSequence = inputSequence;
+        this.inputNanos = inputNanos;
+        this.inputAppliedNanos = inputAppliedNanos;
+
+        boolean sameMap = previous != null && previous.map == game.getMap();
+        this.map = game.getMap();
+        this.levelNumber = game.getCurrentLevel().getLevelNumber();
+        this.requiredChips = game.getCurrentLevel().getRequiredChips();
+        this.height = Math.min(map.getHeight(), viewRows);
+        this.width = Math.min(map.getWidth(), viewCols);
+        boolean sameSize = sameMap && previous.height == height && previous.width == width;
+        this.originX = windowOrigin(player.getXPosition(), height, map.getHeight());
+        this.originY = windowOrigin(player.getYPosition(), width, map.getWidth());
+        boolean sameView = sameSize && previous.originX == originX && previous.originY == originY;
+        this.view = previous == null ? 0 : sameView ? previous.view : previous.view + 1;
+        if (cells.length != width * height){
+            cells = new short[width * height];
+            dirtyCells = new int[width * height];
+            enemySymbols = new char[width * height];
+        }
+        map.copyCells(cells, originX, originY, height, width);
+        takeDirtyCells(previous, isPreviousUnseen && sameView);
+
+        this.playerX = player.getXPosition() - originX;
+        this.playerY = player.getYPosition() - originY;
+        this.playerSprite = player.getPlayerOrientation();
+        this.chips = player.getMicrochips();
+        this.redKeys = inventory.getRedKeys();
+        this.blueKeys = inventory.getBlueKeys();
+        this.hasFlippers = inventory.hasBoots("flippers");
+        this.hasFireBoots = inventory.hasBoots("fireboots");
+        this.hasTeleportBoots = inventory.hasBoots("teleportboots");
+
+        this.enemyCount = 0;
+        for (int x = 0; x < height; x++){
+            for (int y = 0; y < width; y++){
+                char symbol = 0;
+                int first = Integer.MAX_VALUE; // the enemy first in the game's list is the one drawn
+                for (Enemy enemy = map.getEnemyAt(originX + x, originY + y); enemy != null; enemy = map.getNextEnemyAt(enemy)){
+                    int number = map.getEnemyNumber(enemy);
+                    addEnemy(number, x, y, enemy.getSpriteChar());
+                    if (number < first){
+                        first = number;
+                        symbol = enemy.getSpriteChar();
+                    }
+                }
+                enemySymbols[x * width + y] = symbol;
+            }
+        }
+
+        // the previous positions, moved into this window, the enemies being in the same order on both ticks
+        int shiftX = sameMap ? previous.originX - originX : 0;
+        int shiftY = sameMap ? previous.originY - originY : 0;
+        this.previousPlayerX = sameMap ? previous.playerX + shiftX : playerX;
+        this.previousPlayerY = sameMap ? previous.playerY + shiftY : playerY;
+        if (!inWindow(previousPlayerX, previousPlayerY)){
+            previousPlayerX = playerX;
+            previousPlayerY = playerY;
+        }
+        int p = 0;
+        for (int i = 0; i < enemyCount; i++){
+            previousEnemyX[i] = enemyX[i];
+            previousEnemyY[i] = enemyY[i];
+            if (!sameMap){
+                continue;
+            }
+            while (p < previous.enemyCount && previous.enemyIndex[p] < enemyIndex[i]){
+                p++;
+            }
+            if (p < previous.enemyCount && previous.enemyIndex[p] == enemyIndex[i]
+                    && inWindow(previous.enemyX[p] + shiftX, previous.enemyY[p] + shiftY)){
+                previousEnemyX[i] = previous.enemyX[p] + shiftX;
+                previousEnemyY[i] = previous.enemyY[p] + shiftY;
+            }
+        }
+    }
+
+    /**
+     * Takes the map's dirty cells that are in the window, after the previous snapshot's when it wasn't
+     * seen, then empties the map's dirty queue.
+     *
+     * @param previous the snapshot of the previous tick.
+     * @param isCarried true if the previous snapshot wasn't seen and shows the same cells as this one.
+     */
+    private void takeDirtyCells(GameSnapshot previous, boolean isCarried){
+        this.dirtyCount = 0;
+        this.isAllDirty = previous == null || previous.view != view || map.isAllDirty() || (isCarried && previous.isAllDirty);
+        if (isCarried){
+            for (int n = 0; n < previous.dirtyCount && !isAllDirty; n++){
+                addDirty(previous.dirtyCells[n]);
+            }
+        }
+        for (int n = 0; n < map.getDirtyCount() && !isAllDirty; n++){
+            int x = map.getDirtyX(n) - originX;
+            int y = map.getDirtyY(n) - originY;
+            if (inWindow(x, y)){
+                addDirty(x * width + y);
+            }
+        }
+        map.clearDirty();
+    }
+
+    /**
+     * Adds a window cell to the dirty ones, once there are as many as the window has cells every cell
+     * counts as dirty instead (a cell may be added twice when carried over).
+     *
+     * @param cell the window cell, x * width + y.
+     */
+    private void addDirty(int cell){
+        if (dirtyCount == dirtyCells.length){
+            isAllDirty = true;
+            dirtyCount = 0;
+            return;
+        }
+        dirtyCells[dirtyCount++] = cell;
+    }
+
+    /**
+     * Adds an enemy in the window, keeping the enemies in the order of the game's list so they can be
+     * matched with the previous tick's (they were found in the order of the cells).
+     *
+     * @param index the enemy's position in the game's list.
+     * @param x its row in the window.
+     * @param y its column in the window.
+     * @param sprite the symbol of its sprite.
+     */
+    private void addEnemy(int index, int x, int y, char sprite){
+        if (enemyX.length == enemyCount){
+            grow(Math.max(4, 2 * enemyCount));
+        }
+        int i = enemyCount++;
+        for (; i > 0 && enemyIndex[i - 1] > index; i--){
+            enemyIndex[i] = enemyIndex[i - 1];
+            enemyX[i] = enemyX[i - 1];
+            enemyY[i] = enemyY[i - 1];
+            enemySprites[i] = enemySprites[i - 1];
+        }
+        enemyIndex[i] = index;
+        enemyX[i] = x;
+        enemyY[i] = y;
+        enemySprites[i] = sprite;
+    }
+
+    /**
+     * Places the window along one axis.
+     *
+     * @param player the player's position on the axis.
+     * @param view the window's size on the axis.
+     * @param size the map's size on the axis.
+     * @return the origin, so the window is centred on the player as far as the map allows.
+     */
+    private static int windowOrigin(int player, int view, int size){
+        return Math.max(0, Math.min(size - view, player - view / 2));
+    }
+
+    private boolean inWindow(int x, int y){
+        return x >= 0 && x < height && y >= 0 && y < width;
+    }
+
+    private void grow(int capacity){
+        enemyIndex = Arrays.copyOf(enemyIndex, capacity);
+        enemyX = Arrays.copyOf(enemyX, capacity);
+        enemyY = Arrays.copyOf(enemyY, capacity);
+        previousEnemyX = new int[capacity];
+        previousEnemyY = new int[capacity];
+        enemySprites = Arrays.copyOf(enemySprites, capacity);
+    }
+
+    /**
+     * Returns the symbol of what should be drawn at a cell, the topmost thing there wins
+     * (enemy, then player, door, item and finally the tile).
+     *
+     * @param x the x coordinate (row) of the cell.
+     * @param y the y coordinate (column) of the cell.
+     * @return the symbol used as key for the images.
+     */
+    public char symbolAt(int x, int y){
+        if (enemySymbols[x * width + y] != 0){
+            return enemySymbols[x * width + y];
+        }
+        if (playerX == x && playerY == y){
+            return playerSprite;
+        }
+
+        short cell = cells[x * width + y];
+        if (Cell.doorColor(cell) != Cell.NO_DOOR){
+            return Cell.doorSymbol(Cell.doorColor(cell));
+        }
+        if (Cell.itemKind(cell) != Cell.NO_ITEM && !Cell.isItemCollected(cell)){
+            return Cell.itemSymbol(Cell.itemKind(cell));
+        }
+        if (Cell.tileKind(cell) != Cell.NO_TILE){
+            return Cell.tileSymbol(Cell.tileKind(cell));
+        }
+        return '.';
+    }
+
+    /**
+     * Returns how far the given time is between this tick and the next, for interpolating positions.
+     *
+     * @param nowNanos the System.nanoTime of the frame being drawn.
+     * @return 0 at this tick up to 1 at the next one.
+     */
+    public double getInterpolation(long nowNanos){
+        double alpha = (double) (nowNanos - tickNanos) / tickPeriodNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * Returns the simulation tick this snapshot was taken at.
+     *
+     * @return tick number.
+     */
+    public long getTick(){
+        return tick;
+    }
+
+    /**
+     * Returns the System.nanoTime of the tick.
+     *
+     * @return tick time in nanoseconds.
+     */
+    public long getTickNanos(){
+        return tickNanos;
+    }
+
+    /**
+     * Returns the number of key presses applied up to this tick (auto repeats not counted),
+     * so the renderer can tell when a new one shows up.
+     *
+     * @return input sequence number.
+     */
+    public long getInputSequence(){
+        return inputSequence;
+    }
+
+    /**
+     * Returns when the last applied key was pressed.
+     *
+     * @return its System.nanoTime.
+     */
+    public long getInputNanos(){
+        return inputNanos;
+    }
+
+    /**
+     * Returns when the model finished applying the last key press.
+     *
+     * @return its System.nanoTime.
+     */
+    public long getInputAppliedNanos(){
+        return inputAppliedNanos;
+    }
+
+    /**
+     * Returns the status of the game at this tick.
+     *
+     * @return the status.
+     */
+    public HeadlessEngine.Status getStatus(){
+        return status;
+    }
+
+    /**
+     * Returns the map the snapshot was taken from, only to tell when the level changed.
+     * Its contents must not be read outside of the simulation thread, use the cells of the snapshot.
+     *
+     * @return the map of the level.
+     */
+    public Maps getMap(){
+        return map;
+    }
+
+    /**
+     * Returns the level number.
+     *
+     * @return level number.
+     */
+    public int getLevelNumber(){
+        return levelNumber;
+    }
+
+    /**
+     * Returns the chips needed to open the exit of the level.
+     *
+     * @return required chips.
+     */
+    public int getRequiredChips(){
+        return requiredChips;
+    }
+
+    /**
+     * Returns a number that changes whenever the snapshot's cells are for other map positions than the
+     * previous snapshot's (another level, or the window moved or was resized), so a renderer knows when
+     * it can't just redraw the cells that changed.
+     *
+     * @return the view number, only ever increasing.
+     */
+    public long getView(){
+        return view;
+    }
+
+    /**
+     * Checks if every cell has to be redrawn, rather than only the dirty ones: the view changed, or more
+     * cells changed than are worth going through one by one.
+     *
+     * @return true if every cell counts as dirty.
+     */
+    public boolean isAllDirty(){
+        return isAllDirty;
+    }
+
+    /**
+     * Returns the number of window cells changed since the snapshot the renderer last took.
+     *
+     * @return number of dirty cells, 0 when {@link #isAllDirty()}.
+     */
+    public int getDirtyCount(){
+        return dirtyCount;
+    }
+
+    /**
+     * Returns the row of a dirty cell.
+     *
+     * @param n which dirty cell, from 0 to getDirtyCount() - 1.
+     * @return dirty cell x.
+     */
+    public int getDirtyX(int n){
+        return dirtyCells[n] / width;
+    }
+
+    /**
+     * Returns the column of a dirty cell.
+     *
+     * @param n which dirty cell, from 0 to getDirtyCount() - 1.
+     * @return dirty cell y.
+     */
+    public int getDirtyY(int n){
+        return dirtyCells[n] % width;
+    }
+
+    /**
+     * Returns the map row shown at the window's row 0.
+     *
+     * @return window origin x.
+     */
+    public int getOriginX(){
+        return originX;
+    }
+
+    /**
+     * Returns the map column shown at the window's column 0.
+     *
+     * @return window origin y.
+     */
+    public int getOriginY(){
+        return originY;
+    }
+
+    /**
+     * Returns the window width (number of columns), the map width when it fits.
+     *
+     * @return width.
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the window height (number of rows), the map height when it fits.
+     *
+     * @return height.
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the packed cell at a position (see Cell for the layout).
+     *
+     * @param x the x coordinate (row).
+     * @param y the y coordinate (column).
+     * @return the packed cell.
+     */
+    public short getCell(int x, int y){
+        return cells[x * width + y];
+    }
+
+    /**
+     * Returns the player's row.
+     *
+     * @return player x.
+     */
+    public int getPlayerX(){
+        return playerX;
+    }
+
+    /**
+     * Returns the player's column.
+     *
+     * @return player y.
+     */
+    public int getPlayerY(){
+        return playerY;
+    }
+
+    /**
+     * Returns the player's row on the previous tick.
+     *
+     * @return previous player x.
+     */
+    public int getPreviousPlayerX(){
+        return previousPlayerX;
+    }
+
+    /**
+     * Returns the player's column on the previous tick.
+     *
+     * @return previous player y.
+     */
+    public int getPreviousPlayerY(){
+        return previousPlayerY;
+    }
+
+    /**
+     * Returns the symbol of the player's sprite.
+     *
+     * @return player sprite symbol.
+     */
+    public char getPlayerSprite(){
+        return playerSprite;
+    }
+
+    /**
+     * Returns the number of chips the player collected.
+     *
+     * @return chips collected.
+     */
+    public int getChips(){
+        return chips;
+    }
+
+    /**
+     * Returns the number of red keys held.
+     *
+     * @return red keys.
+     */
+    public int getRedKeys(){
+        return redKeys;
+    }
+
+    /**
+     * Returns the number of blue keys held.
+     *
+     * @return blue keys.
+     */
+    public int getBlueKeys(){
+        return blueKeys;
+    }
+
+    /**
+     * Checks if the player has the flippers.
+     *
+     * @return true if collected.
+     */
+    public boolean hasFlippers(){
+        return hasFlippers;
+    }
+
+    /**
+     * Checks if the player has the fire boots.
+     *
+     * @return true if collected.
+     */
+    public boolean hasFireBoots(){
+        return hasFireBoots;
+    }
+
+    /**
+     * Checks if the player has the teleport boots.
+     *
+     * @return true if collected.
+     */
+    public boolean hasTeleportBoots(){
+        return hasTeleportBoots;
+    }
+
+    /**
+     * Returns the number of enemies.
+     *
+     * @return enemy count.
+     */
+    public int getEnemyCount(){
+        return enemyCount;
+    }
+
+    /**
+     * Returns the row of an enemy.
+     *
+     * @param i the enemy, from 0 to getEnemyCount() - 1.
+     * @return enemy x.
+     */
+    public int getEnemyX(int i){
+        return enemyX[i];
+    }
+
+    /**
+     * Returns the column of an enemy.
+     *
+     * @param i the enemy, from 0 to getEnemyCount() - 1.
+     * @return enemy y.
+     */
+    public int getEnemyY(int i){
+        return enemyY[i];
+    }
+
+    /**
+     * Returns the row of an enemy on the previous tick.
+     *
+     * @param i the enemy, from 0 to getEnemyCount() - 1.
+     * @return previous enemy x.
+     */
+    public int getPreviousEnemyX(int i){
+        return previousEnemyX[i];
+    }
+
+    /**
+     * Returns the column of an enemy on the previous tick.
+     *
+     * @param i the enemy, from 0 to getEnemyCount() - 1.
+     * @return previous enemy y.
+     */
+    public int getPreviousEnemyY(int i){
+        return previousEnemyY[i];
+    }
+
+    /**
+     * Returns the symbol of an enemy's sprite.
+     *
+     * @param i the enemy, from 0 to getEnemyCount() - 1.
+     * @return enemy sprite symbol.
+     */
+    public char getEnemySprite(int i){
+        return enemySprites[i];
+    }
+}
@@ -0,0 +1,187 @@
+package engine;
+
+import model.Game;
+import model.Player;
+
+/**
+ * Runs the game model without any Swing or AWT components.
+ *
+ * <p>
+ * This wraps the {@link Game} with an explicit contract that mirrors what the GUI does:
+ * {@link #step(char)} is one key press (the controller's keyPressed) and {@link #tick()}
+ * is one firing of the enemy timer. Nothing here sleeps or waits, so bots, validators
+ * and load tests can drive the game as fast as the model allows.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class HeadlessEngine {
+
+    /**
+     * The state of the game after a step or a tick.
+     */
+    public enum Status {
+        /** The level is still being played. */
+        RUNNING,
+        /** The player collected all the chips and reached the exit, more levels remain. */
+        LEVEL_COMPLETE,
+        /** The player completed the last level. */
+        GAME_COMPLETE,
+        /** The player died and the level has to be restarted. */
+        DEAD,
+        /** The game was ended (the 'q' command). */
+        ENDED
+    }
+
+    private Game game;
+    private long stepCount;
+    private long tickCount;
+
+    /**
+     * Constructs an engine around a new game starting at level 1.
+     */
+    public HeadlessEngine(){
+        this(new Game());
+    }
+
+    /**
+     * Constructs an engine around an existing game.
+     *
+     * @param game the game model to drive.
+     */
+    public HeadlessEngine(Game game){
+        this.game = game;
+        this.stepCount = 0;
+        this.tickCount = 0;
+    }
+
+    /**
+     * Applies one player input, the same way a key press does in the GUI.
+     *
+     * <p>
+     * pre-condition: input is one of the commands understood by {@link Game#processInput(char)}
+     * post-condition: the model is updated and the resulting status is returned
+     * </p>
+     *
+     * <p>
+     * Does nothing while the level is not running (player dead, level completed or game ended), like
+     * {@link #tick()}, so a replay or a bot can't change the model after the level is over.
+     * Use {@link #reset()}, {@link #nextLevel()} or {@link #loadLevel(int)} to play on.
+     * </p>
+     *
+     * @param input the command character (w, a, s, d, r, q).
+     * @return the status of the game after the input.
+     */
+    public Status step(char input){
+        Status status = getStatus();
+        if (status != Status.RUNNING){
+            return status;
+        }
+
+        game.processInput(input);
+        stepCount++;
+        return getStatus();
+    }
+
+    /**
+     * Advances the enemies by one move and checks for collisions, the same way one
+     * firing of the GUI timer does.
+     *
+     * <p>
+     * Does nothing while the level is not running (player dead, level completed or game ended).
+     * </p>
+     *
+     * @return the status of the game after the tick.
+     */
+    public Status tick(){
+        Status status = getStatus();
+        if (status != Status.RUNNING){
+            return status;
+        }
+
+        game.updateEnemies();
+        game.checkCollisions();
+        tickCount++;
+        return getStatus();
+    }
+
+    /**
+     * Returns the current status of the game.
+     *
+     * @return the status.
+     */
+    public Status getStatus(){
+        Player player = game.getPlayer();
+
+        if (!game.isRunning()){
+            return Status.ENDED;
+        }
+        if (!player.isAlive()){
+            return Status.DEAD;
+        }
+        if (game.gameWinCondition(player)){
+            return Status.GAME_COMPLETE;
+        }
+        if (game.isLevelCompleted(player)){
+            return Status.LEVEL_COMPLETE;
+        }
+        return Status.RUNNING;
+    }
+
+    /**
+     * Loads and resets the specified level.
+     *
+     * <p>
+     * pre-condition: levelNumber is between 1 and the total number of levels
+     * post-condition: the level is reset and the player is at its start position
+     * </p>
+     *
+     * @param levelNumber the level to load.
+     */
+    public void loadLevel(int levelNumber){
+        game.loadLevel(levelNumber, true);
+    }
+
+    /**
+     * Moves on to the next level after a completed one.
+     */
+    public void nextLevel(){
+        game.nextLevel();
+    }
+
+    /**
+     * Restarts the current level.
+     */
+    public void reset(){
+        game.resetGame();
+    }
+
+    /**
+     * Returns the number of steps applied since the engine was created.
+     *
+     * @return step count.
+     */
+    public long getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Returns the number of ticks applied since the engine was created.
+     *
+     * @return tick count.
+     */
+    public long getTickCount(){
+        return tickCount;
+    }
+
+    /**
+     * Returns the game model driven by this engine.
+     *
+     * @return the game.
+     */
+    public Game getGame(){
+        return game;
+    }
+}
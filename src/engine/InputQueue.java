@@ -0,0 +1,238 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the player's input between the Swing thread and the simulation loop, and repeats a held
+ * direction key at a fixed pace.
+ *
+ * <p>
+ * Each key press is queued with the time it happened and the loop takes at most one command per tick,
+ * so the player moves at the same speed whatever the keyboard or OS repeat rate is. The queue is bounded:
+ * presses made while it's full are dropped rather than making the player walk on long after the keys
+ * were let go.
+ * </p>
+ *
+ * <p>
+ * While a direction key is held and nothing is queued, the move is repeated, first after the repeat delay
+ * and then every repeat interval (both in ticks). The key repeat of the OS is ignored: a press of a key
+ * that is already held is not a new press, and neither is a release immediately followed by a press of the
+ * same key at the same event time (the way X11 reports auto repeat).
+ * </p>
+ *
+ * <p>
+ * The press, release and submit methods may be called from any thread, {@link #take()} only from the loop.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public class InputQueue {
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private static final String DIRECTIONS = "wasd";
+    private static final int KEY_MASK = 0xFFFF;
+    private static final int GENERATION_SHIFT = 16;
+
+    // queued commands, a ring buffer guarded by this
+    private char[] commands;
+    private long[] pressNanos;
+    private int head;
+    private int size;
+    private long dropped;
+
+    // held direction keys, most recent last, guarded by this
+    private ArrayList<Character> held;
+    private long[] releaseWhen; // event time of the last release of each direction, to spot OS repeat
+    private long generation;
+    private AtomicLong hold; // generation << 16 | the direction being held (0 if none), read by the loop
+
+    // only used by the loop
+    private long seenGeneration;
+    private int countdown;
+    private int repeatDelayTicks;
+    private int repeatIntervalTicks;
+    private long takenNanos;
+    private LatencyHistogram latency; // from the key press to the tick that applied it
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the number of commands that can be queued.
+     * @param repeatDelayTicks ticks from a press to the first repeat, 0 to not repeat.
+     * @param repeatIntervalTicks ticks between repeats.
+     */
+    public InputQueue(int capacity, int repeatDelayTicks, int repeatIntervalTicks){
+        this.commands = new char[capacity];
+        this.pressNanos = new long[capacity];
+        this.held = new ArrayList<>();
+        this.releaseWhen = new long[DIRECTIONS.length()];
+        this.hold = new AtomicLong();
+        this.repeatDelayTicks = repeatDelayTicks;
+        this.repeatIntervalTicks = repeatIntervalTicks;
+        this.latency = new LatencyHistogram(100_000, 10_000); // 0.1 ms buckets up to 1 s
+    }
+
+    /**
+     * Queues a command that isn't a held key (e.g. from a bot or a button).
+     *
+     * @param command the command character (w, a, s, d, r, q).
+     * @param nanos the System.nanoTime the command was given.
+     * @return false if the queue was full and the command was dropped.
+     */
+    public synchronized boolean submit(char command, long nanos){
+        if (size == commands.length){
+            dropped++;
+            return false;
+        }
+        int tail = (head + size) % commands.length;
+        commands[tail] = command;
+        pressNanos[tail] = nanos;
+        size++;
+        return true;
+    }
+
+    /**
+     * Handles a key being pressed.
+     *
+     * @param key the key character.
+     * @param nanos the System.nanoTime of the press.
+     * @param when the event time of the press (KeyEvent.getWhen()).
+     */
+    public synchronized void press(char key, long nanos, long when){
+        key = Character.toLowerCase(key);
+        int direction = DIRECTIONS.indexOf(key);
+        if (direction < 0){
+            submit(key, nanos);
+            return;
+        }
+        if (held.contains(key)){
+            return; // OS repeat while held
+        }
+
+        held.add(key);
+        if (when == releaseWhen[direction]){
+            // released and pressed again at the same instant: OS repeat, keep the same hold
+            hold.set(generation << GENERATION_SHIFT | key);
+            return;
+        }
+        generation++;
+        hold.set(generation << GENERATION_SHIFT | key);
+        submit(key, nanos);
+    }
+
+    /**
+     * Handles a key being released. If other direction keys are still held, the most recently pressed
+     * one is repeated from then on.
+     *
+     * @param key the key character.
+     * @param when the event time of the release (KeyEvent.getWhen()).
+     */
+    public synchronized void release(char key, long when){
+        key = Character.toLowerCase(key);
+        int direction = DIRECTIONS.indexOf(key);
+        if (direction < 0 || !held.remove((Character) key)){
+            return;
+        }
+        releaseWhen[direction] = when;
+
+        if (held.isEmpty()){
+            hold.set(generation << GENERATION_SHIFT); // same generation, in case the OS presses it again
+        }
+        else {
+            generation++;
+            hold.set(generation << GENERATION_SHIFT | held.get(held.size() - 1));
+        }
+    }
+
+    /**
+     * Forgets the held keys, e.g. when the window loses focus and their releases won't arrive.
+     */
+    public synchronized void releaseAll(){
+        held.clear();
+        generation++;
+        hold.set(generation << GENERATION_SHIFT);
+    }
+
+    /**
+     * Returns the command to apply on this tick: the oldest queued one, or else the held direction if
+     * it's time to repeat it (only called by the loop, once per tick).
+     *
+     * @return the command, 0 if there's none this tick.
+     */
+    public char take(){
+        long state = hold.get();
+        char direction = (char) (state & KEY_MASK);
+        if ((state >>> GENERATION_SHIFT) != seenGeneration){
+            seenGeneration = state >>> GENERATION_SHIFT;
+            countdown = repeatDelayTicks;
+        }
+
+        synchronized (this){
+            if (size > 0){
+                char command = commands[head];
+                takenNanos = pressNanos[head];
+                head = (head + 1) % commands.length;
+                size--;
+                latency.record(System.nanoTime() - takenNanos);
+                return command;
+            }
+        }
+
+        if (direction != 0 && repeatDelayTicks > 0 && --countdown <= 0){
+            countdown = repeatIntervalTicks;
+            takenNanos = 0;
+            return direction;
+        }
+        return 0;
+    }
+
+    /**
+     * Drops everything queued (e.g. while the level isn't running), held keys stay held.
+     */
+    public synchronized void clear(){
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns when the key behind the last command taken was pressed.
+     *
+     * @return its System.nanoTime, 0 if the command was an auto repeat.
+     */
+    public long getTakenNanos(){
+        return takenNanos;
+    }
+
+    /**
+     * Changes the auto repeat pace (only called before the loop starts or from a posted command).
+     *
+     * @param repeatDelayTicks ticks from a press to the first repeat, 0 to not repeat.
+     * @param repeatIntervalTicks ticks between repeats.
+     */
+    public void setAutoRepeat(int repeatDelayTicks, int repeatIntervalTicks){
+        this.repeatDelayTicks = repeatDelayTicks;
+        this.repeatIntervalTicks = Math.max(1, repeatIntervalTicks);
+    }
+
+    /**
+     * Returns the number of commands dropped because the queue was full.
+     *
+     * @return dropped count.
+     */
+    public synchronized long getDroppedCount(){
+        return dropped;
+    }
+
+    /**
+     * Returns the time from key presses to the ticks that applied them.
+     * Read it after the loop stopped for exact numbers.
+     *
+     * @return the latency histogram.
+     */
+    public LatencyHistogram getLatency(){
+        return latency;
+    }
+}
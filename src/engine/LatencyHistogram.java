@@ -0,0 +1,137 @@
+package engine;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Counts durations into fixed width buckets so percentiles can be read without keeping every sample.
+ *
+ * <p>
+ * Recording is a single array increment, cheap enough to do on every tick. Durations past the last
+ * bucket are counted in it and still reach the maximum. Only one thread should record, other threads
+ * reading the results may see them a few samples behind.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.0
+ */
+public class LatencyHistogram {
+    private long bucketNanos;
+    private long[] counts;
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * Constructs an empty histogram.
+     *
+     * @param bucketNanos the width of one bucket in nanoseconds.
+     * @param buckets the number of buckets, so durations up to bucketNanos * buckets are told apart.
+     */
+    public LatencyHistogram(long bucketNanos, int buckets){
+        this.bucketNanos = bucketNanos;
+        this.counts = new long[buckets];
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values count as 0.
+     */
+    public void record(long nanos){
+        if (nanos < 0){
+            nanos = 0;
+        }
+        int bucket = (int) Math.min(counts.length - 1, nanos / bucketNanos);
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos){
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Returns the duration below which the given fraction of the samples fall.
+     *
+     * @param fraction from 0 to 1, e.g. 0.99 for the 99th percentile.
+     * @return the upper edge of the bucket holding that sample (at most the maximum), 0 if empty.
+     */
+    public long getPercentile(double fraction){
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if (seen >= rank && seen > 0){
+                return Math.min(maxNanos, (i + 1) * bucketNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Returns the number of samples at or above a duration.
+     *
+     * @param nanos the threshold in nanoseconds, rounded down to a bucket edge.
+     * @return samples in the buckets from the threshold on.
+     */
+    public long getCountAtLeast(long nanos){
+        long total = 0;
+        for (int i = (int) Math.min(counts.length - 1, nanos / bucketNanos); i < counts.length; i++){
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return sample count.
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * Returns the mean duration.
+     *
+     * @return mean in nanoseconds, 0 if empty.
+     */
+    public long getMean(){
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Returns the longest duration recorded.
+     *
+     * @return maximum in nanoseconds.
+     */
+    public long getMax(){
+        return maxNanos;
+    }
+
+    /**
+     * Writes the summary and every non empty bucket, one "upper edge in ms" "count" line each.
+     *
+     * @param out where to write.
+     */
+    public void print(PrintWriter out){
+        out.printf("# count %d, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", count, getMean() / 1e6,
+            getPercentile(0.5) / 1e6, getPercentile(0.99) / 1e6, maxNanos / 1e6);
+        for (int i = 0; i < counts.length; i++){
+            if (counts[i] > 0){
+                out.printf("%.3f %d%n", (i + 1) * bucketNanos / 1e6, counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Forgets every sample.
+     */
+    public void reset(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+}
@@ -0,0 +1,307 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import model.ChunkedMaps;
+import model.DatLevelSource;
+import model.Game;
+import model.Level;
+import model.LevelSource;
+import model.Maps;
+import model.PackedLevelSource;
+import model.Player;
+import model.TextLevelSource;
+import model.WorldSource;
+
+/**
+ * Plays small made-up levels headless and checks the game does what it should, for the bugs that were
+ * found once so they don't come back.
+ *
+ * <p>
+ * Each check prints ok or FAILED with what went wrong, and the program exits with status 1 if any failed.
+ * </p>
+ *
+ * <p>
+ * Running (from src): java engine.RegressionCheck
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.3
+ */
+public class RegressionCheck {
+    private static int failures = 0;
+
+    /**
+     * Runs every check.
+     *
+     * @param args not used.
+     * @throws IOException if a made-up level can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        edgeMoves();
+        datEdgeMoves();
+        datThinWalls();
+        worldEdges();
+        worldRebuild();
+        worldMemory();
+        packedLayouts();
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks FAILED");
+        if (failures > 0){
+            System.exit(1);
+        }
+    }
+
+    /**
+     * A level needn't have a wall around it: moving off its edge leaves the player where they are.
+     */
+    private static void edgeMoves() throws IOException {
+        HeadlessEngine engine = engine("S.E\n...\n");
+        Player player = engine.getGame().getPlayer();
+        for (char move : new char[] {'w', 'a'}){
+            HeadlessEngine.Status status;
+            try {
+                status = engine.step(move);
+            } catch (RuntimeException e){
+                fail("edge move '" + move + "' on a level with no wall around it", e.toString());
+                return;
+            }
+            check("edge move '" + move + "' keeps the player at the start", status == HeadlessEngine.Status.RUNNING
+                && player.getXPosition() == 0 && player.getYPosition() == 0, "at " + player.getXPosition() + ", "
+                + player.getYPosition() + " " + status);
+        }
+        engine.step('s');
+        engine.step('s'); // off the bottom edge
+        check("edge move 's' keeps the player on the last row", player.getXPosition() == 1, "row " + player.getXPosition());
+        engine.step('w');
+        engine.step('d');
+        HeadlessEngine.Status status = engine.step('d');
+        check("the exit on the edge completes the level", status == HeadlessEngine.Status.GAME_COMPLETE, status.toString());
+    }
+
+    /**
+     * An imported level set's 32 x 32 maps have no wall around them either: Chip starts in a corner, walks
+     * into both edges next to it, then along the edges to the exit in the opposite corner.
+     */
+    private static void datEdgeMoves() throws IOException {
+        int size = 32;
+        byte[] top = new byte[size * size];
+        top[top.length - 1] = 0x6E; // Chip facing south, bottom right
+        top[0] = 0x15; // exit, top left
+        HeadlessEngine engine = new HeadlessEngine(new Game(new DatLevelSource(datLevel(top), "check.dat")));
+        engine.loadLevel(1);
+        Player player = engine.getGame().getPlayer();
+
+        String moves = "sd" + "w".repeat(size) + "a".repeat(size - 1);
+        HeadlessEngine.Status status = HeadlessEngine.Status.RUNNING;
+        for (int i = 0; i < moves.length(); i++){
+            try {
+                status = engine.step(moves.charAt(i));
+            } catch (RuntimeException e){
+                fail("edge move '" + moves.charAt(i) + "' on an imported 32 x 32 level", "at " + player.getXPosition()
+                    + ", " + player.getYPosition() + ": " + e);
+                return;
+            }
+        }
+        check("an imported level is played up to its edges", status == HeadlessEngine.Status.GAME_COMPLETE,
+            "at " + player.getXPosition() + ", " + player.getYPosition() + " " + status);
+    }
+
+    /**
+     * The thin walls of an imported level set, which this game doesn't have, become walls rather than floor.
+     */
+    private static void datThinWalls() throws IOException {
+        byte[] top = new byte[32 * 32];
+        top[top.length - 1] = 0x6E; // Chip
+        top[0] = 0x15; // exit
+        int[] codes = {0x06, 0x07, 0x08, 0x09, 0x30};
+        for (int n = 0; n < codes.length; n++){
+            top[32 + n] = (byte) codes[n]; // the second row
+        }
+        char[][] layout = new DatLevelSource(datLevel(top), "check.dat").getLayout(1);
+        for (int n = 0; n < codes.length; n++){
+            check(String.format("thin wall 0x%02X is imported as a wall", codes[n]), layout[1][n] == '#',
+                "imported as '" + layout[1][n] + "'");
+        }
+    }
+
+    /**
+     * A chunked map refuses cells off its edges instead of reading the row before or after, or a chunk
+     * the world doesn't have.
+     */
+    private static void worldEdges() throws IOException {
+        File file = File.createTempFile("check", WorldSource.EXTENSION);
+        file.deleteOnExit();
+        WorldSource.generate(file, 100, 70, 1);
+        Maps map = new WorldSource(file.getPath()).createLevel(1).getMap();
+        int[][] positions = {{-1, 0}, {0, -1}, {69, 100}, {70, 0}, {5, -1}};
+        for (int[] position : positions){
+            String name = "cell " + position[0] + ", " + position[1] + " of a 100 x 70 world";
+            try {
+                map.getCell(position[0], position[1]);
+                fail(name, "read without an error");
+            } catch (IndexOutOfBoundsException e){
+                check(name + " is off the map", true, "");
+            } catch (RuntimeException e){
+                fail(name, e.toString());
+            }
+        }
+        check("the last cell of a world can be read", map.isValidPosition(69, 99) && map.getTile(69, 99) != null, "");
+    }
+
+    /**
+     * A world's level has no layout to rebuild from: building its map again resets it, and clearing the map
+     * reads its cells from the world again.
+     */
+    private static void worldRebuild() throws IOException {
+        File file = File.createTempFile("check", WorldSource.EXTENSION);
+        file.deleteOnExit();
+        WorldSource.generate(file, 100, 70, 1);
+        Level level = new WorldSource(file.getPath()).createLevel(1);
+        Maps map = level.getMap();
+        int chipX = -1;
+        int chipY = -1;
+        for (int x = 0; x < map.getHeight() && chipX < 0; x++){
+            for (int y = 0; y < map.getWidth(); y++){
+                if (map.getItemAt(x, y) != null){
+                    chipX = x;
+                    chipY = y;
+                    break;
+                }
+            }
+        }
+        if (chipX < 0){
+            fail("a world with a microchip to collect", "none was generated");
+            return;
+        }
+
+        try {
+            map.removeItem(chipX, chipY);
+            level.createMap();
+            check("building a world's map again puts its items back", map.getItemAt(chipX, chipY) != null, "still collected");
+            map.removeItem(chipX, chipY);
+            map.clear();
+            check("clearing a world's map reads it from the world again", map.getItemAt(chipX, chipY) != null, "still collected");
+        } catch (RuntimeException e){
+            fail("rebuilding a world's map", e.toString());
+        }
+    }
+
+    /**
+     * Going all over a world keeps at most the cache's capacity of chunks plus the ones enemies stand on,
+     * and a dirty queue nobody drains stops growing.
+     */
+    private static void worldMemory() throws IOException {
+        File file = File.createTempFile("check", WorldSource.EXTENSION);
+        file.deleteOnExit();
+        WorldSource.generate(file, 4000, 4000, 1);
+        Level level = new WorldSource(file.getPath()).createLevel(1);
+        ChunkedMaps map = (ChunkedMaps) level.getMap();
+        Random random = new Random(1);
+        int most = 0;
+        for (int i = 0; i < 20000; i++){
+            int x = random.nextInt(map.getHeight());
+            int y = random.nextInt(map.getWidth());
+            map.markDirty(x, y);
+            most = Math.max(most, map.getResidentCount());
+        }
+        int bound = map.getCapacity() + level.getEnemies().size();
+        check("a world keeps at most " + bound + " chunks", most <= bound, most + " were in memory");
+        check("an undrained dirty queue stops at " + Maps.MAX_DIRTY + " cells", map.getDirtyCount() <= Maps.MAX_DIRTY
+            && map.isAllDirty(), map.getDirtyCount() + " cells queued");
+        map.clearDirty();
+        check("clearing the dirty cells after an overflow", map.getDirtyCount() == 0 && !map.isAllDirty(), "still dirty");
+    }
+
+    /**
+     * A level pack's records are held to the same rules as the text files when they're decoded, so a
+     * damaged one fails there rather than building a level without a start or exit. An imported level
+     * with several exits can be packed and read back.
+     */
+    private static void packedLayouts() throws IOException {
+        String[] rows = {"S.E", "SEE", "SxE", "SSE", "S.."};
+        ByteBuffer pack = ByteBuffer.allocate(12 + 4 * rows.length + rows.length * (4 + 3));
+        pack.putInt(0x4348504B).putShort((short) 1).putShort((short) 0).putInt(rows.length);
+        for (int n = 0; n < rows.length; n++){
+            pack.putInt(12 + 4 * rows.length + n * (4 + 3));
+        }
+        for (String row : rows){
+            pack.putShort((short) 1).putShort((short) 3).put(row.getBytes(StandardCharsets.US_ASCII));
+        }
+        PackedLevelSource source = new PackedLevelSource(pack.flip(), "check");
+
+        for (int n = 1; n <= rows.length; n++){
+            String name = "packed level " + rows[n - 1];
+            boolean valid = n <= 2;
+            try {
+                source.getLayout(n);
+                check(name + (valid ? " is read" : " is refused"), valid, "read without an error");
+            } catch (UncheckedIOException e){
+                check(name + (valid ? " is read" : " is refused"), !valid, e.getCause().getMessage());
+            }
+        }
+
+        byte[] top = new byte[32 * 32];
+        top[top.length - 1] = 0x6E; // Chip
+        top[0] = 0x15; // exits in two corners
+        top[31] = 0x15;
+        DatLevelSource imported = new DatLevelSource(datLevel(top), "check.dat");
+        File file = File.createTempFile("check", PackedLevelSource.EXTENSION);
+        file.deleteOnExit();
+        PackedLevelSource.write(imported, file);
+        try {
+            check("an imported level with two exits is packed and read back",
+                Arrays.deepEquals(PackedLevelSource.open(file.getPath()).getLayout(1), imported.getLayout(1)), "layouts differ");
+        } catch (UncheckedIOException e){
+            fail("an imported level with two exits is packed and read back", e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Returns a level set of one level with a top layer and a floor bottom layer, neither run length encoded.
+     */
+    private static byte[] datLevel(byte[] top){
+        int layer = 2 + top.length;
+        int level = 8 + 2 * layer + 2;
+        ByteBuffer data = ByteBuffer.allocate(6 + 2 + level).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(0x0002AAAC).putShort((short) 1);
+        data.putShort((short) level).putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        data.putShort((short) top.length).put(top);
+        data.putShort((short) top.length).put(new byte[top.length]);
+        data.putShort((short) 0); // no optional fields
+        return data.array();
+    }
+
+    /**
+     * Returns an engine playing the first level of a text campaign.
+     */
+    private static HeadlessEngine engine(String levels) throws IOException {
+        LevelSource source = new TextLevelSource(new StringReader(levels), "check");
+        HeadlessEngine engine = new HeadlessEngine(new Game(source));
+        engine.loadLevel(1);
+        return engine;
+    }
+
+    private static void check(String name, boolean passed, String detail){
+        if (passed){
+            System.out.println("ok      " + name);
+        }
+        else {
+            fail(name, detail);
+        }
+    }
+
+    private static void fail(String name, String detail){
+        failures++;
+        System.out.println("FAILED  " + name + ": " + detail);
+    }
+}
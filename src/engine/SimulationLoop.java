@@ -0,0 +1,397 @@
+package engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the game on its own thread at a fixed number of ticks per second.
+ *
+ * <p>
+ * Each tick runs the commands posted by the view (restart, next level, ...), applies at most one
+ * player input from the {@link InputQueue}, moves the enemies when it's their turn, then publishes a
+ * {@link GameSnapshot} for the renderer through a {@link SnapshotBuffer}. The tick times are taken from
+ * System.nanoTime, so a slow repaint or a dialog on the Swing thread doesn't slow the game down.
+ * </p>
+ *
+ * <p>
+ * The loop parks until shortly before the next tick and spins for the rest, since parking alone can
+ * oversleep by a millisecond or more. If it falls far behind (e.g. the process was suspended), it skips
+ * the missed ticks instead of running them all at once.
+ * </p>
+ *
+ * <p>
+ * While the level isn't running (player dead, level completed or game ended) queued input is dropped
+ * and the enemies don't move, like when the Swing timer used to be stopped.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class SimulationLoop implements Runnable {
+    public static final int DEFAULT_TICKS_PER_SECOND = 60;
+    public static final long ENEMY_MOVE_NANOS = 300_000_000L; // same pace as the old 300 ms timer
+    public static final int DEFAULT_REPEAT_DELAY_MILLIS = 200; // holding a direction key starts repeating after this
+    public static final int DEFAULT_REPEAT_INTERVAL_MILLIS = 150; // then moves this often
+    public static final int DEFAULT_VIEW_SIZE = 32; // bigger maps are shown through a window of this many cells
+
+    private static final long SPIN_NANOS = 1_000_000L; // stop parking this long before the tick
+    private static final int MAX_CATCH_UP_TICKS = 5; // further behind than this and the missed ticks are skipped
+
+    /**
+     * Receives every snapshot published by the loop.
+     */
+    public interface Listener {
+        /**
+         * Called on the simulation thread right after a tick, so it must return quickly
+         * (e.g. schedule a repaint). The snapshot is only valid during the call, the renderer
+         * should take its own with {@link SimulationLoop#getLatest()}.
+         *
+         * @param snapshot the state after the tick.
+         */
+        void snapshotPublished(GameSnapshot snapshot);
+    }
+
+    private HeadlessEngine engine;
+    private long periodNanos;
+    private int enemyMoveTicks;
+    private volatile int viewRows; // the size of the window copied into the snapshots
+    private volatile int viewCols;
+    private InputQueue inputs;
+    private ConcurrentLinkedQueue<Runnable> commands;
+    private CopyOnWriteArrayList<Listener> listeners;
+    private SnapshotBuffer snapshots;
+    private GameSnapshot published; // the last snapshot published, read for the previous positions
+    private volatile boolean running;
+    private Thread thread;
+
+    private long tick;
+    private long inputSequence; // key presses applied (not auto repeats)
+    private long inputNanos; // when the last of them was pressed
+    private long inputAppliedNanos; // when the model finished applying it
+    private int ticksSinceEnemyMove;
+    private long skippedTicks;
+    private LatencyHistogram lateness; // how late each tick started compared to its schedule
+
+    /**
+     * Constructs a loop running at the default tick rate.
+     *
+     * @param engine the engine running the game, only touched by the loop's thread once started.
+     */
+    public SimulationLoop(HeadlessEngine engine){
+        this(engine, DEFAULT_TICKS_PER_SECOND);
+    }
+
+    /**
+     * Constructs a loop running at the given tick rate.
+     *
+     * <p>
+     * pre-condition: ticksPerSecond is positive
+     * </p>
+     *
+     * @param engine the engine running the game, only touched by the loop's thread once started.
+     * @param ticksPerSecond the number of ticks per second.
+     */
+    public SimulationLoop(HeadlessEngine engine, int ticksPerSecond){
+        this.engine = engine;
+        this.periodNanos = 1_000_000_000L / ticksPerSecond;
+        this.enemyMoveTicks = (int) Math.max(1, Math.round((double) ENEMY_MOVE_NANOS / periodNanos));
+        this.viewRows = DEFAULT_VIEW_SIZE;
+        this.viewCols = DEFAULT_VIEW_SIZE;
+        this.inputs = new InputQueue(InputQueue.DEFAULT_CAPACITY, 0, 1);
+        setAutoRepeat(DEFAULT_REPEAT_DELAY_MILLIS, DEFAULT_REPEAT_INTERVAL_MILLIS);
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.snapshots = new SnapshotBuffer();
+        this.lateness = new LatencyHistogram(10_000, 10_000); // 10 us buckets up to 100 ms
+    }
+
+    /**
+     * Publishes the first snapshot and starts the simulation thread.
+     *
+     * <p>
+     * post-condition: {@link #getLatest()} is not null, and from now on the model is only changed by the loop
+     * </p>
+     */
+    public void start(){
+        if (running){
+            return;
+        }
+        publish(System.nanoTime());
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true); // closing the window ends the program like before
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for it to finish.
+     */
+    public void stop(){
+        running = false;
+        if (thread != null && thread != Thread.currentThread()){
+            try {
+                thread.join();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs ticks on schedule until stopped.
+     */
+    @Override
+    public void run(){
+        long next = System.nanoTime() + periodNanos;
+        while (running){
+            waitUntil(next);
+            long start = System.nanoTime();
+            lateness.record(start - next);
+
+            runTick(next);
+
+            next += periodNanos;
+            long behind = System.nanoTime() - next;
+            if (behind > MAX_CATCH_UP_TICKS * periodNanos){
+                long missed = behind / periodNanos;
+                skippedTicks += missed;
+                next += missed * periodNanos;
+            }
+        }
+    }
+
+    /**
+     * Queues a command that isn't a held key (bots, benchmarks), applied on a coming tick.
+     *
+     * @param input the command character (w, a, s, d, r, q).
+     */
+    public void submit(char input){
+        inputs.submit(input, System.nanoTime());
+    }
+
+    /**
+     * Handles a key being pressed, see {@link InputQueue#press(char, long, long)}.
+     *
+     * @param key the key character.
+     * @param when the event time of the press (KeyEvent.getWhen()).
+     */
+    public void press(char key, long when){
+        inputs.press(key, System.nanoTime(), when);
+    }
+
+    /**
+     * Handles a key being released, see {@link InputQueue#release(char, long)}.
+     *
+     * @param key the key character.
+     * @param when the event time of the release (KeyEvent.getWhen()).
+     */
+    public void release(char key, long when){
+        inputs.release(key, when);
+    }
+
+    /**
+     * Forgets the held keys, e.g. when the window loses focus.
+     */
+    public void releaseKeys(){
+        inputs.releaseAll();
+    }
+
+    /**
+     * Sets how a held direction key repeats, rounded to whole ticks (call before {@link #start()}).
+     *
+     * @param delayMillis time from the press to the first repeat, 0 to not repeat.
+     * @param intervalMillis time between repeats.
+     */
+    public void setAutoRepeat(int delayMillis, int intervalMillis){
+        inputs.setAutoRepeat((int) Math.round(delayMillis * 1_000_000.0 / periodNanos),
+            (int) Math.round(intervalMillis * 1_000_000.0 / periodNanos));
+    }
+
+    /**
+     * Sets the most cells the snapshots hold, a map bigger than that is shown through a window around
+     * the player (see {@link GameSnapshot}). Can be called from any thread, it applies from the next tick.
+     *
+     * <p>
+     * pre-condition: both are positive
+     * </p>
+     *
+     * @param rows the most rows of the window.
+     * @param cols the most columns of the window.
+     */
+    public void setViewSize(int rows, int cols){
+        viewRows = rows;
+        viewCols = cols;
+    }
+
+    /**
+     * Returns the most rows the snapshots hold.
+     *
+     * @return view rows.
+     */
+    public int getViewRows(){
+        return viewRows;
+    }
+
+    /**
+     * Returns the most columns the snapshots hold.
+     *
+     * @return view columns.
+     */
+    public int getViewCols(){
+        return viewCols;
+    }
+
+    /**
+     * Returns the player's input queue, for its statistics.
+     *
+     * @return the input queue.
+     */
+    public InputQueue getInputs(){
+        return inputs;
+    }
+
+    /**
+     * Queues a command to run on the simulation thread at the start of the next tick,
+     * e.g. restarting the level. Commands run even while the level isn't running.
+     *
+     * @param command the command, which may use {@link #getEngine()}.
+     */
+    public void post(Runnable command){
+        commands.add(command);
+    }
+
+    /**
+     * Adds a listener for the published snapshots.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(Listener listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the latest published snapshot. Only one thread (the renderer) may call this, and
+     * the snapshot returned before is reused by the loop once it's called again.
+     *
+     * @return the snapshot, null before the loop is started.
+     */
+    public GameSnapshot getLatest(){
+        return snapshots.acquire();
+    }
+
+    /**
+     * Returns the engine run by this loop. Once started, it must only be used from posted commands.
+     *
+     * @return the engine.
+     */
+    public HeadlessEngine getEngine(){
+        return engine;
+    }
+
+    /**
+     * Returns the length of one tick.
+     *
+     * @return tick period in nanoseconds.
+     */
+    public long getPeriodNanos(){
+        return periodNanos;
+    }
+
+    /**
+     * Returns the number of ticks run.
+     *
+     * @return tick count.
+     */
+    public long getTickCount(){
+        return tick;
+    }
+
+    /**
+     * Returns the number of ticks skipped because the loop fell too far behind.
+     *
+     * @return skipped tick count.
+     */
+    public long getSkippedTicks(){
+        return skippedTicks;
+    }
+
+    /**
+     * Returns how late the ticks started compared to their schedule.
+     * Read it after {@link #stop()} for exact numbers.
+     *
+     * @return the lateness histogram.
+     */
+    public LatencyHistogram getLateness(){
+        return lateness;
+    }
+
+    /**
+     * Runs one tick: commands, one input, the enemies, then publishes the snapshot.
+     *
+     * @param tickNanos the scheduled time of the tick.
+     */
+    private void runTick(long tickNanos){
+        Runnable command;
+        while ((command = commands.poll()) != null){
+            command.run();
+            ticksSinceEnemyMove = 0; // the old timer was restarted after every dialog
+        }
+
+        if (engine.getStatus() == HeadlessEngine.Status.RUNNING){
+            char input = inputs.take();
+            if (input != 0){
+                engine.step(input);
+                if (inputs.getTakenNanos() != 0){
+                    inputSequence++;
+                    inputNanos = inputs.getTakenNanos();
+                    inputAppliedNanos = System.nanoTime();
+                }
+            }
+        }
+        else {
+            inputs.clear(); // nothing queued during a dialog should play out after it
+        }
+
+        if (engine.getStatus() == HeadlessEngine.Status.RUNNING && ++ticksSinceEnemyMove >= enemyMoveTicks){
+            ticksSinceEnemyMove = 0;
+            engine.tick();
+        }
+
+        tick++;
+        publish(tickNanos);
+    }
+
+    /**
+     * Takes a snapshot of the model into the back buffer, publishes it and hands it to the listeners.
+     *
+     * @param tickNanos the time of the tick.
+     */
+    private void publish(long tickNanos){
+        // a snapshot the renderer skipped passes its dirty cells on to the next one
+        snapshots.getBack().capture(engine, published, snapshots.isPublishedUnseen(), viewRows, viewCols, tick,
+            tickNanos, periodNanos, inputSequence, inputNanos, inputAppliedNanos);
+        published = snapshots.publish();
+
+        for (Listener listener : listeners){
+            listener.snapshotPublished(published);
+        }
+    }
+
+    /**
+     * Parks until shortly before the deadline, then spins until it's reached.
+     *
+     * @param deadline the System.nanoTime to wait for.
+     */
+    private static void waitUntil(long deadline){
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS){
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while (deadline - System.nanoTime() > 0){
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands snapshots from the simulation thread to the renderer without locks or allocation (a triple buffer).
+ *
+ * <p>
+ * There are three preallocated snapshots: the back one is being filled by the simulation, the front one
+ * is being drawn by the renderer, and the middle one is the latest complete snapshot waiting to be picked
+ * up. Publishing swaps the back with the middle, and acquiring swaps the front with the middle if a newer
+ * one was published, each with a single atomic getAndSet. Neither side ever waits for the other, and since
+ * a snapshot is only written while it is the back one, the renderer never sees a half written (torn) frame.
+ * If the renderer is slower than the simulation, the snapshots it missed are simply overwritten.
+ * </p>
+ *
+ * <p>
+ * There must be one writer thread and one reader thread. The reader's snapshot stays valid until its next
+ * {@link #acquire()}, so it must not keep a reference past that.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class SnapshotBuffer {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4; // set in middle when it was published after the reader last acquired
+
+    private GameSnapshot[] slots;
+    private AtomicInteger middle; // index of the middle snapshot, plus the FRESH bit
+    private int back; // only used by the writer
+    private int front; // only used by the reader
+    private boolean hasFront; // only used by the reader, false until something was acquired
+
+    /**
+     * Constructs the buffer with its three snapshots.
+     */
+    public SnapshotBuffer(){
+        this.slots = new GameSnapshot[] {new GameSnapshot(), new GameSnapshot(), new GameSnapshot()};
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * Returns the snapshot to fill for the next publish (writer side).
+     *
+     * @return the back snapshot.
+     */
+    GameSnapshot getBack(){
+        return slots[back];
+    }
+
+    /**
+     * Makes the filled back snapshot the latest one and takes the old middle one as the new back (writer side).
+     *
+     * @return the snapshot just published, which the writer may still read until its next publish.
+     */
+    GameSnapshot publish(){
+        int published = back;
+        back = middle.getAndSet(published | FRESH) & INDEX_MASK;
+        return slots[published];
+    }
+
+    /**
+     * Checks if the reader hasn't taken the last published snapshot yet (writer side). The reader may take
+     * it right after, so a true answer can be out of date but a false one can't.
+     *
+     * @return true if the middle snapshot is newer than the reader's.
+     */
+    boolean isPublishedUnseen(){
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Takes the latest published snapshot if there is a newer one than the reader's (reader side).
+     *
+     * <p>
+     * post-condition: the previously returned snapshot may be overwritten by the writer from now on
+     * </p>
+     *
+     * @return the latest snapshot, null if nothing has been published yet.
+     */
+    public GameSnapshot acquire(){
+        if ((middle.get() & FRESH) != 0){
+            front = middle.getAndSet(front) & INDEX_MASK;
+            hasFront = true;
+        }
+        return hasFront ? slots[front] : null;
+    }
+}
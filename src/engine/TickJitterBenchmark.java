@@ -0,0 +1,86 @@
+package engine;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Measures how close to schedule the simulation loop runs its ticks while another thread is busy painting.
+ *
+ * <p>
+ * The loop runs level 1 with a random key press every few ticks, while a second thread keeps drawing
+ * antialiased shapes into a large image to stand in for a heavy repaint on the Swing thread.
+ * The lateness of every tick (how long after its scheduled time it started) is printed at the end.
+ * </p>
+ *
+ * <p>
+ * Running (from src): java engine.TickJitterBenchmark [seconds] [ticks per second]
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.0
+ */
+public class TickJitterBenchmark {
+    private static final char[] MOVES = {'w', 'a', 's', 'd'};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of seconds (default 10) and tick rate (default 60).
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 10.0;
+        int ticksPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : SimulationLoop.DEFAULT_TICKS_PER_SECOND;
+
+        SimulationLoop loop = new SimulationLoop(new HeadlessEngine(), ticksPerSecond);
+        Random random = new Random(1);
+        loop.addListener(snapshot -> {
+            if (snapshot.getStatus() != HeadlessEngine.Status.RUNNING){
+                loop.post(() -> loop.getEngine().reset());
+            }
+            else if (random.nextInt(4) == 0){
+                loop.submit(MOVES[random.nextInt(MOVES.length)]);
+            }
+        });
+
+        Thread painter = new Thread(TickJitterBenchmark::paintForever, "paint load");
+        painter.setDaemon(true);
+        painter.start();
+
+        loop.start();
+        Thread.sleep((long) (seconds * 1000));
+        loop.stop();
+
+        LatencyHistogram lateness = loop.getLateness();
+        System.out.printf("%,d ticks at %d/s, skipped %d%n", loop.getTickCount(), ticksPerSecond, loop.getSkippedTicks());
+        System.out.printf("Tick lateness: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+            lateness.getMean() / 1e6, lateness.getPercentile(0.5) / 1e6, lateness.getPercentile(0.99) / 1e6,
+            lateness.getPercentile(0.999) / 1e6, lateness.getMax() / 1e6);
+        System.out.printf("Ticks 1 ms or more late: %d%n", lateness.getCountAtLeast(1_000_000));
+
+        LatencyHistogram input = loop.getInputs().getLatency();
+        System.out.printf("Input to move: %,d inputs (%d dropped), p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+            input.getCount(), loop.getInputs().getDroppedCount(), input.getPercentile(0.5) / 1e6,
+            input.getPercentile(0.99) / 1e6, input.getMax() / 1e6);
+    }
+
+    /**
+     * Keeps one thread busy drawing, like a Swing thread that never finishes repainting.
+     */
+    private static void paintForever(){
+        BufferedImage image = new BufferedImage(1600, 1600, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(2);
+        while (true){
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (int i = 0; i < 200; i++){
+                g.setColor(new Color(random.nextInt()));
+                g.fillOval(random.nextInt(1600), random.nextInt(1600), 200, 200);
+            }
+            g.dispose();
+        }
+    }
+}
@@ -1,15 +1,54 @@
 package main;
 
+import java.io.IOException;
+
 import model.Game;
 import model.Level;
+import model.LevelSource;
+import model.TextLevelSource;
+import engine.HeadlessEngine;
+import engine.SimulationLoop;
 import view.GUI;
 import controller.GameController;
 
 public class Main {
     public static void main(String[] args) {
-        Game game = new Game();
-        GUI gui = new GUI(game);
-        GameController controller = new GameController(game, gui);
+        String levels = TextLevelSource.DEFAULT_PATH;
+        boolean useCanvas = false; // single component renderer instead of the JLabel grid
+        int ticksPerSecond = SimulationLoop.DEFAULT_TICKS_PER_SECOND;
+        int repeatDelay = SimulationLoop.DEFAULT_REPEAT_DELAY_MILLIS;
+        int repeatInterval = SimulationLoop.DEFAULT_REPEAT_INTERVAL_MILLIS;
+        for (String arg : args){
+            if (arg.equals("--canvas")){
+                useCanvas = true;
+            }
+            else if (arg.startsWith("--tps=")){
+                ticksPerSecond = Integer.parseInt(arg.substring("--tps=".length()));
+            }
+            else if (arg.startsWith("--repeat-delay=")){
+                repeatDelay = Integer.parseInt(arg.substring("--repeat-delay=".length()));
+            }
+            else if (arg.startsWith("--repeat-interval=")){
+                repeatInterval = Integer.parseInt(arg.substring("--repeat-interval=".length()));
+            }
+            else if (arg.startsWith("--levels=")){
+                levels = arg.substring("--levels=".length());
+            }
+        }
+
+        Game game;
+        try {
+            game = new Game(LevelSource.open(levels));
+        } catch (IOException e){
+            System.err.println("Could not load the levels: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        SimulationLoop simulation = new SimulationLoop(new HeadlessEngine(game), ticksPerSecond);
+        simulation.setAutoRepeat(repeatDelay, repeatInterval);
+        GUI gui = new GUI(simulation, useCanvas);
+        GameController controller = new GameController(simulation, gui);
 
         gui.attachKeyListener(controller);
         gui.attachRestartButton(controller);
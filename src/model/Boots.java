@@ -5,7 +5,7 @@ package model;
  * 
  * <p>
  * Each type of boots provide a special quirk and
- * this keeps track of its position on the map, the type of boots, the symbol, and if it's collected or not
+ * this keeps track of the type of boots and the symbol
  * </p>
  * 
  * @author Anton Galido
@@ -14,17 +14,15 @@ package model;
  */
 
 public class Boots extends Item{
-    private String type;
+    private final String type;
     /**
-     * Constructs a Boots object with a specified x and y position, type of boots, and its symbol.
+     * Constructs a Boots object with a specified type of boots, and its symbol.
      * 
-     * @param xPosition the x coordinate of the Boots
-     * @param yPosition the y coordinate of the Boots
      * @param type the type of boots
      * @param symbol the symbol representing with each type of boots
      */
-    public Boots(int xPosition, int yPosition, char symbol, String type){
-        super(xPosition, yPosition, symbol);
+    public Boots(char symbol, String type){
+        super(symbol);
         this.type = type;
     }
     
@@ -32,7 +30,7 @@ public class Boots extends Item{
      * Handles the interaction when player picks up the boots.
      * 
      * <p>
-     * Adds the picked up boots to the inventory and set isCollected to TRUE.
+     * Adds the picked up boots to the inventory.
      * </p>
      * 
      * @param player the player interacting with the boots.
@@ -40,7 +38,6 @@ public class Boots extends Item{
     @Override
     public void onPlayerPickup(Player player){
         player.getInventory().addBoots(this);
-        this.setIsCollected(true);
     }
 
    
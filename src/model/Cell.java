@@ -0,0 +1,323 @@
+package model;
+
+/**
+ * Encodes everything about one map cell into a single short.
+ *
+ * <p>
+ * The map stores one short per cell instead of separate tile, door and item objects.
+ * The bits are laid out as follows:
+ * </p>
+ * <ul>
+ * <li>bits 0-3: tile kind ({@link #FLOOR}, {@link #WALL}, ...)</li>
+ * <li>bits 4-5: door color ({@link #NO_DOOR}, {@link #RED_DOOR}, {@link #BLUE_DOOR})</li>
+ * <li>bit 6: door has been unlocked</li>
+ * <li>bits 7-9: item kind ({@link #NO_ITEM}, {@link #RED_KEY}, ...)</li>
+ * <li>bit 10: item has been collected</li>
+ * </ul>
+ *
+ * <p>
+ * It also holds the shared tile, door and item instances (flyweights). They don't store a position
+ * or any state, so one instance per kind serves every cell of every map.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public final class Cell {
+    // tile kinds
+    public static final int NO_TILE = 0;
+    public static final int FLOOR = 1;
+    public static final int WALL = 2;
+    public static final int FIRE = 3;
+    public static final int WATER = 4;
+    public static final int ICE = 5;
+    public static final int TELEPORT = 6;
+    public static final int EXIT = 7;
+    public static final int FORCE_UP = 8;
+    public static final int FORCE_DOWN = 9;
+    public static final int FORCE_LEFT = 10;
+    public static final int FORCE_RIGHT = 11;
+
+    // door colors
+    public static final int NO_DOOR = 0;
+    public static final int RED_DOOR = 1;
+    public static final int BLUE_DOOR = 2;
+
+    // item kinds
+    public static final int NO_ITEM = 0;
+    public static final int RED_KEY = 1;
+    public static final int BLUE_KEY = 2;
+    public static final int FIRE_BOOTS = 3;
+    public static final int FLIPPERS = 4;
+    public static final int TELEPORT_BOOTS = 5;
+    public static final int MICROCHIP = 6;
+
+    private static final int TILE_MASK = 0xF;
+    private static final int DOOR_SHIFT = 4;
+    private static final int DOOR_MASK = 0x3 << DOOR_SHIFT;
+    private static final int DOOR_OPEN = 1 << 6;
+    private static final int ITEM_SHIFT = 7;
+    private static final int ITEM_MASK = 0x7 << ITEM_SHIFT;
+    private static final int ITEM_COLLECTED = 1 << 10;
+
+    private static final char[] TILE_SYMBOLS = {' ', '.', '#', 'F', 'W', 'I', 'O', 'E', '^', 'v', '<', '>'};
+    private static final char[] DOOR_SYMBOLS = {' ', 'd', 'D'};
+    private static final char[] ITEM_SYMBOLS = {' ', 'k', 'K', 'B', 'P', 'T', 'M'};
+
+    private static final Tile[] TILES = {
+        null,
+        new FloorTile('.'),
+        new WallTile('#'),
+        new FireTile('F'),
+        new WaterTile('W'),
+        new IceTile('I'),
+        new TeleportTile('O'),
+        new ExitTile('E'),
+        new ForceFloor('^', "Up"),
+        new ForceFloor('v', "Down"),
+        new ForceFloor('<', "Left"),
+        new ForceFloor('>', "Right")
+    };
+
+    private static final Item[] ITEMS = {
+        null,
+        new Key('k', "red"),
+        new Key('K', "blue"),
+        new Boots('B', "fireboots"),
+        new Boots('P', "flippers"),
+        new Boots('T', "teleportboots"),
+        new Microchip('M')
+    };
+
+    private static final Door[] LOCKED_DOORS = {null, new Door("red", 'd', true), new Door("blue", 'D', true)};
+    private static final Door[] UNLOCKED_DOORS = {null, new Door("red", 'd', false), new Door("blue", 'D', false)};
+
+    private Cell(){
+    }
+
+    /**
+     * Returns the shared tile instance for a tile kind.
+     *
+     * @param tileKind the tile kind.
+     * @return the tile, null for NO_TILE.
+     */
+    public static Tile tile(int tileKind){
+        return TILES[tileKind];
+    }
+
+    /**
+     * Returns the shared item instance for an item kind.
+     *
+     * @param itemKind the item kind.
+     * @return the item, null for NO_ITEM.
+     */
+    public static Item item(int itemKind){
+        return ITEMS[itemKind];
+    }
+
+    /**
+     * Returns the shared door instance for a door color and locked state.
+     *
+     * @param doorColor the door color.
+     * @param isLocked whether the door is still locked.
+     * @return the door, null for NO_DOOR.
+     */
+    public static Door door(int doorColor, boolean isLocked){
+        return isLocked ? LOCKED_DOORS[doorColor] : UNLOCKED_DOORS[doorColor];
+    }
+
+    /**
+     * Packs a cell with the given tile, door and item (door locked and item not collected).
+     *
+     * @param tileKind the tile kind.
+     * @param doorColor the door color, or NO_DOOR.
+     * @param itemKind the item kind, or NO_ITEM.
+     * @return the packed cell.
+     */
+    public static short pack(int tileKind, int doorColor, int itemKind){
+        return (short) (tileKind | (doorColor << DOOR_SHIFT) | (itemKind << ITEM_SHIFT));
+    }
+
+    /**
+     * Returns the tile kind of a cell.
+     *
+     * @param cell the packed cell.
+     * @return the tile kind.
+     */
+    public static int tileKind(short cell){
+        return cell & TILE_MASK;
+    }
+
+    /**
+     * Returns the cell with its tile kind replaced.
+     *
+     * @param cell the packed cell.
+     * @param tileKind the new tile kind.
+     * @return the updated cell.
+     */
+    public static short withTileKind(short cell, int tileKind){
+        return (short) ((cell & ~TILE_MASK) | tileKind);
+    }
+
+    /**
+     * Returns the door color of a cell.
+     *
+     * @param cell the packed cell.
+     * @return the door color, NO_DOOR if there's no door.
+     */
+    public static int doorColor(short cell){
+        return (cell & DOOR_MASK) >> DOOR_SHIFT;
+    }
+
+    /**
+     * Returns the cell with a door of the given color placed on it (locked).
+     *
+     * @param cell the packed cell.
+     * @param doorColor the door color.
+     * @return the updated cell.
+     */
+    public static short withDoor(short cell, int doorColor){
+        return (short) ((cell & ~(DOOR_MASK | DOOR_OPEN)) | (doorColor << DOOR_SHIFT));
+    }
+
+    /**
+     * Checks if the door on a cell has been unlocked.
+     *
+     * @param cell the packed cell.
+     * @return true if unlocked, false otherwise.
+     */
+    public static boolean isDoorOpen(short cell){
+        return (cell & DOOR_OPEN) != 0;
+    }
+
+    /**
+     * Returns the cell with its door marked as unlocked.
+     *
+     * @param cell the packed cell.
+     * @return the updated cell.
+     */
+    public static short withDoorOpen(short cell){
+        return (short) (cell | DOOR_OPEN);
+    }
+
+    /**
+     * Returns the item kind of a cell.
+     *
+     * @param cell the packed cell.
+     * @return the item kind, NO_ITEM if there's no item.
+     */
+    public static int itemKind(short cell){
+        return (cell & ITEM_MASK) >> ITEM_SHIFT;
+    }
+
+    /**
+     * Returns the cell with an item of the given kind placed on it (not collected).
+     *
+     * @param cell the packed cell.
+     * @param itemKind the item kind.
+     * @return the updated cell.
+     */
+    public static short withItem(short cell, int itemKind){
+        return (short) ((cell & ~(ITEM_MASK | ITEM_COLLECTED)) | (itemKind << ITEM_SHIFT));
+    }
+
+    /**
+     * Checks if the item on a cell has been collected.
+     *
+     * @param cell the packed cell.
+     * @return true if collected, false otherwise.
+     */
+    public static boolean isItemCollected(short cell){
+        return (cell & ITEM_COLLECTED) != 0;
+    }
+
+    /**
+     * Returns the cell with its item marked as collected.
+     *
+     * @param cell the packed cell.
+     * @return the updated cell.
+     */
+    public static short withItemCollected(short cell){
+        return (short) (cell | ITEM_COLLECTED);
+    }
+
+    /**
+     * Returns the map symbol of a tile kind.
+     *
+     * @param tileKind the tile kind.
+     * @return the symbol used in the layouts and for the images.
+     */
+    public static char tileSymbol(int tileKind){
+        return TILE_SYMBOLS[tileKind];
+    }
+
+    /**
+     * Returns the map symbol of a door color.
+     *
+     * @param doorColor the door color.
+     * @return the door symbol.
+     */
+    public static char doorSymbol(int doorColor){
+        return DOOR_SYMBOLS[doorColor];
+    }
+
+    /**
+     * Returns the map symbol of an item kind.
+     *
+     * @param itemKind the item kind.
+     * @return the item symbol.
+     */
+    public static char itemSymbol(int itemKind){
+        return ITEM_SYMBOLS[itemKind];
+    }
+
+    /**
+     * Returns the tile kind for a tile symbol.
+     *
+     * @param symbol the tile symbol.
+     * @return the tile kind, NO_TILE if the symbol isn't a tile.
+     */
+    public static int tileKindOf(char symbol){
+        return indexOf(TILE_SYMBOLS, symbol, NO_TILE);
+    }
+
+    /**
+     * Returns the door color for a door symbol.
+     *
+     * @param symbol the door symbol.
+     * @return the door color, NO_DOOR if the symbol isn't a door.
+     */
+    public static int doorColorOf(char symbol){
+        return indexOf(DOOR_SYMBOLS, symbol, NO_DOOR);
+    }
+
+    /**
+     * Returns the item kind for an item symbol.
+     *
+     * @param symbol the item symbol.
+     * @return the item kind, NO_ITEM if the symbol isn't an item.
+     */
+    public static int itemKindOf(char symbol){
+        return indexOf(ITEM_SYMBOLS, symbol, NO_ITEM);
+    }
+
+    /**
+     * Returns the color name used by keys and doors for a door color.
+     *
+     * @param doorColor the door color.
+     * @return "red" or "blue".
+     */
+    public static String colorName(int doorColor){
+        return doorColor == RED_DOOR ? "red" : "blue";
+    }
+
+    private static int indexOf(char[] symbols, char symbol, int notFound){
+        for (int i = 1; i < symbols.length; i++){
+            if (symbols[i] == symbol){
+                return i;
+            }
+        }
+        return notFound;
+    }
+}
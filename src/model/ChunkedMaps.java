@@ -0,0 +1,483 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map too big to keep in memory, split into square chunks that are read from a {@link WorldSource}
+ * when a cell in them is first used.
+ *
+ * <p>
+ * At most a fixed number of chunks are kept, in least recently used order. When one more is needed the
+ * least recently used is dropped, and if it was changed (a collected item, an opened door) it's written
+ * to a scratch file first, so loading it again gives it back as it was left. The scratch file is deleted
+ * when the program ends. Chunks the world file doesn't store are all floor.
+ * </p>
+ *
+ * <p>
+ * The enemy occupancy and the dirty marks are kept in the chunks too, allocated for a chunk the first time
+ * an enemy stands on it or one of its cells is marked. The chunks enemies stand on are kept aside from the
+ * least recently used ones and never dropped, so the enemies are always found, and the dirty marks of a
+ * dropped chunk are lost (its cells may then be queued twice, which only redraws them twice). The slides remembered are capped by the number of chunks kept
+ * (see {@link SlideTable#setLimit(int)}). So the memory used depends on the chunk cache and the number of
+ * enemies, not on the size of the map or how much of it was visited. Only used by the thread that owns the model.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.2
+ */
+public class ChunkedMaps extends Maps {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // cells per chunk side
+    public static final int DEFAULT_CACHE_CHUNKS = 256; // 2 MB of cells
+
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+    private static final int CHUNK_BYTES = CHUNK_CELLS * 2;
+    private static final int MASK = CHUNK_SIZE - 1;
+    private static final int SLIDES_PER_CHUNK = 4 * CHUNK_SIZE; // about as much memory as the chunk's cells
+
+    private WorldSource world;
+    private int chunkColumns;
+    private int capacity;
+    private LinkedHashMap<Long, Chunk> cache; // in access order, the eldest is evicted first
+    private HashMap<Long, Chunk> occupiedChunks; // the chunks enemies stand on, not counted in the capacity
+    private long[] emptied; // occupied chunks the last enemy left, moved back to the cache on the next load
+    private int emptiedCount;
+    private long lastKey; // the chunk used last, looked up without the cache
+    private Chunk lastChunk;
+    private ByteBuffer buffer; // one chunk, for reading and writing the files
+
+    private FileChannel scratch; // opened the first time a changed chunk is evicted
+    private HashMap<Long, Long> scratchOffsets; // where each evicted changed chunk was written
+
+    private long loads;
+    private long evictions;
+    private long writeBacks;
+
+    /**
+     * The cells of one chunk, row by row.
+     */
+    private static class Chunk {
+        private short[] cells = new short[CHUNK_CELLS];
+        private boolean modified; // changed since it was read
+        private int[] occupantHeads; // see Maps, null while no enemy stands on the chunk
+        private int occupied; // cells with an enemy, the chunk is in occupiedChunks while there are some
+        private boolean isEmptied; // in occupiedChunks with no enemy left, its key is in emptied
+        private long[] dirtyBits; // see Maps, null until a cell is marked
+    }
+
+    /**
+     * Constructs a chunked map over a world file.
+     *
+     * <p>
+     * pre-condition: capacity is at least 2
+     * </p>
+     *
+     * @param world the world the chunks are read from.
+     * @param width map width.
+     * @param height map height.
+     * @param capacity the number of chunks kept in memory besides the ones enemies stand on.
+     */
+    public ChunkedMaps(WorldSource world, int width, int height, int capacity){
+        super(width, height, false);
+        this.world = world;
+        this.chunkColumns = (width + MASK) >> CHUNK_SHIFT;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+        this.occupiedChunks = new HashMap<>();
+        this.emptied = new long[16];
+        this.lastKey = -1;
+        this.buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        this.scratchOffsets = new HashMap<>();
+        getSlides().setLimit(capacity * SLIDES_PER_CHUNK);
+    }
+
+    /**
+     * Converts a position to its cell index, checking it's on the map first: past the left or right edge
+     * it would be a cell of the row before or after, past the top or bottom a chunk the world doesn't have.
+     *
+     * @throws IndexOutOfBoundsException if the position is off the map.
+     */
+    @Override
+    protected long index(int x, int y){
+        checkPosition(x, y);
+        return super.index(x, y);
+    }
+
+    @Override
+    protected short readCell(long i){
+        return chunk((int) (i / getWidth()), (int) (i % getWidth())).cells[offset(i)];
+    }
+
+    @Override
+    protected void writeCell(long i, short value){
+        Chunk chunk = chunk((int) (i / getWidth()), (int) (i % getWidth()));
+        chunk.cells[offset(i)] = value;
+        chunk.modified = true;
+    }
+
+    /**
+     * A chunked map starts from its world rather than empty, so clearing it drops every chunk in memory and
+     * forgets the ones written to the scratch file: each cell is read from the world again when it's used.
+     */
+    @Override
+    protected void clearCells(){
+        cache.clear(); // not evicted one by one, nothing needs writing back
+        occupiedChunks.clear(); // the enemies are taken off the map next
+        emptiedCount = 0;
+        scratchOffsets.clear(); // the scratch file is written over from the start
+        lastKey = -1;
+        lastChunk = null;
+    }
+
+    /**
+     * A chunk that isn't in memory has no enemy on it, so it isn't read to find out.
+     */
+    @Override
+    protected int occupantHead(long i){
+        Chunk chunk = resident(i);
+        return chunk == null || chunk.occupantHeads == null ? 0 : chunk.occupantHeads[offset(i)];
+    }
+
+    @Override
+    protected void setOccupantHead(long i, int head){
+        Chunk chunk = head == 0 ? resident(i) : chunk((int) (i / getWidth()), (int) (i % getWidth()));
+        if (chunk == null || (head == 0 && chunk.occupantHeads == null)){
+            return;
+        }
+        if (chunk.occupantHeads == null){
+            chunk.occupantHeads = new int[CHUNK_CELLS];
+        }
+
+        int offset = offset(i);
+        if ((chunk.occupantHeads[offset] == 0) != (head == 0)){
+            chunk.occupied += head == 0 ? -1 : 1;
+        }
+        chunk.occupantHeads[offset] = head;
+        if (chunk.occupied == 1 && head != 0 && !chunk.isEmptied){
+            cache.remove(key(i)); // the first enemy came
+            occupiedChunks.put(key(i), chunk);
+        }
+        else if (chunk.occupied == 0 && !chunk.isEmptied){
+            // the last enemy left, often to come back at once when it moves within the chunk
+            if (emptiedCount == emptied.length){
+                emptied = Arrays.copyOf(emptied, emptiedCount * 2);
+            }
+            emptied[emptiedCount++] = key(i);
+            chunk.isEmptied = true;
+        }
+    }
+
+    @Override
+    protected boolean setDirtyMark(long i){
+        Chunk chunk = chunk((int) (i / getWidth()), (int) (i % getWidth()));
+        if (chunk.dirtyBits == null){
+            chunk.dirtyBits = new long[CHUNK_CELLS / 64];
+        }
+        int offset = offset(i);
+        long bit = 1L << offset;
+        if ((chunk.dirtyBits[offset >> 6] & bit) != 0){
+            return false;
+        }
+        chunk.dirtyBits[offset >> 6] |= bit;
+        return true;
+    }
+
+    /**
+     * The marks of a chunk that was dropped went with it, it isn't read again to clear them.
+     */
+    @Override
+    protected void unmarkDirty(long i){
+        Chunk chunk = resident(i);
+        if (chunk != null && chunk.dirtyBits != null){
+            int offset = offset(i);
+            chunk.dirtyBits[offset >> 6] &= ~(1L << offset);
+        }
+    }
+
+    /**
+     * Copies a rectangle of packed cells, one chunk row segment at a time.
+     */
+    @Override
+    public void copyCells(short[] into, int fromX, int fromY, int rows, int cols){
+        checkPosition(fromX, fromY);
+        checkPosition(fromX + rows - 1, fromY + cols - 1);
+        for (int x = 0; x < rows; x++){
+            int row = fromX + x;
+            int y = 0;
+            while (y < cols){
+                int column = fromY + y;
+                int length = Math.min(cols - y, CHUNK_SIZE - (column & MASK));
+                System.arraycopy(chunk(row, column).cells, ((row & MASK) << CHUNK_SHIFT) | (column & MASK),
+                    into, x * cols + y, length);
+                y += length;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of chunks read so far, from the world or the scratch file.
+     *
+     * @return chunk loads.
+     */
+    public long getLoadCount(){
+        return loads;
+    }
+
+    /**
+     * Returns the number of chunks dropped from memory so far.
+     *
+     * @return chunk evictions.
+     */
+    public long getEvictionCount(){
+        return evictions;
+    }
+
+    /**
+     * Returns the number of changed chunks written to the scratch file so far.
+     *
+     * @return chunk write backs.
+     */
+    public long getWriteBackCount(){
+        return writeBacks;
+    }
+
+    /**
+     * Returns the number of chunks in memory now, the ones enemies stand on included.
+     *
+     * @return resident chunks.
+     */
+    public int getResidentCount(){
+        return cache.size() + occupiedChunks.size();
+    }
+
+    /**
+     * Returns the number of chunks kept in memory besides the ones enemies stand on.
+     *
+     * @return the cache capacity.
+     */
+    public int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Checks a position is on the map.
+     *
+     * @param x the x coordinate (row).
+     * @param y the y coordinate (column).
+     * @throws IndexOutOfBoundsException if it's off the map.
+     */
+    private void checkPosition(int x, int y){
+        if (!isValidPosition(x, y)){
+            throw new IndexOutOfBoundsException("Position " + x + ", " + y + " is off the " + getWidth() + " x "
+                + getHeight() + " map");
+        }
+    }
+
+    /**
+     * Returns where a cell is in its chunk.
+     *
+     * @param i the cell index.
+     * @return the place in the chunk's arrays, row by row.
+     */
+    private int offset(long i){
+        int x = (int) (i / getWidth());
+        int y = (int) (i % getWidth());
+        return ((x & MASK) << CHUNK_SHIFT) | (y & MASK);
+    }
+
+    /**
+     * Returns the number of the chunk holding a cell.
+     *
+     * @param i the cell index.
+     * @return the chunk number, row by row.
+     */
+    private long key(long i){
+        return (i / getWidth() >> CHUNK_SHIFT) * chunkColumns + (i % getWidth() >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Returns the chunk holding a cell if it's in memory, without reading it.
+     *
+     * @param i the cell index.
+     * @return the chunk, null if it isn't in memory.
+     */
+    private Chunk resident(long i){
+        long key = key(i);
+        if (key == lastKey){
+            return lastChunk;
+        }
+        Chunk chunk = cache.get(key);
+        if (chunk == null){
+            chunk = occupiedChunks.get(key);
+        }
+        if (chunk != null){
+            lastKey = key;
+            lastChunk = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the chunk holding a cell, reading it if it isn't in memory.
+     *
+     * <p>
+     * pre-condition: the cell is on the map, see {@link #checkPosition(int, int)}
+     * </p>
+     *
+     * @param x the x coordinate (row).
+     * @param y the y coordinate (column).
+     * @return the chunk.
+     */
+    private Chunk chunk(int x, int y){
+        long key = (long) (x >> CHUNK_SHIFT) * chunkColumns + (y >> CHUNK_SHIFT);
+        if (key == lastKey){
+            return lastChunk;
+        }
+
+        Chunk chunk = cache.get(key);
+        if (chunk == null){
+            chunk = occupiedChunks.get(key);
+        }
+        if (chunk == null){
+            chunk = load(key);
+            cache.put(key, chunk);
+            evictOverCapacity();
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Moves the occupied chunks no enemy stands on anymore back to the cache, then drops the least recently
+     * used chunks until the cache is back to its capacity.
+     */
+    private void evictOverCapacity(){
+        for (int n = 0; n < emptiedCount; n++){
+            Chunk chunk = occupiedChunks.get(emptied[n]);
+            chunk.isEmptied = false;
+            if (chunk.occupied == 0){
+                chunk.occupantHeads = null;
+                occupiedChunks.remove(emptied[n]);
+                cache.put(emptied[n], chunk);
+            }
+        }
+        emptiedCount = 0;
+
+        Iterator<Map.Entry<Long, Chunk>> eldest = cache.entrySet().iterator();
+        while (cache.size() > capacity){
+            Map.Entry<Long, Chunk> entry = eldest.next();
+            eldest.remove();
+            evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a chunk, from the scratch file if it was changed before, else from the world.
+     *
+     * @param key the chunk number, row by row.
+     * @return the chunk.
+     * @throws UncheckedIOException if it can't be read.
+     */
+    private Chunk load(long key){
+        Chunk chunk = new Chunk();
+        loads++;
+        try {
+            Long offset = scratchOffsets.get(key);
+            boolean found;
+            buffer.clear();
+            if (offset != null){
+                readFully(scratch, buffer, offset);
+                found = true;
+            }
+            else {
+                found = world.readChunk(key, buffer);
+            }
+
+            if (found){
+                buffer.flip();
+                buffer.asShortBuffer().get(chunk.cells);
+            }
+            else {
+                Arrays.fill(chunk.cells, WorldSource.FLOOR_CELL);
+            }
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    /**
+     * Drops a chunk from memory, writing it to the scratch file if it was changed.
+     *
+     * @param key the chunk number.
+     * @param chunk the chunk.
+     * @throws UncheckedIOException if it can't be written.
+     */
+    private void evict(long key, Chunk chunk){
+        evictions++;
+        if (chunk == lastChunk){
+            lastKey = -1;
+            lastChunk = null;
+        }
+        if (!chunk.modified){
+            return;
+        }
+
+        try {
+            if (scratch == null){
+                Path file = Files.createTempFile("chips-world", ".chunks");
+                scratch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+                file.toFile().deleteOnExit();
+            }
+            Long offset = scratchOffsets.get(key);
+            if (offset == null){
+                offset = (long) scratchOffsets.size() * CHUNK_BYTES;
+                scratchOffsets.put(key, offset);
+            }
+
+            buffer.clear();
+            buffer.asShortBuffer().put(chunk.cells);
+            long position = offset;
+            while (buffer.hasRemaining()){
+                position += scratch.write(buffer, position);
+            }
+            writeBacks++;
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fills a buffer from a file.
+     *
+     * @param channel the file.
+     * @param buffer the buffer, filled from its position to its limit.
+     * @param offset where to start reading in the file.
+     * @throws IOException if it can't be read or the file ends first.
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()){
+            int read = channel.read(buffer, offset);
+            if (read < 0){
+                throw new IOException("Unexpected end of file at " + offset);
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Imports the levels of an original Chip's Challenge level set (a {@code .dat} file, like CHIPS.DAT).
+ *
+ * <p>
+ * A level set is a little endian header (the magic number and the level count) followed by one record
+ * per level: its size, number, time limit, required chips, two 32 x 32 layers of tile codes and some
+ * optional fields (title, password, hint, ...). Each layer is run length encoded: a 0xFF byte is followed
+ * by a count and the tile to repeat, any other byte is one tile. The top layer holds Chip, the creatures
+ * and the items, the bottom layer what's under them.
+ * </p>
+ *
+ * <p>
+ * The tiles this game has (floor, walls, water, fire, ice, force floors, red and blue keys and doors,
+ * chips, flippers, fire boots and the exit) become the same symbols as in the text files. Everything
+ * else is reported and replaced by the closest thing there is: walls and locked doors this game
+ * doesn't have become walls (a thin wall on one side of a cell walls off the whole cell), creatures become enemies patrolling up and down or left and right
+ * depending on where they face, and the rest becomes floor. Since a cell only holds one symbol, a
+ * bottom layer tile under Chip, a creature or an item is reported and lost as well.
+ * </p>
+ *
+ * <p>
+ * The map is imported as it is, 32 x 32 with no wall added around it, so a cell keeps the same row and
+ * column as in the original editors. Its edge cells are played like any other and a move off the map is
+ * refused like a move into a wall ({@link Player} checks a move stays on the map).
+ * </p>
+ *
+ * <p>
+ * Every level is decoded when the file is read, which takes a few milliseconds for a full set.
+ * Printing the report of a level set (from src): java model.DatLevelSource CHIPS.DAT
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.2
+ */
+public class DatLevelSource implements LayoutSource {
+    public static final String EXTENSION = ".dat";
+
+    private static final int MAGIC = 0x0002AAAC;
+    private static final int LYNX_MAGIC = 0x0102AAAC; // same format, Lynx rules
+    private static final int SIZE = 32;
+    private static final int RLE = 0xFF;
+    private static final int FLOOR = 0x00;
+    private static final int TITLE_FIELD = 3;
+    private static final int CODES = 0x70;
+    private static final int STACKED = CODES; // counted like a tile code: a bottom tile lost under the top one
+
+    // the name of each tile code
+    private static final String[] NAMES = {
+        "floor", "wall", "chip", "water", "fire", "invisible wall", "thin wall N", "thin wall W",
+        "thin wall S", "thin wall E", "block", "dirt", "ice", "force floor S", "cloning block N", "cloning block W",
+        "cloning block S", "cloning block E", "force floor N", "force floor E", "force floor W", "exit", "blue door", "red door",
+        "green door", "yellow door", "ice corner SE", "ice corner SW", "ice corner NW", "ice corner NE", "blue wall", "fake blue wall",
+        "unused 0x20", "thief", "socket", "green button", "red button", "toggle wall closed", "toggle wall open", "brown button",
+        "blue button", "teleport", "bomb", "trap", "hidden wall", "gravel", "pop-up wall", "hint",
+        "thin wall SE", "clone machine", "random force floor", "drowned chip", "burned chip", "burned chip", "unused 0x36", "unused 0x37",
+        "unused 0x38", "chip in exit", "exit", "exit", "swimming chip N", "swimming chip W", "swimming chip S", "swimming chip E",
+        "bug", "bug", "bug", "bug", "fireball", "fireball", "fireball", "fireball",
+        "ball", "ball", "ball", "ball", "tank", "tank", "tank", "tank",
+        "glider", "glider", "glider", "glider", "teeth", "teeth", "teeth", "teeth",
+        "walker", "walker", "walker", "walker", "blob", "blob", "blob", "blob",
+        "paramecium", "paramecium", "paramecium", "paramecium", "blue key", "red key", "green key", "yellow key",
+        "flippers", "fire boots", "ice skates", "suction boots", "chip", "chip", "chip", "chip"
+    };
+
+    // the symbol of each supported tile code, 0 where it's replaced and reported
+    private static final char[] SYMBOLS = new char[CODES];
+    // what each unsupported tile code is replaced with
+    private static final char[] REPLACEMENTS = new char[CODES];
+
+    static {
+        SYMBOLS[0x00] = '.';
+        SYMBOLS[0x01] = '#';
+        SYMBOLS[0x02] = 'M';
+        SYMBOLS[0x03] = 'W';
+        SYMBOLS[0x04] = 'F';
+        SYMBOLS[0x0C] = 'I';
+        SYMBOLS[0x0D] = 'v';
+        SYMBOLS[0x12] = '^';
+        SYMBOLS[0x13] = '>';
+        SYMBOLS[0x14] = '<';
+        SYMBOLS[0x15] = 'E';
+        SYMBOLS[0x16] = 'D';
+        SYMBOLS[0x17] = 'd';
+        SYMBOLS[0x64] = 'K';
+        SYMBOLS[0x65] = 'k';
+        SYMBOLS[0x68] = 'P';
+        SYMBOLS[0x69] = 'B';
+        for (int code = 0x6C; code <= 0x6F; code++){
+            SYMBOLS[code] = 'S';
+        }
+
+        Arrays.fill(REPLACEMENTS, '.');
+        for (int code : new int[] {0x05, 0x0A, 0x0E, 0x0F, 0x10, 0x11, 0x18, 0x19, 0x1E, 0x22, 0x25, 0x2C, 0x31}){
+            REPLACEMENTS[code] = '#'; // can't be walked through (or not without something this game doesn't have)
+        }
+        for (int code : new int[] {0x06, 0x07, 0x08, 0x09, 0x30}){
+            REPLACEMENTS[code] = '#'; // thin walls, a cell can't be blocked on one side only so the whole cell is
+        }
+        for (int code = 0x1A; code <= 0x1D; code++){
+            REPLACEMENTS[code] = 'I';
+        }
+        for (int code = 0x40; code <= 0x63; code++){
+            REPLACEMENTS[code] = (code & 1) == 0 ? ':' : ';'; // facing N or S patrols up and down, W or E left and right
+        }
+    }
+
+    private String name;
+    private char[][][] layouts;
+    private int[] requiredChips;
+    private String[] titles;
+    private int[][] unsupported; // per level, the count of each unsupported tile code (and STACKED)
+
+    /**
+     * Reads a level set file from the classpath or else from the working directory.
+     *
+     * <p>
+     * If some levels use tiles this game doesn't have, a one line summary is printed to System.err,
+     * {@link #getReport(int)} has the details.
+     * </p>
+     *
+     * @param path the path of the file.
+     * @return the levels.
+     * @throws IOException if the file doesn't exist, can't be read or isn't a valid level set.
+     */
+    public static DatLevelSource load(String path) throws IOException {
+        byte[] data;
+        InputStream in = DatLevelSource.class.getResourceAsStream("/" + path);
+        if (in != null){
+            try (InputStream resource = in){
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                resource.transferTo(out);
+                data = out.toByteArray();
+            }
+        }
+        else if (new File(path).isFile()){
+            data = Files.readAllBytes(new File(path).toPath());
+        }
+        else {
+            throw new IOException(path + " not found");
+        }
+
+        DatLevelSource source = new DatLevelSource(data, path);
+        int levels = 0;
+        for (int n = 1; n <= source.getLevelCount(); n++){
+            if (source.getUnsupportedCount(n) > 0){
+                levels++;
+            }
+        }
+        if (levels > 0){
+            System.err.println(path + ": " + levels + " of " + source.getLevelCount()
+                + " levels use tiles this game doesn't have, they were replaced (java model.DatLevelSource " + path + " lists them)");
+        }
+        return source;
+    }
+
+    /**
+     * Decodes every level of a level set.
+     *
+     * @param data the bytes of the file.
+     * @param name the name of the file, for the error messages.
+     * @throws IOException if it isn't a valid level set.
+     */
+    public DatLevelSource(byte[] data, String name) throws IOException {
+        this.name = name;
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int level = 0;
+
+        try {
+            int magic = in.getInt();
+            if (magic != MAGIC && magic != LYNX_MAGIC){
+                throw new IOException(name + " is not a Chip's Challenge level set");
+            }
+            int count = in.getShort() & 0xFFFF;
+            if (count == 0){
+                throw new IOException(name + " has no levels");
+            }
+
+            layouts = new char[count][][];
+            requiredChips = new int[count];
+            titles = new String[count];
+            unsupported = new int[count][CODES + 1];
+            byte[] top = new byte[SIZE * SIZE];
+            byte[] bottom = new byte[SIZE * SIZE];
+
+            for (level = 0; level < count; level++){
+                int size = in.getShort() & 0xFFFF;
+                int end = in.position() + size;
+                in.getShort(); // level number
+                in.getShort(); // time limit
+                requiredChips[level] = in.getShort() & 0xFFFF;
+                in.getShort(); // map detail
+                decodeLayer(in, top, level);
+                decodeLayer(in, bottom, level);
+                readFields(in, level);
+
+                layouts[level] = combine(top, bottom, unsupported[level], level);
+                requiredChips[level] = Math.min(requiredChips[level], Level.countChips(layouts[level]));
+                in.position(end);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e){
+            throw damaged(level, "it ends too soon");
+        }
+    }
+
+    @Override
+    public int getLevelCount(){
+        return layouts.length;
+    }
+
+    @Override
+    public char[][] getLayout(int levelNumber){
+        return layouts[levelNumber - 1];
+    }
+
+    /**
+     * Returns the chips needed to use the exit, as set in the level set (some levels have spare chips).
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the required chips, at most the number of chips in the level.
+     */
+    @Override
+    public int getRequiredChips(int levelNumber){
+        return requiredChips[levelNumber - 1];
+    }
+
+    /**
+     * Returns the title of a level.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the title, empty if the level has none.
+     */
+    public String getTitle(int levelNumber){
+        return titles[levelNumber - 1];
+    }
+
+    /**
+     * Returns the number of cells of a level that couldn't be imported as they are.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return replaced tiles plus bottom layer tiles lost under the top one.
+     */
+    public int getUnsupportedCount(int levelNumber){
+        int total = 0;
+        for (int count : unsupported[levelNumber - 1]){
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Describes what couldn't be imported as it is in a level.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return e.g. "thief x1, bug x4 (as ':' or ';')", empty if the level was imported as it is.
+     */
+    public String getReport(int levelNumber){
+        Map<String, Integer> counts = new LinkedHashMap<>(); // creatures facing different ways have the same name
+        int[] unsupportedCodes = unsupported[levelNumber - 1];
+        for (int code = 0; code < CODES; code++){
+            if (unsupportedCodes[code] > 0){
+                String replacement = code >= 0x40 && code <= 0x63 ? "':' or ';'" : "'" + REPLACEMENTS[code] + "'";
+                counts.merge(NAMES[code] + " x%d (as " + replacement + ")", unsupportedCodes[code], Integer::sum);
+            }
+        }
+        if (unsupportedCodes[STACKED] > 0){
+            counts.put("tiles under another x%d (lost)", unsupportedCodes[STACKED]);
+        }
+
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()){
+            if (report.length() > 0){
+                report.append(", ");
+            }
+            report.append(String.format(entry.getKey(), entry.getValue()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Decodes one run length encoded layer.
+     *
+     * @param in the level set, at the layer's size.
+     * @param layer where to decode the 32 x 32 tile codes.
+     * @param level the level index, for the error messages.
+     * @throws IOException if the layer doesn't decode to exactly 32 x 32 tiles.
+     */
+    private void decodeLayer(ByteBuffer in, byte[] layer, int level) throws IOException {
+        int length = in.getShort() & 0xFFFF; // not counting itself
+        int end = in.position() + length;
+        int cell = 0;
+        while (in.position() < end){
+            byte tile = in.get();
+            if ((tile & 0xFF) == RLE){
+                int count = in.get() & 0xFF;
+                tile = in.get();
+                if (cell + count > layer.length){
+                    throw damaged(level, "a layer has more than " + layer.length + " tiles");
+                }
+                Arrays.fill(layer, cell, cell + count, tile);
+                cell += count;
+            }
+            else {
+                if (cell == layer.length){
+                    throw damaged(level, "a layer has more than " + layer.length + " tiles");
+                }
+                layer[cell++] = tile;
+            }
+        }
+        if (cell != layer.length){
+            throw damaged(level, "a layer has " + cell + " tiles instead of " + layer.length);
+        }
+    }
+
+    /**
+     * Reads the optional fields of a level, keeping its title.
+     *
+     * @param in the level set, at the fields' size.
+     * @param level the level index.
+     */
+    private void readFields(ByteBuffer in, int level){
+        int fields = in.getShort() & 0xFFFF; // not counting itself
+        int end = in.position() + fields;
+        titles[level] = "";
+        while (in.position() < end){
+            int type = in.get() & 0xFF;
+            int length = in.get() & 0xFF;
+            if (type == TITLE_FIELD){
+                byte[] title = new byte[length];
+                in.get(title);
+                int stop = 0;
+                while (stop < length && title[stop] != 0){
+                    stop++; // the title ends with a 0
+                }
+                titles[level] = new String(title, 0, stop, StandardCharsets.ISO_8859_1);
+            }
+            else {
+                in.position(in.position() + length);
+            }
+        }
+    }
+
+    /**
+     * Merges the two layers into one layout, counting what had to be replaced.
+     *
+     * @param top the top layer.
+     * @param bottom the bottom layer.
+     * @param counts where to count the unsupported tile codes.
+     * @param level the level index, for the error messages.
+     * @return the layout.
+     * @throws IOException if the level doesn't have exactly one start.
+     */
+    private char[][] combine(byte[] top, byte[] bottom, int[] counts, int level) throws IOException {
+        char[][] layout = new char[SIZE][SIZE];
+        int starts = 0;
+        for (int x = 0; x < SIZE; x++){
+            for (int y = 0; y < SIZE; y++){
+                int code = top[x * SIZE + y] & 0xFF;
+                if (code >= CODES){
+                    throw damaged(level, "unknown tile code " + code);
+                }
+                if ((bottom[x * SIZE + y] & 0xFF) != FLOOR){
+                    counts[STACKED]++;
+                }
+
+                char symbol = SYMBOLS[code];
+                if (symbol == 0){
+                    counts[code]++;
+                    symbol = REPLACEMENTS[code];
+                }
+                else if (symbol == 'S'){
+                    starts++;
+                }
+                layout[x][y] = symbol;
+            }
+        }
+        if (starts != 1){
+            throw damaged(level, "it has " + starts + " starting positions for Chip");
+        }
+        return layout;
+    }
+
+    private IOException damaged(int level, String message){
+        return new IOException(name + " level " + (level + 1) + " is damaged: " + message);
+    }
+
+    /**
+     * Imports a level set and prints what couldn't be imported as it is in each level.
+     *
+     * @param args the level set file.
+     * @throws IOException if it can't be read or isn't a valid level set.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1){
+            System.err.println("Usage: java model.DatLevelSource <levels" + EXTENSION + ">");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        byte[] data = Files.readAllBytes(new File(args[0]).toPath());
+        DatLevelSource source = new DatLevelSource(data, args[0]);
+        long decoded = System.nanoTime();
+        for (int n = 1; n <= source.getLevelCount(); n++){
+            new Level(n, source.getLayout(n), source.getRequiredChips(n)); // the game builds them one at a time, check they all build
+        }
+        long built = System.nanoTime();
+
+        Map<String, Integer> totals = new TreeMap<>();
+        for (int n = 1; n <= source.getLevelCount(); n++){
+            String report = source.getReport(n);
+            System.out.printf("%3d %-28s %s%n", n, source.getTitle(n), report.isEmpty() ? "ok" : report);
+            for (int code = 0; code <= CODES; code++){
+                int count = source.unsupported[n - 1][code];
+                if (count > 0){
+                    totals.merge(code == STACKED ? "tiles under another" : NAMES[code], count, Integer::sum);
+                }
+            }
+        }
+        System.out.println("Unsupported over the whole set: " + (totals.isEmpty() ? "none" : totals));
+        System.out.printf("%d levels decoded in %.1f ms, their maps built in %.1f ms%n", source.getLevelCount(),
+            (decoded - start) / 1e6, (built - decoded) / 1e6);
+    }
+}
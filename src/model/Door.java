@@ -13,24 +13,24 @@ package model;
  */
 
 public class Door implements EffectOnPlayer{
-    private int xPosition;
-    private int yPosition;
-    private boolean isLocked;
-    private String color;
-    private char symbol;
+    private final boolean isLocked;
+    private final String color;
+    private final char symbol;
     
     /**
-     * Constructs a new door object with a specified coordinate, color and symbol
+     * Constructs a new door object with a specified color, symbol and locked state.
+     * 
+     * <p>
+     * Doors are shared, immutable instances (see {@link Cell#door(int, boolean)}), the map keeps
+     * where each door is and whether it has been unlocked.
+     * </p>
      * 
-     * @param xPosition the x coordinate of the Door
-     * @param yPosition the y coordinate of the Door
      * @param color the represented color of the door
      * @param symbol the symbol or character representing the door in the map
+     * @param isLocked whether the door is locked
      */
-    public Door (int xPosition, int yPosition, String color, char symbol) {
-        this.xPosition = xPosition;
-        this.yPosition = yPosition;
-        this.isLocked = true;
+    public Door (String color, char symbol, boolean isLocked) {
+        this.isLocked = isLocked;
         this.color = color;
         this.symbol = symbol;
     }
@@ -63,7 +63,6 @@ public class Door implements EffectOnPlayer{
             return true;  // Player has the key
         }
 
-        System.out.println("Door is locked! You need a " + this.color + " key to unlock it!");
         return false;
     }
     
@@ -86,37 +85,19 @@ public class Door implements EffectOnPlayer{
     public void onPlayerEnter(Player player, Maps map) {
 
         Inventory inventory = player.getInventory();
+        int x = player.getXPosition(); // the player is standing on the door
+        int y = player.getYPosition();
         
         if (canPlayerEnter(player) == true) {
             if (this.isLocked) {  // Only if actually locked
-                this.isLocked = false;
                 inventory.useKey(this.color);
-                System.out.println("Door unlocked using player's " + this.color + " key!");
+                map.unlockDoor(x, y);
             }
-            Tile tile = new FloorTile(this.xPosition, this.yPosition, '.');
-            map.setTile(this.xPosition, this.yPosition, tile);
+            map.setTile(x, y, Cell.tile(Cell.FLOOR));
         }
 
     }
     
-    /**
-     * returns the x coordinate of the door.
-     * 
-     * @return xPosition
-     */
-    public int getXPosition() {
-        return xPosition;
-    }
-    
-    /**
-     * returns the y coordinate of the door.
-     * 
-     * @return yPosition
-     */
-    public int getYPosition() {
-        return yPosition;
-    }
-    
     /**
      * returns specific color of the door.
      * 
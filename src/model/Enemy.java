@@ -16,6 +16,7 @@ package model;
  */
 public class Enemy extends Characters implements EffectOnPlayer{
     private char direction;
+    private int occupantId; // index of the enemy in the map's occupancy index
 
     /**
      * Constructs an enemy at the specified direction with an initial movement direction.
@@ -29,6 +30,19 @@ public class Enemy extends Characters implements EffectOnPlayer{
         this.direction = direction;
     }
 
+    /**
+     * Puts the enemy back at a position and direction, used when a level is reset.
+     * 
+     * @param xPosition x coordinate.
+     * @param yPosition y coordinate.
+     * @param direction movement direction (either w, a, s, d).
+     */
+    void place(int xPosition, int yPosition, char direction) {
+        this.xPosition = xPosition;
+        this.yPosition = yPosition;
+        this.direction = direction;
+    }
+
     /**
      * Moves the enemy in its current direction if the next position is valid.
      * 
@@ -60,10 +74,15 @@ public class Enemy extends Characters implements EffectOnPlayer{
         }
 
         if (canMoveTo(nextX, nextY, map)){
+            int previousX = this.xPosition;
+            int previousY = this.yPosition;
             this.xPosition = nextX;
             this.yPosition = nextY;
+            map.moveEnemy(this, previousX, previousY);
         }
         else {
+            map.markDirty(this.xPosition, this.yPosition); // the sprite faces the other way now
+
             // reverses direction
             switch(this.direction) {
                 case 'w': this.direction = 's'; 
@@ -130,6 +149,24 @@ public class Enemy extends Characters implements EffectOnPlayer{
         return direction;
     }
 
+    /**
+     * Returns the id of the enemy in the map's occupancy index.
+     * 
+     * @return occupant id.
+     */
+    int getOccupantId(){
+        return occupantId;
+    }
+
+    /**
+     * Sets the id of the enemy in the map's occupancy index.
+     * 
+     * @param occupantId the id assigned by the map.
+     */
+    void setOccupantId(int occupantId){
+        this.occupantId = occupantId;
+    }
+
     /**
      * Returns the character representing the enemy's sprite based on the direction.
      * 
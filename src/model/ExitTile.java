@@ -9,13 +9,11 @@ package model;
 public class ExitTile extends Tile{
 
     /**
-     * Constructs an Exit tile with a specific coordinates and a dedicated symbol. 
-     * @param xPosition x coordinate of the exit tile
-     * @param yPosition y coordinate of the exit tile
+     * Constructs an Exit tile with a dedicated symbol. 
      * @param symbol represents the symbol for it (which is then connected to the image).
      */
-    public ExitTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public ExitTile(char symbol){
+        super(symbol);
     }
 
     /**
@@ -14,14 +14,12 @@ public class FireTile extends Tile implements EffectOnPlayer{
 
     /**
      * 
-     * Constructs a fire tile at the specified coordinates and a given symbol.
+     * Constructs a fire tile with a given symbol.
      * 
-     * @param xPosition x coordinate.
-     * @param yPosition y coordinate.
      * @param symbol the char representing the fire tile (used for mapping to image).
      */
-    public FireTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public FireTile(char symbol){
+        super(symbol);
     }
 
     /**
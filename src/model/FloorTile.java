@@ -9,14 +9,12 @@ package model;
 public class FloorTile extends Tile{
 
     /**
-     * Constructs the floor tile at specified coordinates and a . symbol.
+     * Constructs the floor tile with a . symbol.
      * 
-     * @param xPosition x coordinate.
-     * @param yPosition y coordinate.
      * @param symbol the char representing the floor tile (used for mapping to image).
      */
-    public FloorTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public FloorTile(char symbol){
+        super(symbol);
     }
 
 
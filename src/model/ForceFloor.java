@@ -9,21 +9,19 @@ package model;
  * 
  * @author Anton Luis Galido
  * @author Melangelo Guanzon
- * @version 1.0
+ * @version 1.2
  */
-public class ForceFloor extends Tile implements EffectOnPlayer{
-    private String direction;
+public class ForceFloor extends Tile implements EffectOnPlayer, SlideTile{
+    private final String direction;
 
     /**
-     * Constructs a force floor tile at the specified coordinates with a symbol and a push direction.
+     * Constructs a force floor tile with a symbol and a push direction.
      * 
-     * @param xPosition x coordinate of the tile.
-     * @param yPosition y coordinate of the tile.
      * @param symbol the char representing the force floor tile (used for mapping to image).
      * @param direction the direction the player will be pushed to.
      */
-    public ForceFloor(int xPosition, int yPosition, char symbol, String direction){
-        super(xPosition, yPosition, symbol);
+    public ForceFloor(char symbol, String direction){
+        super(symbol);
         this.direction = direction;
     }
 
@@ -46,19 +44,32 @@ public class ForceFloor extends Tile implements EffectOnPlayer{
      */
     @Override
     public void onPlayerEnter(Player player, Maps map){
+        char push = getSlideDirection(player.getLastDirection());
+
+        if (push != 0){
+            player.move(push, map);
+        }
+    }
+
+    /**
+     * Returns the key direction matching the push direction of the tile, whichever way the player came in.
+     * 
+     * @param arrivalDirection the direction the player entered the tile (unused).
+     * @return 'w', 's', 'd' or 'a' for Up, Down, Right and Left.
+     */
+    @Override
+    public char getSlideDirection(char arrivalDirection){
         switch(direction){
             case "Up":
-                player.move('w', map);
-                break;
+                return 'w';
             case "Down":
-                player.move('s', map);
-                break;
+                return 's';
             case "Right":
-                player.move('d', map);
-                break;
+                return 'd';
             case "Left":
-                player.move('a', map);
-                break;
+                return 'a';
+            default:
+                return 0;
         }
     }
 
@@ -1,6 +1,12 @@
 package model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 
@@ -11,10 +17,16 @@ import java.util.ArrayList;
  * and the visual components as well.
  * </p>
  * 
+ * <p>
+ * Only the level being played is kept. The other levels stay in the {@link LevelSource} until they're
+ * loaded, and while a level is played the next one is already built on a background thread, so moving
+ * on to it doesn't wait for its map to be created.
+ * </p>
+ * 
  * @author Melangelo Guazon
  * @author Anton Galido
  * 
- * @version 1.1
+ * @version 1.3
  */
 public class Game {
     private Level currentLevel;
@@ -22,26 +34,61 @@ public class Game {
     private boolean isRunning;
     private int totalLevels;
     private int currentLevelNum;
-    private Level[] levels;
+    private LevelSource source;
+    private CompletableFuture<Level> prefetched; //the next level, being built in the background
+    private int prefetchedNum;
+
+    // builds the next levels, one at a time and below the simulation's priority
+    private static final ExecutorService PREFETCH = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "level prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
 
     /**
-     * Constructs a new game object, and initalizes the levels and player as well.
+     * Constructs a new game object with the levels of {@link TextLevelSource#DEFAULT_PATH}.
      * 
      * <p>
-     * sets the current level num to 1 and puts the player in the start position.
-     * Also initializes the Scanner (sc) for user input
+     * The levels ship with the game, so not being able to read them is an UncheckedIOException
+     * rather than something every caller has to handle.
      * </p>
      */
     public Game(){
+        this(loadDefaultLevels());
+    }
+
+    /**
+     * Constructs a new game object, and initalizes the first level and player as well.
+     * 
+     * <p>
+     * sets the current level num to 1 and puts the player in the start position.
+     * Level 2 starts being built in the background.
+     * </p>
+     * @param source the levels to play, in order, read from this game's threads.
+     */
+    public Game(LevelSource source){
+        this.source = source;
         this.currentLevelNum = 1;
-        this.totalLevels = 2;
-        levels = new Level[this.totalLevels];
-        levels[0] = new Level(1);
-        levels[1] = new Level(2);
-        this.currentLevel = levels[currentLevelNum-1];
-        this.player = new Player(levels[currentLevelNum-1].getPlayerStartX(), //sets player at starting point of a level
-                            levels[currentLevelNum-1].getPlayerStartY());
+        this.totalLevels = source.getLevelCount();
+        this.currentLevel = buildLevel(currentLevelNum);
+        this.player = new Player(currentLevel.getPlayerStartX(), //sets player at starting point of a level
+                            currentLevel.getPlayerStartY());
         this.isRunning = true;
+        prefetch(currentLevelNum + 1);
+    }
+
+    /**
+     * Reads the levels that ship with the game.
+     * 
+     * @return the default levels.
+     */
+    private static LevelSource loadDefaultLevels(){
+        try {
+            return TextLevelSource.load(TextLevelSource.DEFAULT_PATH);
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -100,16 +147,22 @@ public class Game {
      * Loads a specific level.
      * 
      * <p>
-     * pre-condition: level number should be greater than 0 and no more than 2
+     * pre-condition: level number should be greater than 0 and no more than the total levels
      * post-condition: current level is set to the specified and player is reset
      * </p>
+     * <p>
+     * Another level than the current one is always as it is at the start, the levels played before aren't kept.
+     * </p>
      * @param levelNumber the specific level num to be loaded.
-     * @param resetLevel whether to reset the level (true for restart, false for first time).
+     * @param resetLevel whether to reset the level if it's the current one (true for restart).
      */
     public void loadLevel(int levelNumber, boolean resetLevel){
-        this.currentLevel = levels[levelNumber-1];
-        
-        if (resetLevel) {
+        if (levelNumber != currentLevelNum){
+            this.currentLevel = takeLevel(levelNumber); //freshly built, nothing to reset
+            this.currentLevelNum = levelNumber;
+            prefetch(levelNumber + 1);
+        }
+        else if (resetLevel) {
             currentLevel.reset();
         }
         
@@ -124,8 +177,56 @@ public class Game {
      * </p>
      */
     public void nextLevel(){
-        this.currentLevelNum++;
-        loadLevel(this.currentLevelNum, false); // false = don't reset, it's a new level
+        loadLevel(this.currentLevelNum + 1, false); // false = don't reset, it's a new level
+    }
+
+    /**
+     * Returns a level, the one built in the background if it's that one, or else builds it now.
+     * 
+     * @param levelNumber the level number.
+     * @return the level, as it is at the start.
+     */
+    private Level takeLevel(int levelNumber){
+        CompletableFuture<Level> level = prefetched;
+        prefetched = null;
+        if (level == null || prefetchedNum != levelNumber){
+            if (level != null){
+                level.cancel(false); //jumped to another level, it's not needed
+            }
+            return buildLevel(levelNumber);
+        }
+
+        try {
+            return level.join(); //usually done long ago
+        } catch (CompletionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause(); //e.g. a damaged level in a pack, same as building it here
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts building a level in the background, if there's such a level.
+     * 
+     * @param levelNumber the level number.
+     */
+    private void prefetch(int levelNumber){
+        if (levelNumber > totalLevels){
+            return;
+        }
+        prefetchedNum = levelNumber;
+        prefetched = CompletableFuture.supplyAsync(() -> buildLevel(levelNumber), PREFETCH);
+    }
+
+    /**
+     * Has the source build a level and its map.
+     * 
+     * @param levelNumber the level number.
+     * @return the level.
+     */
+    private Level buildLevel(int levelNumber){
+        return source.createLevel(levelNumber);
     }
     
     
@@ -146,12 +247,29 @@ public class Game {
      */
     public void updateEnemies(){
         ArrayList<Enemy> enemies = currentLevel.getEnemies();
+        Maps map = currentLevel.getMap();
         for (Enemy enemy : enemies) {
-            enemy.move(enemy.getDirection(), currentLevel.getMap());
-            if (enemy.getXPosition() == player.getXPosition() &&
-                enemy.getYPosition() == player.getYPosition()){
-                    enemy.onPlayerEnter(player, currentLevel.getMap());
-            }
+            enemy.move(enemy.getDirection(), map);
+        }
+
+        // each enemy only moves once, so checking the player's cell after all of them moved is the same as checking after each move
+        Enemy enemy = map.getEnemyAt(player.getXPosition(), player.getYPosition());
+        if (enemy != null){
+            enemy.onPlayerEnter(player, map);
+        }
+    }
+
+    /**
+     * Checks if the player is on the same tile as any enemy and kills them if so.
+     * 
+     * <p>
+     * Pre-condition: game and player initialized  
+     * Post-condition: player is killed if collision detected.
+     * </p>
+     */
+    public void checkCollisions(){
+        if (currentLevel.getMap().hasEnemyAt(player.getXPosition(), player.getYPosition())){
+            player.killPlayer("caught by enemy");
         }
     }
 
@@ -227,6 +345,24 @@ public class Game {
         return currentLevel;
     }
 
+    /**
+     * Returns the number of the level currently being played.
+     * 
+     * @return the current level number (starting from 1).
+     */
+    public int getCurrentLevelNum(){
+        return currentLevelNum;
+    }
+
+    /**
+     * Returns the total number of levels in the game.
+     * 
+     * @return total levels.
+     */
+    public int getTotalLevels(){
+        return totalLevels;
+    }
+
     /**
      * Returns a list of enemies in the current level.
      * 
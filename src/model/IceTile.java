@@ -10,20 +10,18 @@ package model;
  * </p>
  * 
  * @author Anton Luis Galido
- * @version 1.0
+ * @version 1.2
  */
-public class IceTile extends Tile implements EffectOnPlayer{
+public class IceTile extends Tile implements EffectOnPlayer, SlideTile{
 
     /**
      * 
-     * Constructs an Ice tile at the specified coordinates and a given symbol.
+     * Constructs an Ice tile with a given symbol.
      * 
-     * @param xPosition x coordinate.
-     * @param yPosition y coordinate.
      * @param symbol the char representing the Ice tile (used for mapping to image).
      */
-    public IceTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public IceTile(char symbol){
+        super(symbol);
     }
 
     /**
@@ -49,10 +47,24 @@ public class IceTile extends Tile implements EffectOnPlayer{
      */
     @Override
     public void onPlayerEnter(Player player, Maps map){
-        char direction = player.getLastDirection();
+        char direction = getSlideDirection(player.getLastDirection());
 
-        if (direction == 'w' || direction == 'a' || direction == 's' || direction == 'd') {
+        if (direction != 0) {
             player.move(direction, map);
         }
     }
+
+    /**
+     * Returns the direction the player keeps sliding in, the one they entered the tile.
+     * 
+     * @param direction the direction the player entered the tile.
+     * @return the same direction, or 0 if the player never moved.
+     */
+    @Override
+    public char getSlideDirection(char direction){
+        if (direction == 'w' || direction == 'a' || direction == 's' || direction == 'd') {
+            return direction;
+        }
+        return 0;
+    }
 }
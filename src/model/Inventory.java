@@ -38,11 +38,10 @@ public class Inventory {
      * Adds the key that's collected to the inventory.
      * 
      * pre-condition: key object must be initialized
-     * post-condition: key count is increased then marked collected
+     * post-condition: key count is increased
      * 
      * <p>
-     * Increments the specific key based on the color
-     * then marks it as collected.
+     * Increments the specific key based on the color.
      * </p>
      * 
      * @param key the key being collected
@@ -54,7 +53,6 @@ public class Inventory {
         else{
             this.redKeys++;
         }
-        key.setIsCollected(true);
     }
 
     /**
@@ -109,10 +107,10 @@ public class Inventory {
     /**
      * Adds the boots that's collected to the inventory.
      * 
-     * Sets to true on the flag of fireBoots or flippers and marks it as collected.
+     * Sets to true on the flag of fireBoots or flippers.
      * 
      * pre-condition: boots object must be initialized
-     * post-condition: is set to true, then marked as collected
+     * post-condition: is set to true
      * 
      * @param boots the boots being collected
      */
@@ -126,7 +124,6 @@ public class Inventory {
         else if (boots.getType().equals("teleportboots")) {
             teleportBoots = true;
         }
-        boots.setIsCollected(true);
     }
 
     
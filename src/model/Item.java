@@ -4,34 +4,23 @@ package model;
  * Represents the general items in the game that the player can collect.
  * 
  * <p>
- * Each item has their own positions, symbols, and collected status.
+ * Items are shared, immutable instances (one per item kind, see {@link Cell#item(int)}).
+ * Their position and whether they've been collected are kept by the map cell they're on.
  * </p>
  * 
  * @author Melangelo Guanzon
  * @version 1.0
  */
 public abstract class Item {
-    private int xPosition;
-    private int yPosition;
-    private boolean isCollected;
-    private char symbol;
+    private final char symbol;
 
     /**
-     * Constructs an Item with a specified position and symbol.
+     * Constructs an Item with a specified symbol.
      * 
-     * <p>
-     * The item is not initially set as collected.
-     * </p>
-     * 
-     * @param xPosition x coordinate
-     * @param yPosition y coordinate
      * @param symbol the character representing an item on the map.
      */
-    public Item(int xPosition, int yPosition, char symbol){
-        this.xPosition = xPosition;
-        this.yPosition = yPosition;
+    public Item(char symbol){
         this.symbol = symbol;
-        this.isCollected = false;
     }
 
     /**
@@ -39,57 +28,18 @@ public abstract class Item {
      *  
      * <p>
      * pre-condition: the player object is initialized and has a valid inventory
-     * post-condition: the boots are added to the player's inventory and marked collected
+     * post-condition: the item is added to the player's inventory
      * </p>
      * @param player the player itself.
      */
     public abstract void onPlayerPickup(Player player);
 
     /**
-     * Returns the x coordinate of the key.
-     * 
-     * @return xPosition
-     */
-    public int getXPosition(){
-        return xPosition;
-    }
-
-    /**
-     * Returns the y coordinate of the key.
-     * 
-     * @return yPosition
-     */
-    public int getYPosition(){
-        return yPosition;
-    }
-    /**
-     * Returns the symbol representing the key.
+     * Returns the symbol representing the item.
      * 
      * @return symbol
      */
     public char getSymbol(){
         return symbol;
     }
-
-    /**
-     * <p>
-     * Returns true or false, depending on whether the key has been collected
-     * by the player.
-     * </p>
-     * 
-     * @return isCollected (true if collected, false otherwise)
-     */
-    public boolean getIsCollected(){
-        return isCollected;
-    }
-
-    /**
-     * Sets the collected status of the key
-     * 
-     * @param isCollected (true if key has been collected, false otherwise)
-     * 
-     */
-    public void setIsCollected(boolean isCollected){
-        this.isCollected = isCollected;
-    }
 }
@@ -15,19 +15,17 @@ package model;
  */
 
 public class Key extends Item{
-    private String color;
+    private final String color;
     /**
-     * Constructs a key with a specified coordinate, color and symbol for representation
+     * Constructs a key with a specified color and symbol for representation
      * 
-     * post-condition: Key object is created with given coordinates, color, symbol, and isCollected set to false
+     * post-condition: Key object is created with given color and symbol
      * 
-     * @param xPosition the x coordinate of the Key
-     * @param yPosition the y coordinate of the key
      * @param color the color of the key
      * @param symbol the symbol representing each key type
      */
-    public Key(int xPosition, int yPosition, char symbol, String color){
-        super(xPosition, yPosition, symbol);
+    public Key(char symbol, String color){
+        super(symbol);
         this.color = color;
     }
 
@@ -38,7 +36,6 @@ public class Key extends Item{
     @Override
     public void onPlayerPickup(Player player){
         player.getInventory().addKey(this);
-        this.setIsCollected(true);
     }
 
     /**
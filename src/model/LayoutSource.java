@@ -0,0 +1,52 @@
+package model;
+
+/**
+ * Provides the layouts of the levels of a campaign, and builds each level from its layout.
+ *
+ * <p>
+ * A layout is a grid of the symbols understood by {@link Level#createMap()}, indexed [x][y] where x is
+ * the row and y the column. Every row of a layout has the same length, but levels don't all need the
+ * same size.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public interface LayoutSource extends LevelSource {
+
+    /**
+     * Returns the layout of a level.
+     *
+     * <p>
+     * pre-condition: levelNumber is from 1 to {@link #getLevelCount()}
+     * </p>
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the layout, which the caller must not change.
+     */
+    char[][] getLayout(int levelNumber);
+
+    /**
+     * Returns the number of microchips needed to use the exit of a level.
+     * By default that's every microchip of the layout, sources that store it override this.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the required chips.
+     */
+    @Override
+    default int getRequiredChips(int levelNumber){
+        return Level.countChips(getLayout(levelNumber));
+    }
+
+    /**
+     * Builds a level from its layout.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return a new level, not yet played.
+     */
+    @Override
+    default Level createLevel(int levelNumber){
+        return new Level(levelNumber, getLayout(levelNumber), getRequiredChips(levelNumber));
+    }
+}
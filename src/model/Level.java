@@ -6,7 +6,7 @@ import java.util.ArrayList;
  * 
  * @author Melangelo Guanzon 
  * @author Anton Luis Galido
- * @version 1.1
+ * @version 1.6
  */
 
 public class Level {
@@ -16,91 +16,130 @@ public class Level {
     private int requiredChips;
     private int playerStartX;
     private int playerStartY;
-    private int exitX;
-    private int exitY;
     private int width;
     private int height;
     private boolean isCompleted;
     private ArrayList<Enemy> enemies;
+    private int[] enemyStartX; // where each enemy was when the map was created, for reset
+    private int[] enemyStartY;
+    private char[] enemyStartDirection;
 
-    private static final char[][] LEVEL_1_LAYOUT ={
-    {'#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#'}, 
-    {'#','.','E','.','.','.','#','F','F','F','F','F','F','#','M','.','B','.','.','#'},
-    {'#','.','.','.','.','.','d','F','F','F','k','F','F','#','.','.','.','.','.','#'},
-    {'#','.','.','.','.','.','#','F','F','F','F','F','F','#','#','#','I','#','#','#'},
-    {'#','#','#','#','#','#','#','F','F','F','F','F','#','#','#',';','.','.','#','#'},
-    {'#','.','.','.','.','.','#','#','#','d','#','#','#','#','#','#','I','#','#','#'},
-    {'#','.','.','I','.','.','#','.','.','.','.','.','.','#','I','I','I','I','I','#'},
-    {'#','O','O','k','I','I','d','.','.','.','.','.','.','D','.','.','.','.','.','#'},
-    {'#','M','O','I','.','.','#','.','k','.','.','K','.','#','.','.','M','.','.','#'},
-    {'#','#','#','#','#','#','#','.','.','I','I','I','.','#','.','.','.','.','.','#'},
-    {'#','.','.','.',':','.','#','.','.','I','S','I','.','#','.','.','.','.','.','#'},
-    {'#','.','.','.','.','.','#','.','.','I','I','I','.','#','.','.','.','.','.','#'},
-    {'#','M','.','T','.','I','d','.','M','.','.','M','.','#','#','#','#','#','#','#'},
-    {'#','.','.','.','.','.','#','.','.','.','.','.','.','#','W','W','W','W','W','#'},
-    {'#','.','.','.','.','.','#','#','#','#','D','#','#','#','W','W','W','W','W','#'},
-    {'#','.','P','.','.','.','.','#','W','W','W','W','W','W','W','W','W','W','W','#'},
-    {'#','.','.','.','.','.','.','#','W','W','W','W','W','W','W','W','W','W','W','#'},
-    {'#','.','K','.','.','M','.','#','W','W','W','W','k','W','W','W','W','W','W','#'},
-    {'#','.','.','.','.','.','.','#','W','W','W','W','W','W','W','W','W','W','W','#'},
-    {'#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#'}}; 
-
-    private static final char[][] LEVEL_2_LAYOUT = {
-    {'#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#'}, 
-    {'#','S','.','.','M','.','.','.','.','#','K','.','.','.','.','M','.','.','.','#'},
-    {'#','.','#','#','#','#','#','.','#','#','#','#','#','.','#','#','#','#','.','#'},
-    {'#','M','>','>','>','>','>','P','#','W','W','W','#','.','#','F','F','F','.','#'},
-    {'#','.','#','#','#','#','#','K','#','W','k','W','#','.','#','F','M','F','.','#'},
-    {'#','.','.','.','.','.','.','.','.','W','W','W','D','.','.','>','>','>','.','#'},
-    {'#','#','#','D','#','#','#','#','#','#','#','#','#','.','#','#','#','#','.','#'},
-    {'#','.','^','^','^','M','^','^','^','.','.','.','.','.','.','.','.','.','M','#'},
-    {'#','.','.','#','#','#','#','#','.','.','#','#','#','#','#','#','#','.','#','#'},
-    {'#','K','.','>','>','M','>','>','.','#','#','W','W','W','W','W','#','.','B','#'},
-    {'#','.','#','#','#','#','#','.','.','#','W','W','W','W','W','W','W','d','#','#'},
-    {'#','.','^','^','^','^','^','.','#','#','W','W','W','W','W','W','#','.','#','#'},
-    {'#','.','#','#','#','#','#','.','#','F','F','F','F','F','F','F','#','.','k','#'},
-    {'#','.','.','.','.','.','.','.','.','F','F','F','F','F','F','F','#','.','#','#'},
-    {'#','#','#','.','#','#','#','#','#','#','#','#','#','#','#','#','#','.','M','#'},
-    {'#','<','<','<','<','<','<','<','.','.','.','.','.','.','.','.','.','.','#','#'},
-    {'#','#','#','#','#','#','#','#','.','.','v','v','v','v','v','v','.','#','#','#'},
-    {'#','M','.','.','.','.','.','.','.','#','#','#','#','#','#','#','d','.','.','#'},
-    {'#','.','#','#','#','#','#','#','.','#','E','.','.','.','.','.','.','.','.','#'},
-    {'#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#','#'}};
-
-    private static final int LEVEL_1_REQUIRED_CHIPS = 7; 
-    private static final int LEVEL_2_REQUIRED_CHIPS = 9; 
+    /** Every symbol a layout may use, see {@link #createMap()}. */
+    public static final String SYMBOLS = "#.FWIOE><^vdDkKBPTMS:;";
 
     /**
-     * Constructs a level based on the level num.
+     * Constructs a level from its layout, where every microchip is required.
      * 
-     * Initializes the layout, required chips, and the actual map associated.
+     * <p>
+     * pre-condition: layout has at least one row, all rows the same length, one start and at least one exit
+     * post-condition: Level object is created with map initialized
+     * </p>
+     * @param levelNumber The level num, starting from 1.
+     * @param layout the symbols of each cell, [x][y] with x the row (see {@link LayoutSource}).
+     */
+    public Level (int levelNumber, char[][] layout){
+        this(levelNumber, layout, countChips(layout));
+    }
+
+    /**
+     * Constructs a level from its layout, then creates the actual map.
      * 
      * <p>
-     * pre-condition: levelNumber must be 1 or 2
+     * pre-condition: layout has at least one row, all rows the same length, one start and at least one exit
      * post-condition: Level object is created with map initialized
      * </p>
-     * @param levelNumber The level num to be initialized (either 1 or 2 only).
+     * @param levelNumber The level num, starting from 1.
+     * @param layout the symbols of each cell, [x][y] with x the row (see {@link LayoutSource}).
+     * @param requiredChips the microchips needed to use the exit, at most the number in the layout.
      */
-    public Level (int levelNumber){
+    public Level (int levelNumber, char[][] layout, int requiredChips){
         this.levelNumber = levelNumber;
         this.isCompleted = false;
-
-        switch(this.levelNumber){
-            case 1:
-                this.layout = LEVEL_1_LAYOUT;
-                this.requiredChips = LEVEL_1_REQUIRED_CHIPS;
-                break;
-            case 2:
-                this.layout = LEVEL_2_LAYOUT;
-                this.requiredChips = LEVEL_2_REQUIRED_CHIPS;
-                break;
-        }
+        this.layout = layout;
+        this.requiredChips = requiredChips;
 
         this.height = layout.length; 
         this.width = layout[0].length; 
         createMap();
     }
 
+    /**
+     * Constructs a level around a map that's already built, for maps too big to have a layout.
+     * 
+     * <p>
+     * pre-condition: the map holds its cells and start position, the enemies aren't on it yet
+     * post-condition: the enemies are added to the map and its baseline is saved
+     * </p>
+     * @param levelNumber The level num, starting from 1.
+     * @param map the map, e.g. a {@link ChunkedMaps}.
+     * @param enemies the enemies at their start positions.
+     * @param requiredChips the microchips needed to use the exit.
+     */
+    public Level (int levelNumber, Maps map, ArrayList<Enemy> enemies, int requiredChips){
+        this.levelNumber = levelNumber;
+        this.isCompleted = false;
+        this.requiredChips = requiredChips;
+        this.map = map;
+        this.height = map.getHeight();
+        this.width = map.getWidth();
+        this.playerStartX = map.getPlayerStartX();
+        this.playerStartY = map.getPlayerStartY();
+        this.enemies = enemies;
+        placeEnemies();
+    }
+
+    /**
+     * Counts the microchips of a layout.
+     * 
+     * @param layout the symbols of each cell.
+     * @return the number of 'M'.
+     */
+    public static int countChips(char[][] layout){
+        int chips = 0;
+        for (char[] row : layout){
+            for (char symbol : row){
+                if (symbol == 'M'){
+                    chips++;
+                }
+            }
+        }
+        return chips;
+    }
+
+    /**
+     * Checks that a layout can be played: all its rows have the same length, it only uses the symbols
+     * of {@link #SYMBOLS}, and it has exactly one start 'S' and at least one exit 'E' (any exit completes
+     * the level, see {@link #checkCompletion(Player)}).
+     * 
+     * @param layout the symbols of each cell, at least one row.
+     * @return what's wrong with the layout, null if nothing.
+     */
+    public static String checkLayout(char[][] layout){
+        int starts = 0;
+        int exits = 0;
+        for (int x = 0; x < layout.length; x++){
+            if (layout[x].length != layout[0].length){
+                return "row " + (x + 1) + " has " + layout[x].length + " cells, the first row has " + layout[0].length;
+            }
+            for (int y = 0; y < layout[x].length; y++){
+                char symbol = layout[x][y];
+                if (SYMBOLS.indexOf(symbol) < 0){
+                    return "unknown symbol '" + symbol + "' in row " + (x + 1) + ", column " + (y + 1);
+                }
+                if (symbol == 'S'){
+                    starts++;
+                }
+                else if (symbol == 'E'){
+                    exits++;
+                }
+            }
+        }
+        if (starts != 1 || exits == 0){
+            return "needs one start 'S' and at least one exit 'E', it has " + starts + " and " + exits;
+        }
+        return null;
+    }
+
 
     /**
      * This initializes and fills the map with the appropriate and corresponding elements.
@@ -109,11 +148,24 @@ public class Level {
      * pre-condition: layout array must be initialized
      * post-condition: map is created with tiles, doors, keys, boots, characters, and microchips
      * </p>
+     * <p>
+     * A level without a layout can't be rebuilt, its map is reset instead.
+     * </p>
      */
     public void createMap(){
-        Tile[][] tiles = new Tile[this.height][this.width];
-        Door[][] doors = new Door[this.height][this.width];
-        Item[][] items = new Item[this.height][this.width];
+        if (layout == null){
+            reset();
+            return;
+        }
+
+        // reuse the existing map so resetting doesn't allocate a new grid each time
+        Maps map = this.map;
+        if (map == null){
+            map = new Maps(this.width, this.height);
+        }
+        else {
+            map.clear();
+        }
         enemies = new ArrayList<Enemy>();
 
         for (int x = 0; x < height; x++){
@@ -121,91 +173,109 @@ public class Level {
                 char symbol = layout[x][y];
                 switch(symbol){
                     case '#': 
-                        tiles[x][y] = new WallTile(x, y, symbol); //wall tile
+                        map.setTile(x, y, Cell.tile(Cell.WALL)); //wall tile
                         break;
                     case '.':
-                        tiles[x][y] = new FloorTile(x, y, symbol); //floor tile
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR)); //floor tile
                         break;
                     case 'F':
-                        tiles[x][y] = new FireTile(x, y, symbol); //fire tile
+                        map.setTile(x, y, Cell.tile(Cell.FIRE)); //fire tile
                         break;
                     case 'W':
-                        tiles[x][y] = new WaterTile(x, y, symbol); //water tile
+                        map.setTile(x, y, Cell.tile(Cell.WATER)); //water tile
                         break;
                     case 'I':
-                        tiles[x][y] = new IceTile(x, y, symbol); //ice tile
+                        map.setTile(x, y, Cell.tile(Cell.ICE)); //ice tile
                         break;
                     case 'O':
-                        tiles[x][y] = new TeleportTile(x, y, symbol); //teleporter tile
+                        map.setTile(x, y, Cell.tile(Cell.TELEPORT)); //teleporter tile
                         break;
                     case 'E':
-                        this.exitX = x;
-                        this.exitY = y;
-                        tiles[x][y] = new ExitTile(x, y, symbol); //exit tile
+                        map.setTile(x, y, Cell.tile(Cell.EXIT)); //exit tile
                         break;
                     case '>':
-                        tiles[x][y] = new ForceFloor(x, y, symbol, "Right"); //Force floor - right
+                        map.setTile(x, y, Cell.tile(Cell.FORCE_RIGHT)); //Force floor - right
                         break;
                     case '<':
-                        tiles[x][y] = new ForceFloor(x, y, symbol, "Left"); //Force floor - left
+                        map.setTile(x, y, Cell.tile(Cell.FORCE_LEFT)); //Force floor - left
                         break;
                     case '^':
-                        tiles[x][y] = new ForceFloor(x, y, symbol, "Up"); //Force floor - up
+                        map.setTile(x, y, Cell.tile(Cell.FORCE_UP)); //Force floor - up
                         break;
                     case 'v':
-                        tiles[x][y] = new ForceFloor(x, y, symbol, "Down"); //Force floor - down
+                        map.setTile(x, y, Cell.tile(Cell.FORCE_DOWN)); //Force floor - down
                         break;
                     case 'd': // red door
-                        doors[x][y] = new Door(x, y, "red", symbol);
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeDoor(x, y, Cell.door(Cell.RED_DOOR, true));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'D': // blue door
-                        doors[x][y] = new Door(x, y, "blue", symbol);
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeDoor(x, y, Cell.door(Cell.BLUE_DOOR, true));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'k': // red key
-                        items[x][y] = new Key(x, y, symbol, "red");
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.RED_KEY));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'K': // blue key
-                        items[x][y] = new Key(x, y, symbol, "blue");
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.BLUE_KEY));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'B': // fire boots
-                        items[x][y] = new Boots(x, y, symbol, "fireboots");
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.FIRE_BOOTS));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'P': // flippers
-                        items[x][y] = new Boots(x, y, symbol, "flippers");
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.FLIPPERS));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'T': // teleport boots
-                        items[x][y] = new Boots(x, y, symbol, "teleportboots");
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.TELEPORT_BOOTS));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'M': // microchips
-                        items[x][y] = new Microchip(x, y,symbol);
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.placeItem(x, y, Cell.item(Cell.MICROCHIP));
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case 'S': 
                         this.playerStartX = x;
                         this.playerStartY = y;
-                        tiles[x][y] = new FloorTile(x, y, '.');
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR));
                         break;
                     case ':': // enemy up and down
                         enemies.add(new Enemy(x, y, 's')); // s starts with down then goes up
-                        tiles[x][y] = new FloorTile(x, y, '.'); 
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR)); 
                         break;
                     case ';': // enemy left and right
                         enemies.add(new Enemy(x, y, 'd')); // s starts with down then goes up
-                        tiles[x][y] = new FloorTile(x, y, '.'); 
+                        map.setTile(x, y, Cell.tile(Cell.FLOOR)); 
 
                 }
             }
         }
 
-        this.map = new Maps(tiles, doors, items, this.width, this.height);
+        this.map = map;
         this.map.setStartPosition(playerStartX, playerStartY);
+        placeEnemies();
+        map.getSlides().precompute(); // a huge map works its slides out as they're taken instead
+    }
+
+    /**
+     * Saves the map's baseline, then records where each enemy starts and puts it on the map.
+     */
+    private void placeEnemies(){
+        map.saveBaseline();
+
+        enemyStartX = new int[enemies.size()];
+        enemyStartY = new int[enemies.size()];
+        enemyStartDirection = new char[enemies.size()];
+        for (int i = 0; i < enemies.size(); i++){
+            Enemy enemy = enemies.get(i);
+            enemyStartX[i] = enemy.getXPosition();
+            enemyStartY[i] = enemy.getYPosition();
+            enemyStartDirection[i] = enemy.getDirection();
+            map.addEnemy(enemy);
+        }
     }
 
 
@@ -271,7 +341,7 @@ public class Level {
     
     /**
      * Checks whether the player completed the level.
-     * It's completed if all the microchips are collected and reaches exit tile.
+     * It's completed if the required microchips are collected and reaches an exit tile.
      * 
      * <p>
      * pre-condition: player object must be initialized
@@ -282,8 +352,8 @@ public class Level {
      * @return True if completed, false otherwise
      */
     public boolean checkCompletion(Player player){
-        //Player must collect all microchips and player must be on exit tile
-        if (player.getMicrochips() == this.requiredChips && (player.getXPosition() == this.exitX && player.getYPosition() == this.exitY)){
+        //Player must collect the required microchips and player must be on an exit tile (a level may have more than one)
+        if (player.getMicrochips() >= this.requiredChips && Cell.tileKind(map.getCell(player.getXPosition(), player.getYPosition())) == Cell.EXIT){
             isCompleted = true;
             return true;
         }
@@ -292,10 +362,24 @@ public class Level {
     }
 
     /**
-     * Resets the level by marking it as not complete then regenerating the map
+     * Resets the level by marking it as not complete then restoring the map and enemies
+     * to how they were when the map was created.
+     * 
+     * <p>
+     * The map only undoes the cells that changed since it was created (see {@link Maps#rollback()}),
+     * so a reset doesn't rebuild the map from the layout.
+     * </p>
      */
     public void reset(){
         this.isCompleted = false;
-        createMap();
+        map.rollback();
+
+        for (int i = 0; i < enemies.size(); i++){
+            Enemy enemy = enemies.get(i);
+            int previousX = enemy.getXPosition();
+            int previousY = enemy.getYPosition();
+            enemy.place(enemyStartX[i], enemyStartY[i], enemyStartDirection[i]);
+            map.moveEnemy(enemy, previousX, previousY);
+        }
     }
 }
@@ -0,0 +1,83 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * Provides the levels of a campaign.
+ *
+ * <p>
+ * Most campaigns are layouts, grids of symbols a {@link Level} is built from, and implement
+ * {@link LayoutSource}. An open world too big for a layout ({@link WorldSource}) only implements this
+ * interface and builds its level around a map it streams itself, so nothing can ask it for a layout.
+ * </p>
+ *
+ * <p>
+ * {@link Game} asks for the next level from a background thread while the current one is played,
+ * so the methods may be called from several threads at once (the sources here don't change once read).
+ * </p>
+ *
+ * <p>
+ * Levels can be read from a text file ({@link TextLevelSource}) or a binary level pack ({@link PackedLevelSource}),
+ * imported from a Chip's Challenge level set ({@link DatLevelSource}) or streamed from an open world
+ * ({@link WorldSource}), {@link #open(String)} picks the one matching the file.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.2
+ */
+public interface LevelSource {
+
+    /**
+     * Returns the number of levels in the campaign.
+     *
+     * @return level count, at least 1.
+     */
+    int getLevelCount();
+
+    /**
+     * Returns the number of microchips needed to use the exit of a level.
+     *
+     * <p>
+     * pre-condition: levelNumber is from 1 to {@link #getLevelCount()}
+     * </p>
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the required chips.
+     */
+    int getRequiredChips(int levelNumber);
+
+    /**
+     * Builds a level.
+     *
+     * <p>
+     * pre-condition: levelNumber is from 1 to {@link #getLevelCount()}
+     * </p>
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return a new level, not yet played.
+     */
+    Level createLevel(int levelNumber);
+
+    /**
+     * Opens a file of levels, as a level pack if its name ends with {@link PackedLevelSource#EXTENSION},
+     * as a Chip's Challenge level set if it ends with {@link DatLevelSource#EXTENSION},
+     * as an open world if it ends with {@link WorldSource#EXTENSION} and as text otherwise.
+     *
+     * @param path the file.
+     * @return the levels.
+     * @throws IOException if the file can't be read or isn't valid.
+     */
+    static LevelSource open(String path) throws IOException {
+        if (path.endsWith(PackedLevelSource.EXTENSION)){
+            return PackedLevelSource.open(path);
+        }
+        if (path.toLowerCase().endsWith(DatLevelSource.EXTENSION)){
+            return DatLevelSource.load(path);
+        }
+        if (path.endsWith(WorldSource.EXTENSION)){
+            return new WorldSource(path);
+        }
+        return TextLevelSource.load(path);
+    }
+}
@@ -1,17 +1,52 @@
 package model;
 
+import java.util.Arrays;
+
 /**
  * This represents the game map containing the tiles, doors, and inventory items to be picked up.
- * The map is defined with a 2D grid with each object stored in a corresponding 2D array.
+ * The map is defined with a 2D grid packed into a single short array (one short per cell), and the
+ * Tile, Door and Item objects returned by the getters are the shared instances for what the packed cell holds.
+ * 
+ * <p>
+ * The cells, the enemy occupancy and the dirty marks are reached through a few protected methods taking
+ * the cell index (row * width + column, as a long so huge maps don't overflow). This class keeps them in
+ * arrays covering the whole map, {@link ChunkedMaps} overrides them to keep only part of a huge map in memory.
+ * </p>
+ * 
+ * <p>
+ * Every change to a cell, including a rollback, is passed on to the map's {@link SlideTable} so the
+ * slides it remembers stay right.
+ * </p>
+ * 
+ * <p>
+ * The dirty queue holds at most {@link #MAX_DIRTY} cells. Past that it's emptied and the whole map counts
+ * as changed until the next {@link #clearDirty()} (see {@link #isAllDirty()}), so a map nobody drains
+ * doesn't keep every cell it ever changed.
+ * </p>
  * 
  * @author Melangelo Guanzon
  * @author Anton Galido
- * @version 1.1
+ * @version 1.5
  */
 public class Maps {
-    private Tile[][] grid;
-    private Door[][] doors;
-    private Item[][] items;
+    /** The most cells the dirty queue holds before the whole map counts as changed. */
+    public static final int MAX_DIRTY = 4096;
+
+
+    private short[] cells; // one packed cell per position, see Cell for the layout
+    private boolean isRecording; // true once the baseline is saved, changes are journaled from then on
+    private long[] journalIndex; // cells changed since the baseline, in order of change
+    private short[] journalValue; // the value each of those cells had before the change
+    private int journalSize;
+    private int[] occupantHead; // per cell: id + 1 of the first enemy standing there, 0 if none
+    private int[] occupantNext; // per enemy id: id + 1 of the next enemy on the same cell, 0 if none
+    private Enemy[] occupants; // enemies by id
+    private int occupantCount;
+    private long[] dirtyBits; // one bit per cell, set while the cell is in the dirty queue
+    private long[] dirtyQueue; // indices of the cells that changed since the view last drained them
+    private int dirtyCount;
+    private boolean allDirty; // the queue overflowed, every cell counts as changed
+    private SlideTable slides; // where the slides over ice and force floors end
     private int width;
     private int height;
     private int startX;
@@ -19,21 +54,46 @@ public class Maps {
     
     
     /**
-     * Constructs the map object that holds all the inventory items as well as the doors and tiles within a level.
+     * Constructs an empty map, every cell has no tile, door or item yet.
+     * 
+     * <p>
+     * The cells are stored row by row in a single array, so the whole map is one
+     * allocation no matter how many tiles, doors and items it has.
+     * </p>
      * 
-     * @param grid The 2D array representing the layout of the map
-     * @param doors 2D array representing the containing doors in the map
-     * @param items 2D array representing the different items on the map (Microchips, keys, boots)
      * @param width map width
      * @param height map height
      * 
      */
-    public Maps(Tile[][] grid, Door[][] doors, Item[][] items, int width, int height) {
-        this.grid = grid;
-        this.doors = doors;
-        this.items = items;
+    public Maps(int width, int height) {
+        this(width, height, true);
+    }
+
+    /**
+     * Constructs a map, with or without the arrays covering every cell.
+     * 
+     * @param width map width
+     * @param height map height
+     * @param dense true to allocate the arrays, false for a subclass keeping the cells elsewhere
+     */
+    protected Maps(int width, int height, boolean dense) {
+        if (dense) {
+            this.cells = new short[width * height];
+            this.occupantHead = new int[width * height];
+            this.dirtyBits = new long[(width * height + 63) / 64];
+        }
+        this.isRecording = false;
+        this.journalIndex = new long[16];
+        this.journalValue = new short[16];
+        this.journalSize = 0;
+        this.occupantNext = new int[4];
+        this.occupants = new Enemy[4];
+        this.occupantCount = 0;
+        this.dirtyQueue = new long[16];
+        this.dirtyCount = 0;
         this.width = width;
         this.height = height;
+        this.slides = new SlideTable(this);
     }
     
     /**
@@ -49,37 +109,111 @@ public class Maps {
      * @return the grid or tile object at the specified coordinates
      */
     public Tile getTile(int x, int y) {
-        return this.grid[x][y];
+        return Cell.tile(Cell.tileKind(readCell(index(x, y))));
+    }
+    
+    /** 
+     * Sets a tile at the specified position.
+     * 
+     * <p>
+     * pre-condition: both coordinates are within bound and tile is NOT null
+     * post-condition: the specified grid position is updated with the new tile
+     * </p>
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param tile the tile object to be set (only its kind is stored)
+     */
+    public void setTile(int x, int y, Tile tile) {
+        long i = index(x, y);
+        write(i, Cell.withTileKind(readCell(i), Cell.tileKindOf(tile.getSymbol())));
     }
 
-    // for GUI to access all tiles to connect default ui to GUI
     /**
-     * Returns the 2D array of tiles representing the level's grid.
+     * Clears every cell so the map can be filled again without allocating a new one.
      * 
      * <p>
-     * This grid can be accessed by the GUI to display the map and connect 
-     * the default UI to the new graphical interface.
+     * This also stops journaling until {@link #saveBaseline()} is called again. A {@link ChunkedMaps}
+     * goes back to the cells of its world file instead of empty ones. The whole map counts as dirty
+     * afterwards.
      * </p>
+     */
+    public void clear() {
+        clearCells();
+        this.slides.clear();
+        this.isRecording = false;
+        this.journalSize = 0;
+
+        for (int id = 0; id < this.occupantCount; id++) {
+            Enemy enemy = this.occupants[id];
+            setOccupantHead(index(enemy.getXPosition(), enemy.getYPosition()), 0);
+            this.occupants[id] = null;
+        }
+        this.occupantCount = 0;
+        clearDirty();
+        this.allDirty = true; // rebuilt cells aren't marked one by one
+    }
+
+    /**
+     * Saves the current state of the map as the one {@link #rollback()} goes back to.
      * 
-     * @return a 2D array of tile objects. 
+     * <p>
+     * pre-condition: the map is fully built
+     * post-condition: the journal is empty and every later change to a cell is recorded
+     * </p>
      */
-    public Tile[][] getGrid() {
-        return this.grid;
+    public void saveBaseline() {
+        this.isRecording = true;
+        this.journalSize = 0;
     }
-    
-    /** 
-     * Sets a tile at the specified position.
+
+    /**
+     * Restores the map to the state it had when the baseline was saved.
      * 
      * <p>
-     * pre-condition: both coordinates are within bound and tile is NOT null
-     * post-condition: the specified grid position is updated with the new tile
+     * Only the cells that were changed are touched, undoing the journal from the most recent change
+     * back, so this costs time proportional to the number of changes and not to the map size.
      * </p>
+     */
+    public void rollback() {
+        for (int n = this.journalSize - 1; n >= 0; n--) {
+            writeCell(this.journalIndex[n], this.journalValue[n]);
+            this.slides.cellChanged(this.journalIndex[n]);
+            markDirty(this.journalIndex[n]);
+        }
+        this.journalSize = 0;
+    }
+
+    /**
+     * Returns the number of cell changes since the baseline was saved.
+     * 
+     * @return number of journaled changes
+     */
+    public int getChangeCount() {
+        return this.journalSize;
+    }
+
+    /**
+     * Places a door at the specified position, the door starts locked.
+     * 
      * @param x The x coordinate
      * @param y The y coordinate
-     * @param tile the tile object to be set
+     * @param door the door to be placed
      */
-    public void setTile(int x, int y, Tile tile) {
-        this.grid[x][y] = tile;
+    public void placeDoor(int x, int y, Door door) {
+        long i = index(x, y);
+        write(i, Cell.withDoor(readCell(i), Cell.doorColorOf(door.getSymbol())));
+    }
+
+    /**
+     * Places an item at the specified position, the item starts not collected.
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param item the item to be placed
+     */
+    public void placeItem(int x, int y, Item item) {
+        long i = index(x, y);
+        write(i, Cell.withItem(readCell(i), Cell.itemKindOf(item.getSymbol())));
     }
 
     /**
@@ -113,6 +247,16 @@ public class Maps {
         return this.height;
     }
 
+    /**
+     * Returns the table of where the slides over ice and force floors of this map end, kept up to date
+     * as the cells change.
+     * 
+     * @return the slide table
+     */
+    public SlideTable getSlides(){
+        return slides;
+    }
+
     /**
      * Returns the starting x coordinate in the map
      * 
@@ -137,53 +281,435 @@ public class Maps {
      * @param x The x coordinate
      * @param y The y coordinate
      * 
-     * @return the specified door at the specific coordinates
+     * @return the specified door at the specific coordinates, null if there's none
      */
     public Door getDoorAt(int x, int y) {
-        return this.doors[x][y];
+        short cell = readCell(index(x, y));
+        int color = Cell.doorColor(cell);
+
+        if (color == Cell.NO_DOOR){
+            return null;
+        }
+        return Cell.door(color, !Cell.isDoorOpen(cell));
     }
 
     /**
-     * Returns a specific item.
+     * Returns a specific item that's still on the map.
      * 
      * @param x The x coordinate
      * @param y The y coordinate
      * 
-     * @return the specified item at the specific coordinates
+     * @return the specified item at the specific coordinates, null if there's none or it was already collected
      */
     public Item getItemAt(int x, int y){
-        return this.items[x][y];
+        short cell = readCell(index(x, y));
+
+        if (Cell.isItemCollected(cell)){
+            return null;
+        }
+        return Cell.item(Cell.itemKind(cell));
     }
 
     /**
-     * Returns the 2D array of all the doors at the map.
+     * Marks the door at the specified position as unlocked.
      * 
-     * @return the 2D array of the door objects
+     * @param x The x coordinate
+     * @param y The y coordinate
      */
-    public Door[][] getDoors() {
-        return this.doors;
+    public void unlockDoor(int x, int y){
+        long i = index(x, y);
+        write(i, Cell.withDoorOpen(readCell(i)));
     }
 
     /**
      * Removes an item from the map after it's collected.
      * 
-     * @param item the item to be removed.
+     * @param x The x coordinate of the item
+     * @param y The y coordinate of the item
      * 
      * <p>
      * precondition: the item exists on the map.
      * postcondition: Item is marked as collected and the corresponding tile is replaced.
      * </p>
      */
-    public void removeItem(Item item){
-        int x = item.getXPosition();
-        int y = item.getYPosition();
+    public void removeItem(int x, int y){
+        long i = index(x, y);
+
+        if(Cell.itemKind(readCell(i)) != Cell.NO_ITEM){
+            write(i, Cell.withTileKind(Cell.withItemCollected(readCell(i)), Cell.FLOOR));
+        }
+    }
+
+    /**
+     * Returns the packed cell at the specified position (see Cell for the layout).
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return the packed cell
+     */
+    public short getCell(int x, int y){
+        return readCell(index(x, y));
+    }
+
+    /**
+     * Copies a rectangle of packed cells, row by row, into an array (for snapshots taken off the model's thread).
+     * 
+     * <p>
+     * pre-condition: the rectangle is within the map
+     * </p>
+     * 
+     * @param into array of at least rows * cols cells
+     * @param fromX the first row
+     * @param fromY the first column
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public void copyCells(short[] into, int fromX, int fromY, int rows, int cols){
+        for (int x = 0; x < rows; x++) {
+            System.arraycopy(this.cells, (int) index(fromX + x, fromY), into, x * cols, cols);
+        }
+    }
+
+    /**
+     * Adds an enemy to the occupancy index at its current position.
+     * 
+     * <p>
+     * pre-condition: the enemy is within the map and not added yet
+     * post-condition: {@link #getEnemyAt(int, int)} finds the enemy at its position
+     * </p>
+     * 
+     * @param enemy the enemy to be added
+     */
+    public void addEnemy(Enemy enemy) {
+        if (this.occupantCount == this.occupants.length) {
+            this.occupants = Arrays.copyOf(this.occupants, this.occupantCount * 2);
+            this.occupantNext = Arrays.copyOf(this.occupantNext, this.occupantCount * 2);
+        }
+        int id = this.occupantCount++;
+        enemy.setOccupantId(id);
+        this.occupants[id] = enemy;
+        link(id, index(enemy.getXPosition(), enemy.getYPosition()));
+    }
+
+    /**
+     * Updates the occupancy index after an enemy changed position.
+     * 
+     * @param enemy the enemy that moved (already at its new position)
+     * @param fromX the x coordinate it moved from
+     * @param fromY the y coordinate it moved from
+     */
+    public void moveEnemy(Enemy enemy, int fromX, int fromY) {
+        long from = index(fromX, fromY);
+        long to = index(enemy.getXPosition(), enemy.getYPosition());
+
+        if (from != to) {
+            unlink(enemy.getOccupantId(), from);
+            link(enemy.getOccupantId(), to);
+            markDirty(from);
+        }
+        markDirty(to);
+    }
+
+    /**
+     * Returns the next enemy on the same cell as another, in the order they were added to the map.
+     * 
+     * @param enemy an enemy on the map
+     * @return the next enemy on its cell, null if there's none
+     */
+    public Enemy getNextEnemyAt(Enemy enemy) {
+        int next = this.occupantNext[enemy.getOccupantId()];
+        return next == 0 ? null : this.occupants[next - 1];
+    }
+
+    /**
+     * Returns the place of an enemy among those added to the map, which is its place in the level's
+     * list of enemies.
+     * 
+     * @param enemy an enemy on the map
+     * @return from 0 to the number of enemies - 1
+     */
+    public int getEnemyNumber(Enemy enemy) {
+        return enemy.getOccupantId();
+    }
+
+    /**
+     * Returns the enemy at the specified position in constant time.
+     * 
+     * <p>
+     * If several enemies share the cell, the one added to the map first is returned.
+     * </p>
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return the enemy at the position, null if there's none
+     */
+    public Enemy getEnemyAt(int x, int y) {
+        int head = occupantHead(index(x, y));
+        return head == 0 ? null : this.occupants[head - 1];
+    }
+
+    /**
+     * Checks if any enemy is at the specified position.
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return true if an enemy is there, false otherwise
+     */
+    public boolean hasEnemyAt(int x, int y) {
+        return occupantHead(index(x, y)) != 0;
+    }
+
+    /**
+     * Marks a cell as changed so the view redraws it.
+     * 
+     * <p>
+     * Tile, door and item changes mark their cells automatically, characters mark the cells they
+     * leave and enter when they move.
+     * </p>
+     * 
+     * @param x The x coordinate
+     * @param y The y coordinate
+     */
+    public void markDirty(int x, int y) {
+        markDirty(index(x, y));
+    }
+
+    /**
+     * Returns the number of cells changed since the dirty cells were last cleared.
+     * 
+     * @return number of dirty cells, 0 once {@link #isAllDirty()}
+     */
+    public int getDirtyCount() {
+        return this.dirtyCount;
+    }
+
+    /**
+     * Checks if more cells changed than the dirty queue holds since it was last cleared, so every cell
+     * has to be redrawn.
+     * 
+     * @return true if the whole map counts as changed
+     */
+    public boolean isAllDirty() {
+        return this.allDirty;
+    }
+
+    /**
+     * Returns the x coordinate of a dirty cell.
+     * 
+     * @param n which dirty cell (from 0 to getDirtyCount() - 1)
+     * @return x coordinate
+     */
+    public int getDirtyX(int n) {
+        return (int) (this.dirtyQueue[n] / this.width);
+    }
+
+    /**
+     * Returns the y coordinate of a dirty cell.
+     * 
+     * @param n which dirty cell (from 0 to getDirtyCount() - 1)
+     * @return y coordinate
+     */
+    public int getDirtyY(int n) {
+        return (int) (this.dirtyQueue[n] % this.width);
+    }
+
+    /**
+     * Forgets the dirty cells, called by the view once it redrew them.
+     */
+    public void clearDirty() {
+        for (int n = 0; n < this.dirtyCount; n++) {
+            unmarkDirty(this.dirtyQueue[n]);
+        }
+        this.dirtyCount = 0;
+        this.allDirty = false;
+    }
+
+    /**
+     * Adds a cell to the dirty queue unless it's already there.
+     * 
+     * @param i the cell index
+     */
+    private void markDirty(long i) {
+        if (this.allDirty || !setDirtyMark(i)) {
+            return;
+        }
+
+        if (this.dirtyCount == MAX_DIRTY) {
+            clearDirty();
+            this.allDirty = true;
+            return;
+        }
+        if (this.dirtyCount == this.dirtyQueue.length) {
+            this.dirtyQueue = Arrays.copyOf(this.dirtyQueue, this.dirtyCount * 2);
+        }
+        this.dirtyQueue[this.dirtyCount++] = i;
+    }
+
+    /**
+     * Adds an enemy id to the list of a cell, keeping the list ordered by id.
+     * 
+     * @param id the enemy id
+     * @param cell the cell index
+     */
+    private void link(int id, long cell) {
+        int previous = 0;
+        int current = occupantHead(cell);
 
-        if(items[x][y] == item){
-            items[x][y].setIsCollected(true);
-            this.grid[x][y] = new FloorTile(x, y, '.');
+        while (current != 0 && current - 1 < id) {
+            previous = current;
+            current = this.occupantNext[current - 1];
+        }
+
+        this.occupantNext[id] = current;
+        if (previous == 0) {
+            setOccupantHead(cell, id + 1);
+        }
+        else {
+            this.occupantNext[previous - 1] = id + 1;
         }
     }
 
+    /**
+     * Removes an enemy id from the list of a cell.
+     * 
+     * @param id the enemy id
+     * @param cell the cell index
+     */
+    private void unlink(int id, long cell) {
+        int previous = 0;
+        int current = occupantHead(cell);
+
+        while (current != 0 && current - 1 != id) {
+            previous = current;
+            current = this.occupantNext[current - 1];
+        }
+        if (current == 0) {
+            return;
+        }
+
+        if (previous == 0) {
+            setOccupantHead(cell, this.occupantNext[id]);
+        }
+        else {
+            this.occupantNext[previous - 1] = this.occupantNext[id];
+        }
+        this.occupantNext[id] = 0;
+    }
+
+    /**
+     * Writes a cell, journaling its previous value if the baseline has been saved.
+     * 
+     * <p>
+     * Writes that don't change anything (like walking through an already opened door) aren't journaled,
+     * and since cells only ever go one way (items get collected, doors get unlocked) the journal
+     * stays as small as the number of cells that actually changed.
+     * </p>
+     * 
+     * @param i the index of the cell
+     * @param value the new packed value
+     */
+    private void write(long i, short value) {
+        short old = readCell(i);
+        if (old == value) {
+            return;
+        }
+
+        if (this.isRecording) {
+            if (this.journalSize == this.journalIndex.length) {
+                this.journalIndex = Arrays.copyOf(this.journalIndex, this.journalSize * 2);
+                this.journalValue = Arrays.copyOf(this.journalValue, this.journalSize * 2);
+            }
+            this.journalIndex[this.journalSize] = i;
+            this.journalValue[this.journalSize] = old;
+            this.journalSize++;
+            markDirty(i); // before the baseline the whole map is new to the view anyway
+        }
+        writeCell(i, value);
+        this.slides.cellChanged(i);
+    }
+
+    /**
+     * Converts a position to its cell index.
+     * 
+     * @param x The x coordinate (row)
+     * @param y The y coordinate (column)
+     * @return the index of the cell
+     */
+    protected long index(int x, int y){
+        return (long) x * this.width + y;
+    }
+
+    /**
+     * Reads a packed cell.
+     * 
+     * @param i the cell index
+     * @return the packed cell
+     */
+    protected short readCell(long i) {
+        return this.cells[(int) i];
+    }
+
+    /**
+     * Writes a packed cell, without journaling or marking it dirty.
+     * 
+     * @param i the cell index
+     * @param value the packed cell
+     */
+    protected void writeCell(long i, short value) {
+        this.cells[(int) i] = value;
+    }
+
+    /**
+     * Sets every cell back to empty.
+     */
+    protected void clearCells() {
+        Arrays.fill(this.cells, (short) 0);
+    }
+
+    /**
+     * Returns the id + 1 of the first enemy on a cell.
+     * 
+     * @param i the cell index
+     * @return the head of the cell's enemy list, 0 if there's no enemy
+     */
+    protected int occupantHead(long i) {
+        return this.occupantHead[(int) i];
+    }
+
+    /**
+     * Sets the id + 1 of the first enemy on a cell.
+     * 
+     * @param i the cell index
+     * @param head the head of the cell's enemy list, 0 for none
+     */
+    protected void setOccupantHead(long i, int head) {
+        this.occupantHead[(int) i] = head;
+    }
+
+    /**
+     * Marks a cell as being in the dirty queue.
+     * 
+     * @param i the cell index
+     * @return false if it was already marked
+     */
+    protected boolean setDirtyMark(long i) {
+        long bit = 1L << i;
+        int word = (int) (i >> 6);
+        if ((this.dirtyBits[word] & bit) != 0) {
+            return false;
+        }
+        this.dirtyBits[word] |= bit;
+        return true;
+    }
+
+    /**
+     * Removes the mark set by {@link #setDirtyMark(long)}.
+     * 
+     * @param i the cell index
+     */
+    protected void unmarkDirty(long i) {
+        this.dirtyBits[(int) (i >> 6)] &= ~(1L << i);
+    }
 
     /**
      * Returns true or false if the given coordinates is a valid position.
@@ -198,7 +724,7 @@ public class Maps {
      * @return true if the position is valid (in bounds), or false if not
      */
     public boolean isValidPosition(int x, int y) {
-        if (x >= width || y >= height) { 
+        if (x >= height || y >= width) { // x is the row and y is the column
             return false;
         }
         else if (x < 0 || y < 0) {
@@ -221,13 +747,13 @@ public class Maps {
     public Tile findExitPosition() {
         int x, y;
 
-        for (x = 0; x < width; x++) {
-            for (y = 0; y < height; y++) {
-                if (grid[x][y] != null && grid[x][y].getSymbol() == 'E') {
-                    return grid[x][y];
+        for (x = 0; x < height; x++) {
+            for (y = 0; y < width; y++) {
+                if (Cell.tileKind(readCell(index(x, y))) == Cell.EXIT) {
+                    return getTile(x, y);
                 }
             }
         }
         return null;
     }
-}
+}
\ No newline at end of file
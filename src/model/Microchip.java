@@ -14,22 +14,20 @@ package model;
 
 public class Microchip extends Item{
     /**
-     * Constructs a new microchip at the specific coordinate.
+     * Constructs a new microchip.
      * 
-     * post-condition: microchip is created at the given coordinates, isCollected set to false then symbol initialized as 'M'
-     * @param xPosition represents x coordinate of microchip
-     * @param yPosition represents y coordinate of microchip
+     * post-condition: microchip is created with the symbol initialized as 'M'
      * @param symbol char representing the microchip itself.
      */
-    public Microchip (int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public Microchip (char symbol){
+        super(symbol);
     }
     
     /**
      * Handles when the player picks up microchip
      * 
      * <p>
-     * adds the microchip then sets it as collected.
+     * adds the microchip to the player's count.
      * </p>
      * 
      * @param player the player itself.
@@ -37,7 +35,6 @@ public class Microchip extends Item{
     @Override
     public void onPlayerPickup(Player player){
         player.addMicrochips();
-        this.setIsCollected(true);
     }
 
 }
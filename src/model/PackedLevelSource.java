@@ -0,0 +1,199 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads levels from a binary level pack, decoding each level only when it's asked for.
+ *
+ * <p>
+ * The pack starts with a header and an index, followed by one record per level (all numbers big endian):
+ * </p>
+ * <pre>
+ * header:  "CHPK"  version (short)  unused (short)  level count (int)
+ * index:   the file offset of each level's record (int), in level order
+ * record:  rows (short)  columns (short)  then rows * columns symbol bytes, row by row
+ * </pre>
+ *
+ * <p>
+ * The symbols are the same ASCII ones as in the text files ({@link Level#SYMBOLS}). The file is memory
+ * mapped, so opening a pack only reads its header whatever the number of levels, and
+ * {@link #getLayout(int)} reads one index entry and decodes that level's record straight from the
+ * mapping. Records are checked when they're decoded rather than when the pack is opened, against the
+ * same rules as the text files (see {@link Level#checkLayout}).
+ * </p>
+ *
+ * <p>
+ * Packing a text file (from src): java model.PackedLevelSource resources/levels.txt levels.chpk
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class PackedLevelSource implements LayoutSource {
+    public static final String EXTENSION = ".chpk";
+
+    private static final int MAGIC = 0x4348504B; // "CHPK"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 4;
+
+    private String name;
+    private ByteBuffer pack; // the whole file, only read with absolute gets so it can be shared
+    private int levelCount;
+
+    /**
+     * Opens a level pack.
+     *
+     * @param path the pack file.
+     * @return the levels, decoded when asked for.
+     * @throws IOException if the file can't be mapped or isn't a level pack.
+     */
+    public static PackedLevelSource open(String path) throws IOException {
+        MappedByteBuffer pack;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            pack = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid once the channel is closed
+        }
+        return new PackedLevelSource(pack, path);
+    }
+
+    /**
+     * Reads levels from a pack already in memory.
+     *
+     * @param pack the bytes of the pack, from position 0 to the limit.
+     * @param name the name of the pack, for the error messages.
+     * @throws IOException if it isn't a level pack.
+     */
+    public PackedLevelSource(ByteBuffer pack, String name) throws IOException {
+        this.name = name;
+        this.pack = pack;
+
+        if (pack.limit() < HEADER_BYTES || pack.getInt(0) != MAGIC){
+            throw new IOException(name + " is not a level pack");
+        }
+        if (pack.getShort(4) != VERSION){
+            throw new IOException(name + " is a level pack of version " + pack.getShort(4) + ", only " + VERSION + " is supported");
+        }
+        this.levelCount = pack.getInt(8);
+        if (levelCount <= 0 || (long) HEADER_BYTES + 4L * levelCount > pack.limit()){
+            throw new IOException(name + " has a bad level count: " + levelCount);
+        }
+    }
+
+    @Override
+    public int getLevelCount(){
+        return levelCount;
+    }
+
+    /**
+     * Decodes a level from the pack.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the layout, a new one on every call.
+     * @throws UncheckedIOException if the level's record is damaged or isn't a playable layout.
+     */
+    @Override
+    public char[][] getLayout(int levelNumber){
+        int offset = pack.getInt(HEADER_BYTES + 4 * (levelNumber - 1));
+        if (offset < HEADER_BYTES || offset > pack.limit() - RECORD_HEADER_BYTES){
+            throw damaged(levelNumber, "offset " + offset + " is outside the file");
+        }
+        int rows = pack.getShort(offset);
+        int cols = pack.getShort(offset + 2);
+        if (rows <= 0 || cols <= 0 || offset + RECORD_HEADER_BYTES + (long) rows * cols > pack.limit()){
+            throw damaged(levelNumber, rows + " x " + cols + " cells don't fit in the file");
+        }
+
+        char[][] layout = new char[rows][cols];
+        int position = offset + RECORD_HEADER_BYTES;
+        for (int x = 0; x < rows; x++){
+            char[] row = layout[x];
+            for (int y = 0; y < cols; y++){
+                row[y] = (char) (pack.get(position++) & 0xFF);
+            }
+        }
+        String problem = Level.checkLayout(layout);
+        if (problem != null){
+            throw damaged(levelNumber, problem);
+        }
+        return layout;
+    }
+
+    private UncheckedIOException damaged(int levelNumber, String message){
+        return new UncheckedIOException(new IOException(name + " level " + levelNumber + " is damaged: " + message));
+    }
+
+    /**
+     * Writes every level of a source into a pack.
+     *
+     * <p>
+     * pre-condition: the layouts only use the symbols of {@link Level#SYMBOLS} and are less than 32768 cells wide and high
+     * </p>
+     *
+     * @param source the levels to pack.
+     * @param file the pack to write.
+     * @throws IOException if it can't be written.
+     */
+    public static void write(LayoutSource source, File file) throws IOException {
+        int count = source.getLevelCount();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")){
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(count);
+
+            long offset = HEADER_BYTES + 4L * count;
+            ByteBuffer index = ByteBuffer.allocate(4 * count);
+            for (int n = 1; n <= count; n++){
+                char[][] layout = source.getLayout(n);
+                int size = RECORD_HEADER_BYTES + layout.length * layout[0].length;
+                if (offset + size > Integer.MAX_VALUE){
+                    throw new IOException("The levels don't fit in a pack (over 2 GB)");
+                }
+                index.putInt((int) offset);
+
+                ByteBuffer record = ByteBuffer.allocate(size);
+                record.putShort((short) layout.length);
+                record.putShort((short) layout[0].length);
+                for (char[] row : layout){
+                    for (char symbol : row){
+                        record.put((byte) symbol);
+                    }
+                }
+                out.seek(offset);
+                out.write(record.array());
+                offset += size;
+            }
+
+            out.seek(HEADER_BYTES);
+            out.write(index.array());
+        }
+    }
+
+    /**
+     * Packs a level text file.
+     *
+     * @param args the text file to read and the pack to write.
+     * @throws IOException if the text can't be read or the pack can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2){
+            System.err.println("Usage: java model.PackedLevelSource <levels.txt> <levels" + EXTENSION + ">");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        TextLevelSource source = TextLevelSource.load(args[0]);
+        write(source, new File(args[1]));
+        System.out.printf("Packed %d levels into %s in %.1f ms%n", source.getLevelCount(), args[1], (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -10,7 +10,7 @@ package model;
  * </p>
  * 
  * @author Melangelo Guanzon
- * @version 1.0
+ * @version 1.3
  */
 
 public class Player extends Characters{
@@ -46,19 +46,99 @@ public class Player extends Characters{
      * pre-condition: the user input should be limited to the available controls, and map should be initialized
      * post-condition: Player's movement is updated if it's valid
      * </p>
+     * 
+     * <p>
+     * A move onto ice or a force floor continues as a slide. The cells the player slides over whatever
+     * they carry are jumped in one go with the map's {@link SlideTable}, then the step out of them is taken
+     * with {@link #step(char, Maps)} in this loop (not by moving again from the tile), so the stack stays
+     * the same whatever the length of the slide. The slide ends when a step is blocked or lands on a tile
+     * that doesn't push, whose effect then applies. A slide that would never end (force floors or ice
+     * turning in a circle) stops where the loop closes, as the table works it out, or, for a loop going
+     * through cells with an item or a door, where Brent's cycle detection notices the repetition, which is
+     * always the same for the same entry. Doors are opened where the player ends up.
+     * </p>
      * @param direction the specific direction where the player could move
      * @param map the map being played on
      */
     @Override
     public void move(char direction, Maps map){
+        if (!step(direction, map)){
+            return;
+        }
+
+        boolean moved = true;
+        long saved = -1; // Brent: a state saved at each power of two, the loop is found when it comes back
+        int power = 1;
+        int length = 0;
+        while (moved){
+            Tile tile = map.getTile(this.xPosition, this.yPosition);
+            if (!(tile instanceof SlideTile)){
+                if (tile instanceof EffectOnPlayer){
+                    ((EffectOnPlayer) tile).onPlayerEnter(this, map);
+                }
+                break;
+            }
+
+            char slide = ((SlideTile) tile).getSlideDirection(lastDirection);
+            if (slide == 0){
+                break;
+            }
+
+            SlideTable.Slide jump = map.getSlides().get(this.xPosition, this.yPosition, slide);
+            if (jump.getSteps() > 0){
+                map.markDirty(this.xPosition, this.yPosition);
+                setPosition((int) (jump.getEndCell() / map.getWidth()), (int) (jump.getEndCell() % map.getWidth()));
+                lastDirection = jump.getArrivalDirection();
+                this.playerOrientation = "ulsr".charAt("wasd".indexOf(lastDirection));
+                if (jump.isLoop()){
+                    break; // sliding in a circle, stop where it closes
+                }
+                slide = jump.getExitDirection();
+            }
+
+            long state = ((long) this.xPosition * map.getWidth() + this.yPosition) * 4 + "wasd".indexOf(slide);
+            if (state == saved){
+                break; // sliding in a circle, stop here
+            }
+            if (length == power){
+                saved = state;
+                power *= 2;
+                length = 0;
+            }
+            length++;
+            moved = step(slide, map);
+        }
+
+        Door door = map.getDoorAt(this.xPosition, this.yPosition);
+        if (door != null){
+            door.onPlayerEnter(this, map);
+        }
+
+        map.markDirty(this.xPosition, this.yPosition);
+    }
+
+    /**
+     * Moves the player one cell and picks up what's there, without the effect of the tile.
+     * 
+     * <p>
+     * The player turns to face the direction even if they can't move.
+     * </p>
+     * @param direction the specific direction where the player could move
+     * @param map the map being played on
+     * @return true if the player moved
+     */
+    private boolean step(char direction, Maps map){
         int tempX = this.xPosition;
         int tempY = this.yPosition;
+
+        // the player's cell changes even if they can't move since they turn to face the direction
+        map.markDirty(this.xPosition, this.yPosition);
        
         
         switch (direction) {
             case 'w':
                 tempX--;
-                if ((tempX == map.getTile(tempX, tempY).getXPosition() && tempY == map.getTile(tempX, tempY).getYPosition()) && map.getTile(tempX, tempY).getSymbol() == 'W'){
+                if (isWallAt(tempX, tempY, map)){
                     this.playerOrientation = '5';
                 }
                 else{
@@ -67,7 +147,7 @@ public class Player extends Characters{
                 break;
             case 'a':
                 tempY--;
-                if ((tempX == map.getTile(tempX, tempY).getXPosition() && tempY == map.getTile(tempX, tempY).getYPosition()) && map.getTile(tempX, tempY).getSymbol() == 'W'){
+                if (isWallAt(tempX, tempY, map)){
                     this.playerOrientation = '4';
                 }
                 else{
@@ -76,7 +156,7 @@ public class Player extends Characters{
                 break;
             case 's':
                 tempX++;
-                if ((tempX == map.getTile(tempX, tempY).getXPosition() && tempY == map.getTile(tempX, tempY).getYPosition()) && map.getTile(tempX, tempY).getSymbol() == 'W'){
+                if (isWallAt(tempX, tempY, map)){
                     this.playerOrientation = '6';
                 }
                 else{
@@ -85,7 +165,7 @@ public class Player extends Characters{
                 break;
             case 'd':
                 tempY++;
-                if ((tempX == map.getTile(tempX, tempY).getXPosition() && tempY == map.getTile(tempX, tempY).getYPosition()) && map.getTile(tempX, tempY).getSymbol() == 'W'){
+                if (isWallAt(tempX, tempY, map)){
                     this.playerOrientation = '3';
                 }
                 else{
@@ -95,29 +175,33 @@ public class Player extends Characters{
         }
 
         
-        if (canMoveTo(tempX, tempY, map)){
-            this.xPosition = tempX;
-            this.yPosition = tempY;
+        if (!canMoveTo(tempX, tempY, map)){
+            return false;
+        }
+        this.xPosition = tempX;
+        this.yPosition = tempY;
             
-            // sets the direction of the player to lastDirection to determine the past movement (for ice tile mainly)
-            lastDirection = direction;
-
-            Item item = map.getItemAt(this.xPosition, this.yPosition);
-            if (item != null && !item.getIsCollected()){
-                this.collectItem(item);
-            }
+        // sets the direction of the player to lastDirection to determine the past movement (for ice tile mainly)
+        lastDirection = direction;
 
-            // After moving, trigger the tile's onPlayerEnter to handle chain reactions
-            Tile tile = map.getTile(this.xPosition, this.yPosition);
-            if (tile != null && tile instanceof EffectOnPlayer) {
-                ((EffectOnPlayer) tile).onPlayerEnter(this, map); // Pass null for game since we don't need it in recursive calls
-            }
-
-            Door door = map.getDoorAt(this.xPosition, this.yPosition);
-            if (door != null){
-                door.onPlayerEnter(this, map);
-            }
+        Item item = map.getItemAt(this.xPosition, this.yPosition);
+        if (item != null){
+            this.collectItem(item);
+            map.removeItem(this.xPosition, this.yPosition);
         }
+        return true;
+    }
+
+    /**
+     * Checks if the player bumps into a wall at a position, for the way they face.
+     * 
+     * @param x x coordinate of the position to go to, may be off the map
+     * @param y y coordinate of the position to go to, may be off the map
+     * @param map the map being played on
+     * @return true if it's a wall on the map, false off the map (a level needn't have a wall around it)
+     */
+    private boolean isWallAt(int x, int y, Maps map){
+        return map.isValidPosition(x, y) && map.getTile(x, y).getSymbol() == 'W';
     }
 
     /**
@@ -172,12 +256,12 @@ public class Player extends Characters{
      * 
      * <p>
      * pre-condition: item is valid and NOT null
-     * post-condition: item is added to inventory and set as collected
+     * post-condition: item is added to inventory
      * </p>
      * @param item the item being collected.
      */
     public void collectItem(Item item){
-        if (item != null && !item.getIsCollected()){
+        if (item != null){
             item.onPlayerPickup(this);
         }
     }
@@ -235,7 +319,11 @@ public class Player extends Characters{
      * @param startY the starting Y position of the player on the map
      */
     public void resetPlayer(Maps map, int startX, int startY){
+        if (map.isValidPosition(this.xPosition, this.yPosition)){ // the old position may be on another level's map
+            map.markDirty(this.xPosition, this.yPosition);
+        }
         setPosition(startX, startY);
+        map.markDirty(startX, startY);
         inventory.resetInventory();
         this.isAlive = true;
         this.microchips = 0;
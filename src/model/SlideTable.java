@@ -0,0 +1,498 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Remembers where every slide over ice and force floors of a map ends, so the player can be moved to the
+ * end of a slide with one lookup instead of one move per cell.
+ *
+ * <p>
+ * A slide starts with the player on an ice or force floor cell being pushed in a direction. It goes on
+ * through every "plain" slide cell (ice or force floor with no door and no item left on it), which the
+ * player always enters whatever they carry, and stops at the first cell that isn't plain. The result is
+ * the last plain cell reached and the direction of the step out of it, which {@link Player#move(char, Maps)}
+ * then takes normally since it depends on the inventory (a door, a hazard, a wall). A slide that comes back
+ * to a cell and direction it already went through would never end: the player goes around the loop once
+ * and stops where it closes, so a slide starting on the loop stops where it started and one joining it
+ * stops where it joins.
+ * </p>
+ *
+ * <p>
+ * The results only depend on the cells the slide goes through and the one it stops before, so when a
+ * cell changes ({@link Maps} calls {@link #cellChanged(long)} for every changed cell) only the slides
+ * ending on it or passing over it are forgotten, found by following the slides backwards from that cell.
+ * They're worked out again the next time they're asked for. Every slide of a level can be worked out
+ * when it's built with {@link #precompute()}, which takes time proportional to the number of slide cells.
+ * </p>
+ *
+ * <p>
+ * The slides are kept like the states of the solver's {@code StateTable}: open addressing with linear probing
+ * over a long[] of states (cell index * 4 + push direction) and an array of the slides beside it, so a lookup
+ * doesn't box its key and a changed cell that no slide goes near costs a few probes and no allocation.
+ * A forgotten slide's slot is filled again by shifting back the states after it, so lookups never have to
+ * step over removed slots. A table can be given a limit, past which it forgets every slide before working
+ * out a new one, so on a huge map it doesn't keep every slide ever taken.
+ * </p>
+ *
+ * <p>
+ * Only used by the thread that owns the map.
+ * </p>
+ *
+ * @author Anton Luis Galido
+ * @author Melangelo Guanzon
+ * @version 1.1
+ */
+public class SlideTable {
+    private static final String DIRECTIONS = "wasd";
+    private static final int[] DX = {-1, 0, 1, 0};
+    private static final int[] DY = {0, -1, 0, 1};
+
+    private static final long FREE = -1;
+    private static final int MIN_SLOTS = 16;
+    // marks the states of the slide being followed, so compute() finds where it comes back on itself
+    private static final Slide ON_PATH = new Slide(-1, 0, (char) 0, (char) 0, Cell.NO_TILE);
+
+    private Maps map;
+    private long[] states; // by slot: cell index * 4 + push direction, FREE if empty
+    private Slide[] slides; // by slot: the slide of the state, ON_PATH while it's being followed
+    private int mask;
+    private int size;
+    private int limit; // the most slides kept before they're all forgotten
+    private long[] work; // the path followed by compute() or the states forgotten by cellChanged()
+
+    /**
+     * Where a slide ends.
+     */
+    public static final class Slide {
+        private final long endCell;
+        private final int steps;
+        private final char arrival;
+        private final char exit;
+        private final int landingTileKind;
+
+        private Slide(long endCell, int steps, char arrival, char exit, int landingTileKind){
+            this.endCell = endCell;
+            this.steps = steps;
+            this.arrival = arrival;
+            this.exit = exit;
+            this.landingTileKind = landingTileKind;
+        }
+
+        /**
+         * Returns the cell index (row * width + column) the slide ends on.
+         *
+         * @return the last cell slid onto, the start cell if there was none.
+         */
+        public long getEndCell(){
+            return endCell;
+        }
+
+        /**
+         * Returns the number of cells the player slides over.
+         *
+         * @return cells traversed, 0 if the first step already leaves the plain slide cells.
+         */
+        public int getSteps(){
+            return steps;
+        }
+
+        /**
+         * Returns the direction of the last step of the slide, which the player faces and keeps as
+         * their last direction.
+         *
+         * @return 'w', 'a', 's' or 'd', 0 if there were no steps.
+         */
+        public char getArrivalDirection(){
+            return arrival;
+        }
+
+        /**
+         * Returns the direction the end cell pushes the player, towards a cell that isn't a plain slide cell.
+         *
+         * @return 'w', 'a', 's' or 'd', 0 if the slide is a loop.
+         */
+        public char getExitDirection(){
+            return exit;
+        }
+
+        /**
+         * Checks if the slide goes around in a loop, so it ends without a step out.
+         *
+         * @return true for a loop.
+         */
+        public boolean isLoop(){
+            return exit == 0;
+        }
+
+        /**
+         * Returns the tile the exit step goes onto, to tell the hazards (fire, water) and walls at the end of the slide.
+         *
+         * @return the Cell tile kind, Cell.NO_TILE past the edge of the map or for a loop.
+         */
+        public int getLandingTileKind(){
+            return landingTileKind;
+        }
+    }
+
+    /**
+     * Constructs an empty table for a map.
+     *
+     * @param map the map the slides are on.
+     */
+    public SlideTable(Maps map){
+        this.map = map;
+        this.work = new long[16];
+        this.limit = Integer.MAX_VALUE;
+        allocate(MIN_SLOTS);
+    }
+
+    /**
+     * Sets the most slides remembered: once there are that many, every slide is forgotten before a new
+     * one is worked out. They're worked out again the next time they're asked for.
+     *
+     * @param limit the most slides, Integer.MAX_VALUE (the default) for no limit.
+     */
+    public void setLimit(int limit){
+        this.limit = limit;
+    }
+
+    /**
+     * Returns where a slide ends, working it out if it isn't known yet.
+     *
+     * <p>
+     * pre-condition: the cell is on the map and is ice or a force floor
+     * </p>
+     *
+     * @param x the x coordinate (row) of the cell the player is pushed from.
+     * @param y the y coordinate (column) of the cell.
+     * @param push the direction the player is pushed, 'w', 'a', 's' or 'd'.
+     * @return the slide.
+     */
+    public Slide get(int x, int y, char push){
+        long state = ((long) x * map.getWidth() + y) * 4 + DIRECTIONS.indexOf(push);
+        Slide slide = find(state);
+        if (slide != null){
+            return slide;
+        }
+        if (size >= limit){
+            clear();
+        }
+        return compute(state);
+    }
+
+    /**
+     * Works out the slide of every ice and force floor cell of the map, in every direction it can push.
+     */
+    public void precompute(){
+        for (int x = 0; x < map.getHeight(); x++){
+            for (int y = 0; y < map.getWidth(); y++){
+                Tile tile = map.getTile(x, y);
+                if (!(tile instanceof SlideTile)){
+                    continue;
+                }
+                for (int d = 0; d < 4; d++){
+                    char push = ((SlideTile) tile).getSlideDirection(DIRECTIONS.charAt(d));
+                    if (push != 0){
+                        get(x, y, push);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slides known.
+     *
+     * @return table size.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Forgets every slide.
+     */
+    public void clear(){
+        Arrays.fill(states, FREE);
+        Arrays.fill(slides, null);
+        size = 0;
+    }
+
+    /**
+     * Forgets the slides that start on, pass over or stop before a cell whose contents changed.
+     *
+     * @param cell the cell index (row * width + column).
+     */
+    public void cellChanged(long cell){
+        if (size == 0){
+            return;
+        }
+
+        int forgotten = 0;
+        for (int d = 0; d < 4; d++){
+            forgotten = forget(cell * 4 + d, forgotten); // starting on the cell
+            long from = neighbour(cell, (d + 2) % 4);
+            if (from >= 0){
+                forgotten = forget(from * 4 + d, forgotten); // stepping onto it, through or to stop
+            }
+        }
+
+        // every slide that went through a forgotten state is forgotten too
+        while (forgotten > 0){
+            long state = work[--forgotten];
+            long onto = state / 4;
+            if (onto == cell || !isPlain(onto)){
+                continue; // the slides stepping onto these were forgotten above
+            }
+            for (int d = 0; d < 4; d++){
+                if (push(onto, d) != state % 4){
+                    continue;
+                }
+                long from = neighbour(onto, (d + 2) % 4);
+                if (from >= 0){
+                    forgotten = forget(from * 4 + d, forgotten);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the slide of a state, if it's known, and pushes the state on the work stack.
+     *
+     * @param state the state.
+     * @param forgotten the number of states on the stack.
+     * @return the number of states on the stack now.
+     */
+    private int forget(long state, int forgotten){
+        if (!remove(state)){
+            return forgotten;
+        }
+        if (forgotten == work.length){
+            work = Arrays.copyOf(work, forgotten * 2);
+        }
+        work[forgotten] = state;
+        return forgotten + 1;
+    }
+
+    /**
+     * Follows a slide until it leaves the plain slide cells, comes back on itself or reaches a known
+     * slide, then records the result for every state it went through.
+     *
+     * @param start the state the slide starts from.
+     * @return its slide.
+     */
+    private Slide compute(long start){
+        int length = 0; // of the path, kept in work
+        Slide next;
+        long state = start;
+
+        while (true){
+            Slide known = find(state);
+            if (known == ON_PATH){
+                int loopStart = length - 1;
+                while (work[loopStart] != state){
+                    loopStart--;
+                }
+                next = closeLoop(loopStart, length);
+                length = loopStart;
+                break;
+            }
+            if (known != null){
+                next = known;
+                break;
+            }
+
+            long cell = state / 4;
+            int d = (int) (state % 4);
+            long onto = neighbour(cell, d);
+            if (onto < 0 || !isPlain(onto)){
+                next = new Slide(cell, 0, (char) 0, DIRECTIONS.charAt(d), onto < 0 ? Cell.NO_TILE : tileKind(onto));
+                put(state, next);
+                break;
+            }
+
+            if (length == work.length){
+                work = Arrays.copyOf(work, length * 2);
+            }
+            work[length++] = state;
+            put(state, ON_PATH);
+            state = onto * 4 + push(onto, d);
+        }
+
+        // back along the path, each state slides one more cell than the next
+        for (int i = length - 1; i >= 0; i--){
+            char step = DIRECTIONS.charAt((int) (work[i] % 4));
+            next = new Slide(next.endCell, next.steps + 1, next.steps > 0 ? next.arrival : step, next.exit,
+                next.landingTileKind);
+            put(work[i], next);
+        }
+        return find(start);
+    }
+
+    /**
+     * Records the states of a loop, each one going around once and stopping where it started.
+     *
+     * @param loopStart where the loop starts on the path in work.
+     * @param end where the path ends.
+     * @return the slide of the first state of the loop.
+     */
+    private Slide closeLoop(int loopStart, int end){
+        int length = end - loopStart;
+        for (int i = 0; i < length; i++){
+            long state = work[loopStart + i];
+            long previous = work[loopStart + (i + length - 1) % length];
+            char arrival = DIRECTIONS.charAt((int) (previous % 4));
+            put(state, new Slide(state / 4, length, arrival, (char) 0, Cell.NO_TILE));
+        }
+        return find(work[loopStart]);
+    }
+
+    /**
+     * Returns the slide of a state.
+     *
+     * @param state the state.
+     * @return its slide, null if it isn't known.
+     */
+    private Slide find(long state){
+        for (int slot = home(state); ; slot = (slot + 1) & mask){
+            long found = states[slot];
+            if (found == state){
+                return slides[slot];
+            }
+            if (found == FREE){
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Records the slide of a state, replacing the one it had.
+     *
+     * @param state the state.
+     * @param slide its slide.
+     */
+    private void put(long state, Slide slide){
+        int slot = home(state);
+        while (states[slot] != FREE && states[slot] != state){
+            slot = (slot + 1) & mask;
+        }
+        if (states[slot] == FREE){
+            if (size >= states.length / 4 * 3){
+                allocate(states.length * 2);
+                put(state, slide);
+                return;
+            }
+            size++;
+        }
+        states[slot] = state;
+        slides[slot] = slide;
+    }
+
+    /**
+     * Removes a state, moving back the states after it that would otherwise no longer be found.
+     *
+     * @param state the state.
+     * @return false if it wasn't there.
+     */
+    private boolean remove(long state){
+        int hole = home(state);
+        while (states[hole] != state){
+            if (states[hole] == FREE){
+                return false;
+            }
+            hole = (hole + 1) & mask;
+        }
+
+        for (int slot = (hole + 1) & mask; states[slot] != FREE; slot = (slot + 1) & mask){
+            // a state can fill the hole if the hole is between its first slot and where it is
+            if (((slot - home(states[slot])) & mask) >= ((slot - hole) & mask)){
+                states[hole] = states[slot];
+                slides[hole] = slides[slot];
+                hole = slot;
+            }
+        }
+        states[hole] = FREE;
+        slides[hole] = null;
+        size--;
+        return true;
+    }
+
+    private int home(long state){
+        long h = state; // the mix of SplitMix64, like the solver's tables
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (h ^ (h >>> 31)) & mask;
+    }
+
+    /**
+     * Moves every slide into new arrays with a number of slots.
+     *
+     * @param slots a power of two, more than the slides.
+     */
+    private void allocate(int slots){
+        long[] oldStates = states;
+        Slide[] oldSlides = slides;
+        states = new long[slots];
+        slides = new Slide[slots];
+        Arrays.fill(states, FREE);
+        mask = slots - 1;
+        if (oldStates == null){
+            return;
+        }
+        for (int i = 0; i < oldStates.length; i++){
+            if (oldStates[i] != FREE){
+                int slot = home(oldStates[i]);
+                while (states[slot] != FREE){
+                    slot = (slot + 1) & mask;
+                }
+                states[slot] = oldStates[i];
+                slides[slot] = oldSlides[i];
+            }
+        }
+    }
+
+    /**
+     * Checks if a cell is ice or a force floor the player enters and keeps sliding on whatever they carry.
+     *
+     * @param cell the cell index.
+     * @return true if there's no door and no item left on it.
+     */
+    private boolean isPlain(long cell){
+        short packed = map.getCell((int) (cell / map.getWidth()), (int) (cell % map.getWidth()));
+        return Cell.tile(Cell.tileKind(packed)) instanceof SlideTile
+            && Cell.doorColor(packed) == Cell.NO_DOOR
+            && (Cell.itemKind(packed) == Cell.NO_ITEM || Cell.isItemCollected(packed));
+    }
+
+    private int tileKind(long cell){
+        return Cell.tileKind(map.getCell((int) (cell / map.getWidth()), (int) (cell % map.getWidth())));
+    }
+
+    /**
+     * Returns the direction a slide cell pushes the player who entered it going in a direction.
+     *
+     * @param cell the cell index of a slide cell.
+     * @param arrival the direction the player entered it, 0 to 3.
+     * @return the push direction, 0 to 3.
+     */
+    private int push(long cell, int arrival){
+        SlideTile tile = (SlideTile) Cell.tile(tileKind(cell));
+        return DIRECTIONS.indexOf(tile.getSlideDirection(DIRECTIONS.charAt(arrival)));
+    }
+
+    /**
+     * Returns the next cell in a direction.
+     *
+     * @param cell the cell index.
+     * @param d the direction, 0 to 3 for 'w', 'a', 's' and 'd'.
+     * @return the cell index, -1 past the edge of the map.
+     */
+    private long neighbour(long cell, int d){
+        int x = (int) (cell / map.getWidth()) + DX[d];
+        int y = (int) (cell % map.getWidth()) + DY[d];
+        if (x < 0 || y < 0 || x >= map.getHeight() || y >= map.getWidth()){
+            return -1;
+        }
+        return (long) x * map.getWidth() + y;
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * Represents a tile that keeps the player moving once they step on it (ice and force floors).
+ * 
+ * <p>
+ * {@link Player#move(char, Maps)} asks the tile where it pushes the player and takes that step itself,
+ * jumping over the cells it slides on with the map's {@link SlideTable}, so a slide doesn't nest a call
+ * per cell however long it is.
+ * </p>
+ * 
+ * @author Anton Luis Galido
+ * @author Melangelo Guanzon
+ * @version 1.1
+ */
+public interface SlideTile {
+
+    /**
+     * Returns the direction the tile pushes the player who just entered it.
+     * 
+     * <p>
+     * The push only depends on the tile and the direction the player came in, which lets
+     * {@link SlideTable} work out a whole slide without a player.
+     * </p>
+     * 
+     * @param arrivalDirection the direction the player entered the tile, 'w', 'a', 's' or 'd' (0 if they never moved).
+     * @return 'w', 'a', 's' or 'd', or 0 if the player isn't pushed.
+     */
+    public char getSlideDirection(char arrivalDirection);
+}
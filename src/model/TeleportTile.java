@@ -14,13 +14,11 @@ package model;
 public class TeleportTile extends Tile implements EffectOnPlayer{
 
     /**
-     * Constructs a Teleport Tile at the specified coordinates with a given symbol.
-     * @param xPosition x coordinate
-     * @param yPosition y coordinate
+     * Constructs a Teleport Tile with a given symbol.
      * @param symbol the char representing the teleport tile (used for mapping to image).
      */
-    public TeleportTile(int xPosition, int yPosition, char symbol) {
-        super(xPosition, yPosition, symbol);
+    public TeleportTile(char symbol) {
+        super(symbol);
     }
 
     /**
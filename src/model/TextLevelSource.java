@@ -0,0 +1,153 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Reads the levels of a campaign from a text file.
+ *
+ * <p>
+ * Each level is a block of rows with one symbol per cell, the same symbols {@link Level#createMap()} uses
+ * (see {@link Level#SYMBOLS}). Levels are separated by one or more blank lines, and lines starting with
+ * {@code //} are comments. Every level needs exactly one start 'S' and at least one exit 'E', and all its
+ * rows must have the same length. The required chips aren't written in the file, they're the number of 'M'.
+ * </p>
+ *
+ * <p>
+ * The file is read one line at a time and each line is only looked at once, so loading takes time
+ * proportional to the size of the file however many levels it holds.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.2
+ */
+public class TextLevelSource implements LayoutSource {
+    public static final String DEFAULT_PATH = "resources/levels.txt";
+
+    private static final String COMMENT = "//";
+
+    private ArrayList<char[][]> layouts;
+
+    // the level being read
+    private String name;
+    private ArrayList<char[]> rows;
+    private int firstLine;
+
+    /**
+     * Reads every level from a reader.
+     *
+     * @param reader the text to read, closed when done.
+     * @param name the name of the file, for the error messages.
+     * @throws IOException if it can't be read or a level isn't valid.
+     */
+    public TextLevelSource(Reader reader, String name) throws IOException {
+        this.layouts = new ArrayList<>();
+        this.name = name;
+        this.rows = new ArrayList<>();
+
+        try (BufferedReader lines = new BufferedReader(reader)){
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null){
+                lineNumber++;
+                if (line.startsWith(COMMENT)){
+                    continue;
+                }
+                if (line.trim().isEmpty()){
+                    endLevel();
+                    continue;
+                }
+                readRow(line, lineNumber);
+            }
+            endLevel();
+        }
+
+        if (layouts.isEmpty()){
+            throw new IOException(name + " has no levels");
+        }
+        this.rows = null;
+    }
+
+    /**
+     * Reads the levels of a file, from the classpath or else from the working directory.
+     *
+     * @param path the path of the file, e.g. {@link #DEFAULT_PATH}.
+     * @return the levels.
+     * @throws IOException if the file doesn't exist, can't be read or a level isn't valid.
+     */
+    public static TextLevelSource load(String path) throws IOException {
+        InputStream in = TextLevelSource.class.getResourceAsStream("/" + path);
+        if (in == null){
+            if (!new File(path).isFile()){
+                throw new IOException(path + " not found");
+            }
+            in = new FileInputStream(path);
+        }
+        return new TextLevelSource(new InputStreamReader(in, StandardCharsets.UTF_8), path);
+    }
+
+    @Override
+    public int getLevelCount(){
+        return layouts.size();
+    }
+
+    @Override
+    public char[][] getLayout(int levelNumber){
+        return layouts.get(levelNumber - 1);
+    }
+
+    /**
+     * Adds a row to the level being read, starting one if there's none.
+     *
+     * @param line the row.
+     * @param lineNumber its line number in the file.
+     * @throws IOException if the row has an unknown symbol or a different length than the ones before.
+     */
+    private void readRow(String line, int lineNumber) throws IOException {
+        if (rows.isEmpty()){
+            firstLine = lineNumber;
+        }
+        else if (line.length() != rows.get(0).length){
+            throw error(lineNumber, "row has " + line.length() + " cells, the level's first row has " + rows.get(0).length);
+        }
+
+        char[] row = line.toCharArray();
+        for (int y = 0; y < row.length; y++){
+            char symbol = row[y];
+            if (Level.SYMBOLS.indexOf(symbol) < 0){
+                throw error(lineNumber, "unknown symbol '" + symbol + "' in column " + (y + 1));
+            }
+        }
+        rows.add(row);
+    }
+
+    /**
+     * Finishes the level being read, if any.
+     *
+     * @throws IOException if it doesn't have exactly one start and at least one exit (see {@link Level#checkLayout}).
+     */
+    private void endLevel() throws IOException {
+        if (rows.isEmpty()){
+            return;
+        }
+        char[][] layout = rows.toArray(new char[rows.size()][]);
+        String problem = Level.checkLayout(layout);
+        if (problem != null){
+            throw error(firstLine, "level " + (layouts.size() + 1) + " " + problem);
+        }
+        layouts.add(layout);
+        rows.clear();
+    }
+
+    private IOException error(int lineNumber, String message){
+        return new IOException(name + " line " + lineNumber + ": " + message);
+    }
+}
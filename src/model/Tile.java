@@ -7,32 +7,30 @@ package model;
  * Tiles have different types and different characteristics depending on the game state. 
  * The player may or may not be allowed to step depending on if they hold the required inventory item. 
  * </p>
+ * 
+ * <p>
+ * Tiles are shared, immutable instances (one per tile kind, see {@link Cell#tile(int)}), so a tile
+ * doesn't know where it is. The position comes from the map cell it was looked up from.
+ * </p>
  * @author Anton Galido
  * @version 1.0
  * 
  */
 
 public abstract class Tile{
-    private int xPosition;
-    private int yPosition;
-    private char symbol;
+    private final char symbol;
     
     /**
      * 
-     * Constructs a Tile object with a specified position with a unique symbol depending on the type.
+     * Constructs a Tile object with a unique symbol depending on the type.
      * 
      * 
      * <p>
-     * pre-condition: x and y coordinates are within bounds of the map
      * post-condition: a new Tile is created
      * </p>
-     * @param xPosition the x coordinate of that tile
-     * @param yPosition the y coordinate of that tile
      * @param symbol the specific symbol of the specific Tile
      */
-    public Tile (int xPosition, int yPosition, char symbol) {
-        this.xPosition = xPosition;
-        this.yPosition = yPosition;
+    public Tile (char symbol) {
         this.symbol = symbol;
     }
     
@@ -49,27 +47,6 @@ public abstract class Tile{
     public abstract boolean canPlayerEnter(Player player);
     
 
-    /**
-     * Gets the x coordinate of the Tile.
-     * 
-     * @return x-coordinate
-     * 
-     */
-    public int getXPosition() {
-        return xPosition;
-    }
-    
-    /**
-     * Gets the y coordinate of the Tile.
-     * 
-     * @return y-coordinate
-     * 
-     */
-    public int getYPosition() {
-        return yPosition;
-    }
-    
-    
     /**
      * Gets the symbol of the specific tile.
      * @return character symbol of a specific tile
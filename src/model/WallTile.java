@@ -13,14 +13,12 @@ package model;
 public class WallTile extends Tile{
 
     /**
-     * Constructs a wall tile at the specified coordinates with a given symbol '#'.
+     * Constructs a wall tile with a given symbol '#'.
      * 
-     * @param xPosition x coordinate
-     * @param yPosition y coordinate
      * @param symbol the character representing the wall tile (used for mapping to image).
      */
-    public WallTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public WallTile(char symbol){
+        super(symbol);
     }
 
     /**
@@ -13,13 +13,11 @@ package model;
 public class WaterTile extends Tile implements EffectOnPlayer{
 
     /**
-     * Constructor for the Water tile at the specified coordinates with a given symbol 'W'.
-     * @param xPosition x coordinate of the tile
-     * @param yPosition y coordinate of the tile
+     * Constructor for the Water tile with a given symbol 'W'.
      * @param symbol the character symbol to represent the tile (used for mapping to image).
      */
-    public WaterTile(int xPosition, int yPosition, char symbol){
-        super(xPosition, yPosition, symbol);
+    public WaterTile(char symbol){
+        super(symbol);
     }
 
      /**
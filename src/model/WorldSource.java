@@ -0,0 +1,308 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A single open world level, too big to be read as a layout, whose map is streamed in chunks by {@link ChunkedMaps}.
+ *
+ * <p>
+ * The file has a header, the enemies, an index of the chunks and the chunks (all numbers big endian):
+ * </p>
+ * <pre>
+ * header:  "CHWD"  version (short)  chunk shift (short)  width (int)  height (int)
+ *          start x (int)  start y (int)  required chips (int)  enemy count (int)
+ * enemy:   x (int)  y (int)  direction (byte, 's' or 'd')
+ * index:   the file offset of each chunk (long), row by row, 0 for a chunk that's all floor
+ * chunk:   64 * 64 packed cells (short, see {@link Cell}), row by row
+ * </pre>
+ *
+ * <p>
+ * Chunks past the right or bottom edge of the map are stored whole, their extra cells are never used.
+ * The index is memory mapped and the chunks are read one at a time when the map needs them, so opening
+ * a world only reads its header and enemies, and the heap used doesn't grow with the map.
+ * </p>
+ *
+ * <p>
+ * Generating a world to try it (from src): java model.WorldSource world.chwd 100000 100000
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class WorldSource implements LevelSource {
+    public static final String EXTENSION = ".chwd";
+
+    /** The packed cell of the chunks the file doesn't store. */
+    static final short FLOOR_CELL = Cell.withTileKind((short) 0, Cell.FLOOR);
+
+    private static final int MAGIC = 0x43485744; // "CHWD"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENEMY_BYTES = 9;
+    private static final int CHUNK_BYTES = ChunkedMaps.CHUNK_SIZE * ChunkedMaps.CHUNK_SIZE * 2;
+
+    private String name;
+    private FileChannel channel; // kept open, read with positional reads so it can be shared
+    private MappedByteBuffer index;
+    private long chunkCount;
+    private int width;
+    private int height;
+    private int startX;
+    private int startY;
+    private int requiredChips;
+    private int[] enemyX;
+    private int[] enemyY;
+    private char[] enemyDirection;
+
+    /**
+     * Opens a world file.
+     *
+     * @param path the world file.
+     * @throws IOException if it can't be read or isn't a world.
+     */
+    public WorldSource(String path) throws IOException {
+        this.name = path;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (channel.size() < HEADER_BYTES){
+                throw new IOException(name + " is not a world");
+            }
+            ChunkedMaps.readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC){
+                throw new IOException(name + " is not a world");
+            }
+            if (header.getShort(4) != VERSION || header.getShort(6) != ChunkedMaps.CHUNK_SHIFT){
+                throw new IOException(name + " is a world of version " + header.getShort(4) + " with chunk shift "
+                    + header.getShort(6) + ", only " + VERSION + " with " + ChunkedMaps.CHUNK_SHIFT + " is supported");
+            }
+            this.width = header.getInt(8);
+            this.height = header.getInt(12);
+            this.startX = header.getInt(16);
+            this.startY = header.getInt(20);
+            this.requiredChips = header.getInt(24);
+            int enemies = header.getInt(28);
+            if (width <= 0 || height <= 0 || startX < 0 || startX >= height || startY < 0 || startY >= width || enemies < 0){
+                throw new IOException(name + " has a bad header");
+            }
+
+            ByteBuffer records = ByteBuffer.allocate(enemies * ENEMY_BYTES);
+            ChunkedMaps.readFully(channel, records, HEADER_BYTES);
+            this.enemyX = new int[enemies];
+            this.enemyY = new int[enemies];
+            this.enemyDirection = new char[enemies];
+            for (int i = 0; i < enemies; i++){
+                enemyX[i] = records.getInt(i * ENEMY_BYTES);
+                enemyY[i] = records.getInt(i * ENEMY_BYTES + 4);
+                enemyDirection[i] = (char) records.get(i * ENEMY_BYTES + 8);
+            }
+
+            this.chunkCount = chunkCount(width, height);
+            long indexStart = HEADER_BYTES + (long) enemies * ENEMY_BYTES;
+            if (indexStart + 8 * chunkCount > channel.size()){
+                throw new IOException(name + " is too short for its chunk index");
+            }
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, indexStart, 8 * chunkCount);
+        }
+        catch (IOException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getLevelCount(){
+        return 1;
+    }
+
+    @Override
+    public int getRequiredChips(int levelNumber){
+        return requiredChips;
+    }
+
+    /**
+     * Creates the level over a chunked map, keeping enough chunks for the view and the one next to each
+     * enemy it may step into (the chunks the enemies stand on are kept anyway).
+     */
+    @Override
+    public Level createLevel(int levelNumber){
+        int capacity = ChunkedMaps.DEFAULT_CACHE_CHUNKS + enemyX.length;
+        ChunkedMaps map = new ChunkedMaps(this, width, height, capacity);
+        map.setStartPosition(startX, startY);
+
+        ArrayList<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < enemyX.length; i++){
+            enemies.add(new Enemy(enemyX[i], enemyY[i], enemyDirection[i]));
+        }
+        return new Level(levelNumber, map, enemies, requiredChips);
+    }
+
+    /**
+     * Reads a chunk into a buffer.
+     *
+     * @param key the chunk number, row by row.
+     * @param buffer a cleared buffer of one chunk, filled with the cells if the chunk is stored.
+     * @return false if the chunk isn't stored, so it's all floor.
+     * @throws IOException if it can't be read.
+     */
+    boolean readChunk(long key, ByteBuffer buffer) throws IOException {
+        long offset = index.getLong((int) (8 * key));
+        if (offset == 0){
+            return false;
+        }
+        ChunkedMaps.readFully(channel, buffer, offset);
+        return true;
+    }
+
+    private static long chunkCount(int width, int height){
+        long rows = (height + ChunkedMaps.CHUNK_SIZE - 1) >> ChunkedMaps.CHUNK_SHIFT;
+        long cols = (width + ChunkedMaps.CHUNK_SIZE - 1) >> ChunkedMaps.CHUNK_SHIFT;
+        return rows * cols;
+    }
+
+    /**
+     * Generates a world of random cells for trying out big maps.
+     *
+     * <p>
+     * Every chunk within a few chunks of the start is stored, plus some scattered over the rest of the map,
+     * the others are plain floor. Stored chunks get walls, water, fire and microchips, and some an enemy.
+     * The exit is next to the start, so the level can be finished once its chips are found.
+     * </p>
+     *
+     * @param file the world to write.
+     * @param width map width, at least 64.
+     * @param height map height, at least 64.
+     * @param seed the random seed.
+     * @throws IOException if it can't be written.
+     */
+    public static void generate(File file, int width, int height, long seed) throws IOException {
+        Random random = new Random(seed);
+        int chunkRows = (height + ChunkedMaps.CHUNK_SIZE - 1) >> ChunkedMaps.CHUNK_SHIFT;
+        int chunkCols = (width + ChunkedMaps.CHUNK_SIZE - 1) >> ChunkedMaps.CHUNK_SHIFT;
+        long chunks = (long) chunkRows * chunkCols;
+        if (8 * chunks > Integer.MAX_VALUE){
+            throw new IOException(width + " x " + height + " is too big for a chunk index");
+        }
+        int startX = height / 2;
+        int startY = width / 2;
+        int startRow = startX >> ChunkedMaps.CHUNK_SHIFT;
+        int startCol = startY >> ChunkedMaps.CHUNK_SHIFT;
+
+        // which chunks are stored: the neighbourhood of the start and about 2000 others
+        ArrayList<Long> stored = new ArrayList<>();
+        for (int r = Math.max(0, startRow - 8); r <= Math.min(chunkRows - 1, startRow + 8); r++){
+            for (int c = Math.max(0, startCol - 8); c <= Math.min(chunkCols - 1, startCol + 8); c++){
+                stored.add((long) r * chunkCols + c);
+            }
+        }
+        for (int n = 0; n < 2000; n++){
+            stored.add((long) (random.nextDouble() * chunks));
+        }
+
+        int chips = 0;
+        ArrayList<int[]> enemies = new ArrayList<>();
+        short[] cells = new short[ChunkedMaps.CHUNK_SIZE * ChunkedMaps.CHUNK_SIZE];
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        long[] offsets = new long[(int) chunks];
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")){
+            out.setLength(0);
+            // the enemy count is only known at the end, so the chunks go after room for one enemy per chunk
+            long enemiesStart = HEADER_BYTES;
+            long indexStart = enemiesStart + (long) stored.size() * ENEMY_BYTES;
+            long position = indexStart + 8 * chunks;
+
+            for (long key : stored){
+                if (offsets[(int) key] != 0){
+                    continue;
+                }
+                int baseX = (int) (key / chunkCols) << ChunkedMaps.CHUNK_SHIFT;
+                int baseY = (int) (key % chunkCols) << ChunkedMaps.CHUNK_SHIFT;
+                for (int i = 0; i < cells.length; i++){
+                    int x = baseX + (i >> ChunkedMaps.CHUNK_SHIFT);
+                    int y = baseY + (i & (ChunkedMaps.CHUNK_SIZE - 1));
+                    int roll = random.nextInt(100);
+                    short cell = FLOOR_CELL;
+                    if (Math.abs(x - startX) <= 1 && Math.abs(y - startY) <= 1){
+                        cell = (x == startX && y == startY + 1) ? Cell.withTileKind((short) 0, Cell.EXIT) : FLOOR_CELL;
+                    }
+                    else if (roll < 12){
+                        cell = Cell.withTileKind((short) 0, Cell.WALL);
+                    }
+                    else if (roll < 14){
+                        cell = Cell.withTileKind((short) 0, Cell.WATER);
+                    }
+                    else if (roll < 15){
+                        cell = Cell.withTileKind((short) 0, Cell.FIRE);
+                    }
+                    else if (roll < 16 && x < height && y < width){
+                        cell = Cell.withItem(FLOOR_CELL, Cell.MICROCHIP);
+                        chips++;
+                    }
+                    cells[i] = cell;
+                }
+                int enemyX = baseX + random.nextInt(ChunkedMaps.CHUNK_SIZE);
+                int enemyY = baseY + random.nextInt(ChunkedMaps.CHUNK_SIZE);
+                if (enemyX < height && enemyY < width && random.nextInt(4) == 0
+                        && Math.abs(enemyX - startX) + Math.abs(enemyY - startY) > 8){
+                    cells[((enemyX - baseX) << ChunkedMaps.CHUNK_SHIFT) | (enemyY - baseY)] = FLOOR_CELL;
+                    enemies.add(new int[] {enemyX, enemyY, random.nextBoolean() ? 's' : 'd'});
+                }
+
+                chunk.clear();
+                chunk.asShortBuffer().put(cells);
+                out.seek(position);
+                out.write(chunk.array());
+                offsets[(int) key] = position;
+                position += CHUNK_BYTES;
+            }
+
+            // move the index right after the enemies now that their number is known
+            ByteBuffer records = ByteBuffer.allocate(enemies.size() * ENEMY_BYTES);
+            for (int[] enemy : enemies){
+                records.putInt(enemy[0]).putInt(enemy[1]).put((byte) enemy[2]);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) ChunkedMaps.CHUNK_SHIFT)
+                .putInt(width).putInt(height).putInt(startX).putInt(startY).putInt(chips).putInt(enemies.size());
+
+            out.seek(0);
+            out.write(header.array());
+            out.write(records.array());
+            ByteBuffer indexBytes = ByteBuffer.allocate((int) (8 * chunks));
+            indexBytes.asLongBuffer().put(offsets);
+            out.write(indexBytes.array());
+        }
+    }
+
+    /**
+     * Generates a world.
+     *
+     * @param args the world file to write, then optionally the width, the height and the seed.
+     * @throws IOException if it can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 3 && args.length != 4){
+            System.err.println("Usage: java model.WorldSource <world" + EXTENSION + "> [width height [seed]]");
+            System.exit(1);
+        }
+
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int height = args.length > 1 ? Integer.parseInt(args[2]) : 100_000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        long start = System.nanoTime();
+        generate(new File(args[0]), width, height, seed);
+        System.out.printf("Generated a %d x %d world (%.1f MB) in %.1f ms%n", width, height,
+            new File(args[0]).length() / 1e6, (System.nanoTime() - start) / 1e6);
+    }
+}
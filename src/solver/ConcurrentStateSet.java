@@ -0,0 +1,162 @@
+package solver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The states a parallel search has reached, which several threads add to at once.
+ *
+ * <p>
+ * Like {@link StateTable} it's open addressing with linear probing over a long[], but without the numbers:
+ * 8 bytes a slot. A thread claims a free slot with a compare-and-set, so two threads adding the same state
+ * find out which one added it first and no lock is taken. The slots can't move while threads are adding,
+ * so the table only grows in {@link #ensureRoom(long)}, which the search calls between its rounds of adds
+ * with the most states the next round can add.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public class ConcurrentStateSet {
+    /** The memory of one slot, in bytes. */
+    public static final int SLOT_BYTES = 8;
+
+    private static final long FREE = -1;
+    private static final int MIN_SLOTS = 1024;
+    private static final int MAX_SLOTS = 1 << 30;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private long[] states;
+    private int mask;
+    private int maxSlots;
+    private LongAdder size = new LongAdder(); // counted on the side, so adding doesn't fight over one counter
+
+    /**
+     * Constructs an empty set.
+     *
+     * @param maxBytes the most memory the slots may take.
+     * @throws IllegalArgumentException if the cap is too small for 1024 slots.
+     */
+    public ConcurrentStateSet(long maxBytes){
+        if (maxBytes < (long) SLOT_BYTES * MIN_SLOTS){
+            throw new IllegalArgumentException("A state set needs at least " + SLOT_BYTES * MIN_SLOTS + " bytes");
+        }
+        this.maxSlots = (int) Math.min(MAX_SLOTS, Long.highestOneBit(maxBytes / SLOT_BYTES));
+        allocate(MIN_SLOTS);
+    }
+
+    /**
+     * Adds a state, from any thread.
+     *
+     * <p>
+     * pre-condition: {@link #ensureRoom(long)} made room for the states added since it was called
+     * </p>
+     *
+     * @param state a packed state, not negative.
+     * @return true if this call added it, false if it was already there.
+     */
+    public boolean add(long state){
+        long[] slots = states;
+        int slot = StateTable.hash(state) & mask;
+        while (true){
+            long found = (long) SLOTS.getAcquire(slots, slot);
+            if (found == FREE){
+                if (SLOTS.compareAndSet(slots, slot, FREE, state)){
+                    size.increment();
+                    return true;
+                }
+                found = (long) SLOTS.getAcquire(slots, slot); // another thread took the slot first
+            }
+            if (found == state){
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Grows the set so that some more states can be added, keeping it at most three quarters full when it can.
+     *
+     * <p>
+     * pre-condition: no thread is adding
+     * </p>
+     *
+     * @param more the most states that may be added before the next call.
+     * @return false if they might not fit within the memory cap, the set is left as it was.
+     */
+    public boolean ensureRoom(long more){
+        long states = size() + more;
+        if (states >= maxSlots){
+            return false; // a set with no free slot left would never end a probe
+        }
+        long slots = this.states.length;
+        while (slots < maxSlots && (slots <= states || size() > slots / 4 * 3)){
+            slots *= 2;
+        }
+        if (slots > this.states.length){
+            allocate((int) slots);
+        }
+        return true;
+    }
+
+    /**
+     * Removes every state, keeping the slots for the next search.
+     *
+     * <p>
+     * pre-condition: no thread is adding
+     * </p>
+     */
+    public void clear(){
+        Arrays.fill(states, FREE);
+        size.reset();
+    }
+
+    /**
+     * Returns the number of states in the set.
+     *
+     * <p>
+     * pre-condition: no thread is adding, or the count may be off
+     * </p>
+     *
+     * @return the states added.
+     */
+    public long size(){
+        return size.sum();
+    }
+
+    /**
+     * Returns the memory the slots take now.
+     *
+     * @return bytes.
+     */
+    public long getMemoryBytes(){
+        return (long) states.length * SLOT_BYTES;
+    }
+
+    /**
+     * Moves every state into a new array with a number of slots.
+     *
+     * @param slots a power of two, more than the states.
+     */
+    private void allocate(int slots){
+        long[] old = states;
+        states = new long[slots];
+        Arrays.fill(states, FREE);
+        mask = slots - 1;
+        if (old == null){
+            return;
+        }
+        for (long state : old){
+            if (state != FREE){
+                int slot = StateTable.hash(state) & mask;
+                while (states[slot] != FREE){
+                    slot = (slot + 1) & mask;
+                }
+                states[slot] = state;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package solver;
+
+import java.util.Random;
+
+import model.LayoutSource;
+
+/**
+ * Generates random levels, to try the solver on maps bigger and with more items than the built-in ones.
+ *
+ * <p>
+ * A level has a wall around it and random walls, water, fire, ice, force floors and teleporters inside,
+ * then its items and doors on floor cells: the microchips, two red and two blue keys with as many doors,
+ * fire boots, flippers and teleport boots, plus the start and the exit. Nothing makes sure the level can be
+ * completed, the solver says if it can. The same seed always gives the same levels, and each level is
+ * generated again when it's asked for, so the source keeps nothing.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public class LevelGenerator implements LayoutSource {
+    private static final String OBJECTS = "kkKKddDDBPT"; // besides the chips
+    private static final String FORCE_FLOORS = "<>^v";
+
+    private int levelCount;
+    private int width;
+    private int height;
+    private int chips;
+    private int requiredChips;
+    private long seed;
+
+    /**
+     * Constructs a source of generated levels.
+     *
+     * @param levelCount the number of levels.
+     * @param width the width of every level, at least 4.
+     * @param height the height of every level, at least 4.
+     * @param chips the microchips of every level.
+     * @param requiredChips the microchips needed to use the exit, at most chips. Fewer than all of them
+     *        leaves the solver only the distance to the exit as a bound, so it explores far more states.
+     * @param seed the random seed.
+     * @throws IllegalArgumentException if the levels are too small for their items or too big to solve.
+     */
+    public LevelGenerator(int levelCount, int width, int height, int chips, int requiredChips, long seed){
+        long cells = (long) width * height;
+        int objects = chips + OBJECTS.length();
+        if (width < 4 || height < 4 || objects + 2 > (long) (width - 2) * (height - 2)){
+            throw new IllegalArgumentException("A " + width + " x " + height + " level has no room for " + objects + " items and doors");
+        }
+        if (64 - Long.numberOfLeadingZeros(cells - 1) + objects >= 63){
+            throw new IllegalArgumentException("Too many cells, items and doors for the solver's 64-bit states");
+        }
+        this.levelCount = levelCount;
+        this.width = width;
+        this.height = height;
+        this.chips = chips;
+        this.requiredChips = Math.min(requiredChips, chips);
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the number of levels.
+     *
+     * @return level count.
+     */
+    @Override
+    public int getLevelCount(){
+        return levelCount;
+    }
+
+    /**
+     * Returns the number of microchips needed to use the exit, the same for every level.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return the required chips.
+     */
+    @Override
+    public int getRequiredChips(int levelNumber){
+        return requiredChips;
+    }
+
+    /**
+     * Generates the layout of a level.
+     *
+     * @param levelNumber the level number, starting from 1.
+     * @return a new layout.
+     */
+    @Override
+    public char[][] getLayout(int levelNumber){
+        Random random = new Random(seed * 31 + levelNumber);
+        char[][] layout = new char[height][width];
+        for (int x = 0; x < height; x++){
+            for (int y = 0; y < width; y++){
+                int roll = random.nextInt(100);
+                if (x == 0 || y == 0 || x == height - 1 || y == width - 1 || roll < 18){
+                    layout[x][y] = '#';
+                }
+                else if (roll < 21){
+                    layout[x][y] = 'W';
+                }
+                else if (roll < 23){
+                    layout[x][y] = 'F';
+                }
+                else if (roll < 28){
+                    layout[x][y] = 'I';
+                }
+                else if (roll < 31){
+                    layout[x][y] = FORCE_FLOORS.charAt(random.nextInt(FORCE_FLOORS.length()));
+                }
+                else if (roll < 32){
+                    layout[x][y] = 'O';
+                }
+                else {
+                    layout[x][y] = '.';
+                }
+            }
+        }
+
+        place(layout, 'S', random);
+        place(layout, 'E', random);
+        for (int i = 0; i < chips; i++){
+            place(layout, 'M', random);
+        }
+        for (int i = 0; i < OBJECTS.length(); i++){
+            place(layout, OBJECTS.charAt(i), random);
+        }
+        return layout;
+    }
+
+    /**
+     * Puts a symbol on a random cell inside the wall around the level that isn't the start, the exit, an item or a door.
+     */
+    private void place(char[][] layout, char symbol, Random random){
+        while (true){
+            int x = 1 + random.nextInt(height - 2);
+            int y = 1 + random.nextInt(width - 2);
+            if ("SEMkKdDBPT".indexOf(layout[x][y]) < 0){
+                layout[x][y] = symbol;
+                return;
+            }
+        }
+    }
+}
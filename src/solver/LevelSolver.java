@@ -0,0 +1,791 @@
+package solver;
+
+import java.util.Arrays;
+
+import engine.HeadlessEngine;
+import model.Cell;
+import model.Game;
+import model.Level;
+import model.LevelSource;
+import model.Maps;
+import model.SlideTable;
+import model.SlideTile;
+
+/**
+ * Finds the shortest sequence of moves that completes a level.
+ *
+ * <p>
+ * A state of the search is where the player stands and which items they collected and doors they opened,
+ * packed into one long: the cell index in the low bits, then one bit per item and per door of the level.
+ * Everything else the player has follows from those bits (the chips and boots collected, the keys picked
+ * up minus the doors opened with them) and the rest of the map doesn't change, so two positions with the
+ * same key play the same from then on. A level whose cells, items and doors need more than 63 bits can't
+ * be solved this way.
+ * </p>
+ *
+ * <p>
+ * The search is A*: states are expanded in order of the moves made so far plus a lower bound of the moves
+ * still needed, so the first state expanded on an exit with enough chips is reached with the fewest moves.
+ * The bound is the shortest tour through the chips still needed to the exit on a relaxed map, where a move
+ * may stop on any cell its slide could go through whatever the player carries. It never overestimates and
+ * drops by at most one per move, and a state that can't finish even on the relaxed map is dropped at once.
+ * </p>
+ *
+ * <p>
+ * Moves follow the same rules as {@link model.Player#move(char, Maps)}, with slides jumped through the
+ * map's {@link SlideTable}. Enemies move on the timer and not with the moves, so they're left out: the moves
+ * are a solution when they're played without any tick in between, as {@link #replay(LevelSource, int, String)}
+ * does to check them.
+ * </p>
+ *
+ * <p>
+ * The states reached are kept in a {@link StateTable}, and what the search knows about each (the state it
+ * was reached from, with which move, in how many moves and its bound) in arrays by the order they were found:
+ * 20 bytes per state, plus its 12 byte slot in the table, which is at most 3/4 full. The arrays and the table
+ * double when they're full, so a state takes from 36 bytes up to 72 right after they grew ({@link SolverBenchmark}
+ * measures 59 on both built-in levels), where boxing it in a HashMap took about 80.
+ * The table can be given a memory cap, and a limit on the states explored keeps the arrays in check.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.2
+ */
+public class LevelSolver {
+    public static final String MOVES = "wasd";
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final long BLOCKED = -1; // the move doesn't change the state
+    private static final long DEAD = -2; // the move kills the player
+    private static final int MAX_TOUR_CHIPS = 16; // 2^16 sets of 16 chips take 4 MB
+    private static final int MAX_NODES = Integer.MAX_VALUE - 8; // the longest arrays
+    private static final int NODE_BYTES = 20; // state, parent, moves and move, bound
+    private static final int[] DX = {-1, 0, 1, 0};
+    private static final int[] DY = {0, -1, 0, 1};
+
+    private int width;
+    private int height;
+    private int start; // the start cell, where teleporters send the player back, and the start state
+    private int requiredChips;
+    private byte[] kinds; // tile kind per cell
+    private long[] jumps; // per cell * 4 + push: the slide from the SlideTable, see next(), -1 if no cell is slid over
+
+    private int positionBits;
+    private long positionMask;
+    private int[] objectAt; // per cell: the item or door number + 1, 0 if none
+    private long chipMask; // bits of the microchips
+    private long[] keyMask = new long[3]; // bits of the keys, by door color
+    private long[] doorMask = new long[3]; // bits of the doors, by color
+    private long fireBootsMask;
+    private long flippersMask;
+    private long teleportBootsMask;
+
+    private int[] exitDistance; // per cell: moves to an exit on the relaxed map
+    private int[] chipObjects; // the object number of each microchip needed, if all of them are and the bound applies
+    private int[][] chipDistance; // per needed microchip, per cell: moves to it on the relaxed map
+    private int[] tours; // per set of needed microchips * chips + one chip: moves from that chip through the set to the exit
+
+    /**
+     * The result of a search.
+     */
+    public static final class Solution {
+        private final String moves;
+        private final long statesExplored;
+        private final long elapsedNanos;
+        private final boolean abandoned;
+        private final long statesDropped;
+        private final long memoryBytes;
+
+        Solution(String moves, long statesExplored, long elapsedNanos, boolean abandoned,
+                long statesDropped, long memoryBytes){
+            this.moves = moves;
+            this.statesExplored = statesExplored;
+            this.elapsedNanos = elapsedNanos;
+            this.abandoned = abandoned;
+            this.statesDropped = statesDropped;
+            this.memoryBytes = memoryBytes;
+        }
+
+        /**
+         * Checks if the level can be completed.
+         *
+         * @return true if moves were found.
+         */
+        public boolean isSolved(){
+            return moves != null;
+        }
+
+        /**
+         * Checks if the search stopped at its memory cap or state limit before it could finish, so having
+         * no moves doesn't mean the level can't be completed.
+         *
+         * @return true if the search gave up.
+         */
+        public boolean isAbandoned(){
+            return abandoned;
+        }
+
+        /**
+         * Returns the shortest moves completing the level, as inputs for {@link Game#processInput(char)}.
+         *
+         * @return 'w', 'a', 's' and 'd' characters, null if the level can't be completed or the search gave up.
+         */
+        public String getMoves(){
+            return moves;
+        }
+
+        /**
+         * Returns the number of states reached by the search, different unless a lossy table dropped some.
+         *
+         * @return states explored.
+         */
+        public long getStatesExplored(){
+            return statesExplored;
+        }
+
+        /**
+         * Returns the number of states a lossy table forgot to stay within its cap.
+         *
+         * @return states dropped, 0 for a strict table.
+         */
+        public long getStatesDropped(){
+            return statesDropped;
+        }
+
+        /**
+         * Returns the memory the search used for its states: the table and the arrays of what it knew about them.
+         *
+         * @return bytes, at the end of the search.
+         */
+        public long getMemoryBytes(){
+            return memoryBytes;
+        }
+
+        /**
+         * Returns how long the search took.
+         *
+         * @return the duration in nanoseconds.
+         */
+        public long getElapsedNanos(){
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the search speed.
+         *
+         * @return states explored per second.
+         */
+        public double getStatesPerSecond(){
+            return statesExplored / Math.max(elapsedNanos / 1e9, 1e-9);
+        }
+    }
+
+    /**
+     * The states waiting to be expanded, in one stack per priority (moves made plus the estimate), so
+     * the lowest priority comes first and, among equals, the deepest state.
+     */
+    private static final class Buckets {
+        private int[][] stacks = new int[64][];
+        private int[] sizes = new int[64];
+        private int lowest; // no stack below this one has anything
+        private int count;
+
+        private void push(int priority, int node){
+            if (priority >= stacks.length){
+                stacks = Arrays.copyOf(stacks, Math.max(priority + 1, stacks.length * 2));
+                sizes = Arrays.copyOf(sizes, stacks.length);
+            }
+            if (stacks[priority] == null){
+                stacks[priority] = new int[16];
+            }
+            else if (sizes[priority] == stacks[priority].length){
+                stacks[priority] = Arrays.copyOf(stacks[priority], sizes[priority] * 2);
+            }
+            stacks[priority][sizes[priority]++] = node;
+            lowest = Math.min(lowest, priority);
+            count++;
+        }
+
+        private boolean isEmpty(){
+            return count == 0;
+        }
+
+        /**
+         * Returns the lowest priority with a state waiting.
+         *
+         * <p>
+         * pre-condition: it isn't empty
+         * </p>
+         */
+        private int lowest(){
+            while (sizes[lowest] == 0){
+                lowest++;
+            }
+            return lowest;
+        }
+
+        /**
+         * Takes the last state pushed with the lowest priority.
+         */
+        private int pop(){
+            int priority = lowest();
+            count--;
+            return stacks[priority][--sizes[priority]];
+        }
+    }
+
+    /**
+     * Constructs a solver for a level as it is at the start.
+     *
+     * <p>
+     * pre-condition: the level hasn't been played, its map is only read by the solver
+     * </p>
+     *
+     * @param level the level to solve.
+     * @throws IllegalArgumentException if the map is too big or has too many items and doors for a 64-bit state.
+     */
+    public LevelSolver(Level level){
+        Maps map = level.getMap();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.requiredChips = level.getRequiredChips();
+        long cells = (long) width * height;
+        if (cells > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("The map is too big to solve: " + width + " x " + height);
+        }
+        this.start = level.getPlayerStartX() * width + level.getPlayerStartY();
+        this.positionBits = 64 - Long.numberOfLeadingZeros(Math.max(cells - 1, 1));
+        this.positionMask = (1L << positionBits) - 1;
+        this.objectAt = new int[(int) cells];
+        this.kinds = new byte[(int) cells];
+
+        int objects = 0;
+        for (int x = 0; x < height; x++){
+            for (int y = 0; y < width; y++){
+                short cell = map.getCell(x, y);
+                kinds[x * width + y] = (byte) Cell.tileKind(cell);
+                int item = Cell.isItemCollected(cell) ? Cell.NO_ITEM : Cell.itemKind(cell);
+                int door = Cell.doorColor(cell); // all locked, doors only open while playing
+                if (item == Cell.NO_ITEM && door == Cell.NO_DOOR){
+                    continue;
+                }
+                if (item != Cell.NO_ITEM && door != Cell.NO_DOOR){
+                    throw new IllegalArgumentException("A door and an item on the same cell at " + x + ", " + y);
+                }
+                if (positionBits + objects >= 63){
+                    throw new IllegalArgumentException("Too many items and doors for a 64-bit state: more than "
+                        + (63 - positionBits));
+                }
+
+                long bit = 1L << objects;
+                objects++;
+                objectAt[x * width + y] = objects;
+                if (door != Cell.NO_DOOR){
+                    doorMask[door] |= bit;
+                    continue;
+                }
+                switch (item){
+                    case Cell.MICROCHIP: chipMask |= bit; break;
+                    case Cell.RED_KEY: keyMask[Cell.RED_DOOR] |= bit; break;
+                    case Cell.BLUE_KEY: keyMask[Cell.BLUE_DOOR] |= bit; break;
+                    case Cell.FIRE_BOOTS: fireBootsMask |= bit; break;
+                    case Cell.FLIPPERS: flippersMask |= bit; break;
+                    case Cell.TELEPORT_BOOTS: teleportBootsMask |= bit; break;
+                }
+            }
+        }
+
+        // an item or door cell stops a slide in the table, and it's floor once taken, so the table holds for every state
+        this.jumps = new long[(int) cells * 4];
+        SlideTable slides = map.getSlides();
+        for (int cell = 0; cell < cells; cell++){
+            for (int push = 0; push < 4 && isSlide(kinds[cell]); push++){
+                SlideTable.Slide jump = slides.get(cell / width, cell % width, MOVES.charAt(push));
+                jumps[cell * 4 + push] = jump.getSteps() == 0 ? -1 : jump.getEndCell() << 5
+                    | (jump.isLoop() ? 16 : MOVES.indexOf(jump.getExitDirection()))
+                    | MOVES.indexOf(jump.getArrivalDirection()) << 2;
+            }
+        }
+        computeDistances();
+    }
+
+    /**
+     * Searches for the shortest moves completing the level, with no cap on the memory.
+     *
+     * @return the solution, with no moves if the level can't be completed.
+     */
+    public Solution solve(){
+        return solve(new StateTable(Long.MAX_VALUE, false), MAX_NODES);
+    }
+
+    /**
+     * Searches for the shortest moves completing the level, keeping the states reached in a table.
+     *
+     * <p>
+     * The search gives up if a strict table is full or once it has explored maxStates states. A lossy table
+     * forgets some states instead of filling up, which makes the search explore them again if it reaches
+     * them again, but the moves found are still the fewest. Since a state explored again counts again, the
+     * limit is what ends a lossy search of a level that can't be completed.
+     * </p>
+     *
+     * <p>
+     * pre-condition: the table is empty
+     * </p>
+     *
+     * @param visited the table of the states reached, its cap bounds the memory of the search with maxStates.
+     * @param maxStates the most states to explore, each taking 20 bytes besides its slot in the table.
+     * @return the solution, with no moves if the level can't be completed or the search gave up.
+     */
+    public Solution solve(StateTable visited, int maxStates){
+        long startNanos = System.nanoTime();
+        int limit = Math.min(maxStates, MAX_NODES);
+        int capacity = Math.min(1024, Math.max(limit, 1));
+        long[] states = new long[capacity]; // every state reached, in the order found
+        int[] parents = new int[capacity]; // the best one each was reached from
+        int[] depths = new int[capacity]; // the moves to get there << 2 | the last move
+        int[] estimates = new int[capacity]; // the lower bound of the moves left
+        Buckets open = new Buckets();
+
+        int count = 0;
+        int goal = -1;
+        boolean abandoned = false;
+        int estimate = estimate(start);
+        if (estimate != UNREACHABLE && limit > 0){
+            states[0] = start;
+            parents[0] = -1;
+            estimates[0] = estimate;
+            abandoned = !visited.put(start, 0);
+            count = 1;
+            open.push(estimate, 0);
+        }
+
+        while (!abandoned && !open.isEmpty()){
+            int priority = open.lowest();
+            int node = open.pop();
+            int depth = depths[node] >>> 2;
+            if (depth + estimates[node] != priority){
+                continue; // reached again with fewer moves since, and expanded then
+            }
+            if (isGoal(states[node])){
+                goal = node;
+                break;
+            }
+
+            for (int move = 0; move < 4; move++){
+                long next = next(states[node], move);
+                if (next < 0){
+                    continue;
+                }
+                int target = visited.get(next);
+                if (target != StateTable.MISSING){
+                    if (depths[target] >>> 2 <= depth + 1){
+                        continue;
+                    }
+                }
+                else {
+                    estimate = estimate(next);
+                    if (estimate == UNREACHABLE){
+                        continue;
+                    }
+                    if (count == limit || !visited.put(next, count)){
+                        abandoned = true;
+                        break;
+                    }
+                    if (count == states.length){
+                        capacity = (int) Math.min((long) count * 2, limit);
+                        states = Arrays.copyOf(states, capacity);
+                        parents = Arrays.copyOf(parents, capacity);
+                        depths = Arrays.copyOf(depths, capacity);
+                        estimates = Arrays.copyOf(estimates, capacity);
+                    }
+                    target = count++;
+                    states[target] = next;
+                    estimates[target] = estimate;
+                }
+                parents[target] = node;
+                depths[target] = (depth + 1) << 2 | move;
+                open.push(depth + 1 + estimates[target], target);
+            }
+        }
+
+        String path = null;
+        if (goal >= 0){
+            StringBuilder builder = new StringBuilder();
+            for (int n = goal; parents[n] >= 0; n = parents[n]){
+                builder.append(MOVES.charAt(depths[n] & 3));
+            }
+            path = builder.reverse().toString();
+        }
+        return new Solution(path, count, System.nanoTime() - startNanos, goal < 0 && abandoned,
+            visited.getDropped(), visited.getMemoryBytes() + (long) states.length * NODE_BYTES);
+    }
+
+    /**
+     * Returns a lower bound of the moves left to complete the level from a state: the fewest moves on the
+     * relaxed map to collect the chips still needed, in the best order, then reach the exit.
+     *
+     * @param state a packed state.
+     * @return the bound, UNREACHABLE if the level can't be completed from there.
+     */
+    public int estimate(long state){
+        int cell = (int) (state & positionMask);
+        long taken = state >>> positionBits;
+        int remaining = 0;
+        for (int chip = 0; chip < chipObjects.length; chip++){
+            if ((taken & (1L << chipObjects[chip])) == 0){
+                remaining |= 1 << chip;
+            }
+        }
+        if (remaining == 0){
+            return exitDistance[cell];
+        }
+
+        long estimate = UNREACHABLE;
+        for (int chip = 0; chip < chipObjects.length; chip++){
+            if ((remaining & (1 << chip)) != 0){
+                int rest = remaining & ~(1 << chip);
+                estimate = Math.min(estimate, (long) chipDistance[chip][cell] + tours[rest * chipObjects.length + chip]);
+            }
+        }
+        return (int) Math.min(estimate, UNREACHABLE);
+    }
+
+    /**
+     * Returns the state of the level at the start.
+     *
+     * @return the packed state.
+     */
+    public long getStartState(){
+        return start;
+    }
+
+    /**
+     * Checks if a state completes the level: the player is on an exit with the required chips.
+     *
+     * @param state a packed state.
+     * @return true if the level is completed.
+     */
+    public boolean isGoal(long state){
+        int cell = (int) (state & positionMask);
+        long taken = state >>> positionBits;
+        return tileKind(cell, taken) == Cell.EXIT && Long.bitCount(taken & chipMask) >= requiredChips;
+    }
+
+    /**
+     * Plays one move from a state, the way {@link model.Player#move(char, Maps)} does.
+     *
+     * <p>
+     * Only reads the solver and the map, so several threads may call it at once.
+     * </p>
+     *
+     * @param state a packed state the player is alive in.
+     * @param move the move, 0 to 3 for 'w', 'a', 's' and 'd'.
+     * @return the packed state after the move, a negative value if the player can't move or dies.
+     */
+    public long next(long state, int move){
+        int cell = (int) (state & positionMask);
+        long taken = state >>> positionBits;
+
+        int onto = neighbour(cell, move);
+        if (onto < 0 || !canEnter(onto, taken)){
+            return BLOCKED;
+        }
+        cell = onto;
+        taken = pickUp(cell, taken);
+        int last = move;
+
+        long saved = -1; // Brent's cycle detection, as the player does it
+        int power = 1;
+        int length = 0;
+        while (true){
+            int kind = tileKind(cell, taken);
+            if (!isSlide(kind)){
+                if (kind == Cell.FIRE && (taken & fireBootsMask) == 0){
+                    return DEAD;
+                }
+                if (kind == Cell.WATER && (taken & flippersMask) == 0){
+                    return DEAD;
+                }
+                if (kind == Cell.TELEPORT && (taken & teleportBootsMask) == 0){
+                    cell = start;
+                }
+                break;
+            }
+
+            int push = push(kind, last);
+            long jump = jumps[cell * 4 + push]; // the end cell << 5 | 16 for a loop | arrival << 2 | exit
+            if (jump >= 0){
+                cell = (int) (jump >>> 5);
+                last = (int) (jump >>> 2) & 3;
+                if ((jump & 16) != 0){
+                    break; // a loop, the player stops where it closes
+                }
+                push = (int) jump & 3;
+            }
+
+            long key = (long) cell * 4 + push;
+            if (key == saved){
+                break;
+            }
+            if (length == power){
+                saved = key;
+                power *= 2;
+                length = 0;
+            }
+            length++;
+
+            onto = neighbour(cell, push);
+            if (onto < 0 || !canEnter(onto, taken)){
+                break;
+            }
+            cell = onto;
+            taken = pickUp(cell, taken);
+            last = push;
+        }
+
+        // a door where the player ends up is opened with one of their keys
+        int object = objectAt[cell] - 1;
+        if (object >= 0 && (taken & (1L << object)) == 0){
+            int color = doorColor(object);
+            if (color != Cell.NO_DOOR && keys(color, taken) > 0){
+                taken |= 1L << object;
+            }
+        }
+        return (taken << positionBits) | cell;
+    }
+
+    /**
+     * Works out the moves to the exits and to the chips on the relaxed map, where a move goes to any cell
+     * its slide could pass over (doors open or not, hazards crossed or not) and from a teleporter back to
+     * the start too. Every real move ends on one of those cells, so the relaxed moves never outnumber
+     * the real ones.
+     */
+    private void computeDistances(){
+        int cells = kinds.length;
+
+        // the relaxed moves, as the cells each cell can be reached from
+        int[] sources = new int[cells * 4];
+        int[] targets = new int[cells * 4];
+        int edges = 0;
+        int[] walked = new int[cells * 4]; // the walk that last went through each cell and direction, + 1
+        int walk = 0;
+        for (int from = 0; from < cells; from++){
+            if (kinds[from] == Cell.WALL || kinds[from] == Cell.NO_TILE){
+                continue;
+            }
+            for (int move = 0; move < 4; move++){
+                walk++;
+                int cell = from;
+                int direction = move;
+                while (true){
+                    int onto = neighbour(cell, direction);
+                    if (onto < 0 || kinds[onto] == Cell.WALL || kinds[onto] == Cell.NO_TILE){
+                        break;
+                    }
+                    if (edges + 2 > targets.length){
+                        sources = Arrays.copyOf(sources, edges * 2);
+                        targets = Arrays.copyOf(targets, edges * 2);
+                    }
+                    sources[edges] = from;
+                    targets[edges++] = onto;
+                    if (kinds[onto] == Cell.TELEPORT){
+                        sources[edges] = from;
+                        targets[edges++] = start;
+                    }
+                    if (!isSlide(kinds[onto])){
+                        break;
+                    }
+                    direction = push(kinds[onto], direction);
+                    cell = onto;
+                    if (walked[cell * 4 + direction] == walk){
+                        break; // around a loop
+                    }
+                    walked[cell * 4 + direction] = walk;
+                }
+            }
+        }
+
+        // grouped by target, to search backwards from the exits and chips
+        int[] first = new int[cells + 1];
+        for (int e = 0; e < edges; e++){
+            first[targets[e] + 1]++;
+        }
+        for (int cell = 0; cell < cells; cell++){
+            first[cell + 1] += first[cell];
+        }
+        int[] reverse = new int[edges];
+        int[] filled = Arrays.copyOf(first, cells);
+        for (int e = 0; e < edges; e++){
+            reverse[filled[targets[e]]++] = sources[e];
+        }
+
+        int[] queue = new int[cells];
+        int exits = 0;
+        for (int cell = 0; cell < cells; cell++){
+            if (kinds[cell] == Cell.EXIT){
+                queue[exits++] = cell;
+            }
+        }
+        exitDistance = distances(queue, exits, first, reverse);
+
+        // the chips only bound the moves if every one of them is needed. The player stops on each (it's floor
+        // once collected), so a tour of the chips is at least the sum of the moves from one to the next,
+        // the orders are tried for at most MAX_TOUR_CHIPS chips
+        int chips = Long.bitCount(chipMask);
+        int[] chipCells = new int[chips];
+        for (int cell = 0, chip = 0; cell < cells; cell++){
+            int object = objectAt[cell] - 1;
+            if (object >= 0 && (chipMask & (1L << object)) != 0){
+                chipCells[chip++] = cell;
+            }
+        }
+        if (requiredChips < chips || chips > MAX_TOUR_CHIPS){
+            chips = 0;
+        }
+
+        chipObjects = new int[chips];
+        chipDistance = new int[chips][];
+        for (int chip = 0; chip < chips; chip++){
+            chipObjects[chip] = objectAt[chipCells[chip]] - 1;
+            queue[0] = chipCells[chip];
+            chipDistance[chip] = distances(queue, 1, first, reverse);
+        }
+
+        // the best tours, from the sets of one chip up
+        tours = new int[(1 << chips) * chips];
+        for (int set = 0; set < 1 << chips; set++){
+            for (int from = 0; from < chips; from++){
+                if ((set & (1 << from)) != 0){
+                    continue;
+                }
+                long best = set == 0 ? exitDistance[chipCells[from]] : UNREACHABLE;
+                for (int next = 0; next < chips; next++){
+                    if ((set & (1 << next)) != 0){
+                        best = Math.min(best, (long) chipDistance[next][chipCells[from]]
+                            + tours[(set & ~(1 << next)) * chips + next]);
+                    }
+                }
+                tours[set * chips + from] = (int) Math.min(best, UNREACHABLE);
+            }
+        }
+    }
+
+    /**
+     * Searches the relaxed moves backwards from some cells.
+     *
+     * @param queue the cells to start from, then used as the queue.
+     * @param starts how many cells to start from.
+     * @param first where the moves onto each cell start in reverse, by cell.
+     * @param reverse the cell each move is from, grouped by the cell it goes to.
+     * @return per cell, the fewest relaxed moves to one of the cells, UNREACHABLE if there's no way.
+     */
+    private static int[] distances(int[] queue, int starts, int[] first, int[] reverse){
+        int[] distance = new int[first.length - 1];
+        Arrays.fill(distance, UNREACHABLE);
+        for (int i = 0; i < starts; i++){
+            distance[queue[i]] = 0;
+        }
+        int tail = starts;
+        for (int head = 0; head < tail; head++){
+            int cell = queue[head];
+            for (int e = first[cell]; e < first[cell + 1]; e++){
+                if (distance[reverse[e]] == UNREACHABLE){
+                    distance[reverse[e]] = distance[cell] + 1;
+                    queue[tail++] = reverse[e];
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Plays moves on a new game and returns how it ends, to check a solution against the game itself.
+     *
+     * @param source the levels.
+     * @param levelNumber the level the moves are for.
+     * @param moves the moves, without any enemy tick in between.
+     * @return the status after the last move, LEVEL_COMPLETE or GAME_COMPLETE if the moves complete the level.
+     */
+    public static HeadlessEngine.Status replay(LevelSource source, int levelNumber, String moves){
+        HeadlessEngine engine = new HeadlessEngine(new Game(source));
+        engine.loadLevel(levelNumber);
+        HeadlessEngine.Status status = engine.getStatus();
+        for (int i = 0; i < moves.length() && status == HeadlessEngine.Status.RUNNING; i++){
+            status = engine.step(moves.charAt(i));
+        }
+        return status;
+    }
+
+    /**
+     * Checks if the player can step onto a cell, like {@link model.Player#canMoveTo(int, int, Maps)}.
+     */
+    private boolean canEnter(int cell, long taken){
+        int kind = tileKind(cell, taken);
+        if (kind == Cell.WALL || kind == Cell.NO_TILE){
+            return false;
+        }
+        int object = objectAt[cell] - 1;
+        if (object < 0 || (taken & (1L << object)) != 0){
+            return true; // nothing there, or an open door
+        }
+        int color = doorColor(object);
+        return color == Cell.NO_DOOR || keys(color, taken) > 0;
+    }
+
+    /**
+     * Picks up the item on a cell, if it's still there.
+     */
+    private long pickUp(int cell, long taken){
+        int object = objectAt[cell] - 1;
+        if (object >= 0 && doorColor(object) == Cell.NO_DOOR){
+            taken |= 1L << object;
+        }
+        return taken;
+    }
+
+    /**
+     * Returns the tile of a cell, floor where an item was collected or a door opened like {@link Maps} does.
+     */
+    private int tileKind(int cell, long taken){
+        int object = objectAt[cell] - 1;
+        if (object >= 0 && (taken & (1L << object)) != 0){
+            return Cell.FLOOR;
+        }
+        return kinds[cell];
+    }
+
+    private int doorColor(int object){
+        long bit = 1L << object;
+        if ((doorMask[Cell.RED_DOOR] & bit) != 0){
+            return Cell.RED_DOOR;
+        }
+        return (doorMask[Cell.BLUE_DOOR] & bit) != 0 ? Cell.BLUE_DOOR : Cell.NO_DOOR;
+    }
+
+    /**
+     * Returns the keys of a color the player holds: the ones picked up minus the doors opened with them.
+     */
+    private int keys(int color, long taken){
+        return Long.bitCount(taken & keyMask[color]) - Long.bitCount(taken & doorMask[color]);
+    }
+
+    private static boolean isSlide(int kind){
+        return Cell.tile(kind) instanceof SlideTile;
+    }
+
+    /**
+     * Returns the direction a slide tile pushes the player who entered it going in a direction.
+     */
+    private static int push(int kind, int arrival){
+        return MOVES.indexOf(((SlideTile) Cell.tile(kind)).getSlideDirection(MOVES.charAt(arrival)));
+    }
+
+    private int neighbour(int cell, int direction){
+        int x = cell / width + DX[direction];
+        int y = cell % width + DY[direction];
+        if (x < 0 || y < 0 || x >= height || y >= width){
+            return -1;
+        }
+        return x * width + y;
+    }
+}
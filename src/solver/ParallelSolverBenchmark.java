@@ -0,0 +1,98 @@
+package solver;
+
+import engine.HeadlessEngine;
+import model.LevelSource;
+
+/**
+ * Solves generated levels with the parallel solver on 1, 2, 4, 8 and 16 threads and reports the speedup
+ * over one thread.
+ *
+ * <p>
+ * Each level is first solved with {@link LevelSolver#solve()} for the fewest moves, then a few times on the
+ * most threads so the JIT has compiled the solver, then timed per thread count (the best of a few runs,
+ * since the layers are short and the threads start again for each search). Every parallel solution is
+ * checked to have as few moves as the first one, and the last is played in the game. The speedup can't go
+ * past the number of processors the JVM has, which is printed first.
+ * </p>
+ *
+ * <p>
+ * Running (from src): java solver.ParallelSolverBenchmark [--generate=64x64,16,16] [--threads=1,2,4,8,16]
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public class ParallelSolverBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int TIMED_RUNS = 3;
+    private static final int GENERATED_LEVELS = 3;
+    private static final long GENERATED_SEED = 1;
+
+    /**
+     * Runs the parallel solver on every generated level.
+     *
+     * @param args the options above: the size, chips and required chips of the levels, and the thread counts.
+     */
+    public static void main(String[] args){
+        String generate = "64x64,16,16";
+        String threadCounts = "1,2,4,8,16";
+        for (String arg : args){
+            if (arg.startsWith("--generate=")){
+                generate = arg.substring("--generate=".length());
+            }
+            else if (arg.startsWith("--threads=")){
+                threadCounts = arg.substring("--threads=".length());
+            }
+        }
+        String[] parts = generate.split(",");
+        String[] size = parts[0].split("x");
+        int chips = parts.length > 1 ? Integer.parseInt(parts[1]) : 16;
+        int required = parts.length > 2 ? Integer.parseInt(parts[2]) : chips;
+        LevelSource source = new LevelGenerator(GENERATED_LEVELS, Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+            chips, required, GENERATED_SEED);
+        String[] counts = threadCounts.split(",");
+        int[] threads = new int[counts.length];
+        for (int i = 0; i < counts.length; i++){
+            threads[i] = Integer.parseInt(counts[i]);
+        }
+
+        System.out.printf("%d processors%n", Runtime.getRuntime().availableProcessors());
+        for (int level = 1; level <= source.getLevelCount(); level++){
+            LevelSolver solver = new LevelSolver(source.createLevel(level));
+            LevelSolver.Solution best = solver.solve();
+            if (!best.isSolved()){
+                System.out.printf("Level %d: no solution%n", level);
+                continue;
+            }
+            System.out.printf("Level %d: %d moves, A* explored %,d states in %.2f ms%n", level, best.getMoves().length(),
+                best.getStatesExplored(), best.getElapsedNanos() / 1e6);
+
+            for (int i = 0; i < WARMUP_RUNS; i++){
+                new ParallelSolver(solver, threads[threads.length - 1]).solve();
+            }
+            double oneThread = 0;
+            LevelSolver.Solution solution = null;
+            for (int count : threads){
+                for (int i = 0; i < TIMED_RUNS; i++){
+                    LevelSolver.Solution run = new ParallelSolver(solver, count).solve();
+                    if (solution == null || i == 0 || run.getElapsedNanos() < solution.getElapsedNanos()){
+                        solution = run;
+                    }
+                }
+                double millis = solution.getElapsedNanos() / 1e6;
+                if (oneThread == 0){
+                    oneThread = millis;
+                }
+                boolean shortest = solution.isSolved() && solution.getMoves().length() == best.getMoves().length();
+                System.out.printf("  %2d threads: %,d states in %.2f ms = %,.0f states/sec, speedup %.2f%s%n", count,
+                    solution.getStatesExplored(), millis, solution.getStatesPerSecond(), oneThread / millis,
+                    shortest ? "" : ", NOT THE FEWEST MOVES");
+            }
+
+            HeadlessEngine.Status status = LevelSolver.replay(source, level, solution.getMoves());
+            boolean completed = status == HeadlessEngine.Status.LEVEL_COMPLETE || status == HeadlessEngine.Status.GAME_COMPLETE;
+            System.out.printf("  replay: %s%n", completed ? "completes the level" : "FAILED, ends " + status);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package solver;
+
+import java.io.IOException;
+
+import engine.HeadlessEngine;
+import model.LevelSource;
+import model.TextLevelSource;
+
+/**
+ * Solves every level of a campaign, reports how fast the search goes and checks each solution by
+ * playing it in the game.
+ *
+ * <p>
+ * Each level is first solved a few times with a small limit on the states so the JIT has compiled the
+ * solver, then the time of one full search is reported with the shortest moves, their length (the par),
+ * the states explored per second and the memory the search took for its states.
+ * </p>
+ *
+ * <p>
+ * Running (from src): java solver.SolverBenchmark [levels file] [--generate=32x32,10,8] [--table-mb=256] [--lossy]
+ * </p>
+ *
+ * <p>
+ * --generate solves three {@link LevelGenerator} levels of that size with that many chips, of which that many
+ * are required, instead of a levels file. --table-mb caps the memory of the {@link StateTable}, which gives up
+ * the search when it's full unless --lossy is given, then it forgets states instead.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.1
+ */
+public class SolverBenchmark {
+    private static final int WARMUP_RUNS = 5;
+    private static final int WARMUP_STATES = 200_000;
+    private static final int GENERATED_LEVELS = 3;
+    private static final long GENERATED_SEED = 1;
+
+    /**
+     * Runs the solver on every level.
+     *
+     * @param args optional levels file, any file {@link LevelSource#open(String)} reads (default the built-in
+     *        levels), and the options above.
+     * @throws IOException if the levels can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        String levels = TextLevelSource.DEFAULT_PATH;
+        String generate = null;
+        long tableBytes = Long.MAX_VALUE;
+        boolean lossy = false;
+        for (String arg : args){
+            if (arg.startsWith("--generate=")){
+                generate = arg.substring("--generate=".length());
+            }
+            else if (arg.startsWith("--table-mb=")){
+                tableBytes = Long.parseLong(arg.substring("--table-mb=".length())) << 20;
+            }
+            else if (arg.equals("--lossy")){
+                lossy = true;
+            }
+            else {
+                levels = arg;
+            }
+        }
+        LevelSource source = generate != null ? generated(generate) : LevelSource.open(levels);
+
+        for (int level = 1; level <= source.getLevelCount(); level++){
+            LevelSolver solver = new LevelSolver(source.createLevel(level));
+            for (int i = 0; i < WARMUP_RUNS; i++){
+                solver.solve(new StateTable(tableBytes, lossy), WARMUP_STATES);
+            }
+            LevelSolver.Solution solution = solver.solve(new StateTable(tableBytes, lossy), Integer.MAX_VALUE);
+
+            System.out.printf("Level %d: %,d states in %.2f ms = %,.0f states/sec%n", level,
+                solution.getStatesExplored(), solution.getElapsedNanos() / 1e6, solution.getStatesPerSecond());
+            System.out.printf("  memory: %.1f MB, %.1f bytes/state, %,d states dropped%n",
+                solution.getMemoryBytes() / 1048576.0, solution.getMemoryBytes() / (double) Math.max(solution.getStatesExplored(), 1),
+                solution.getStatesDropped());
+            if (!solution.isSolved()){
+                System.out.println(solution.isAbandoned() ? "  gave up, the state table is full" : "  no solution");
+                continue;
+            }
+            HeadlessEngine.Status status = LevelSolver.replay(source, level, solution.getMoves());
+            boolean completed = status == HeadlessEngine.Status.LEVEL_COMPLETE || status == HeadlessEngine.Status.GAME_COMPLETE;
+            System.out.printf("  %d moves: %s%n  replay: %s%n", solution.getMoves().length(), solution.getMoves(),
+                completed ? "completes the level" : "FAILED, ends " + status);
+        }
+    }
+
+    /**
+     * Reads a --generate value: WIDTHxHEIGHT,CHIPS,REQUIRED.
+     */
+    private static LevelSource generated(String value){
+        String[] parts = value.split(",");
+        String[] size = parts[0].split("x");
+        int chips = parts.length > 1 ? Integer.parseInt(parts[1]) : 10;
+        int required = parts.length > 2 ? Integer.parseInt(parts[2]) : chips;
+        return new LevelGenerator(GENERATED_LEVELS, Integer.parseInt(size[0]), Integer.parseInt(size[1]), chips,
+            required, GENERATED_SEED);
+    }
+}
@@ -0,0 +1,204 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the states a search has reached, each with a number (where the search keeps the rest of what it
+ * knows about the state), in two flat arrays instead of a map of boxed keys.
+ *
+ * <p>
+ * States are packed longs that are never negative, kept by open addressing with linear probing: a state goes
+ * in the first free slot from the one its hash picks, and a lookup follows the same slots until it finds the
+ * state or a free one. A slot takes 12 bytes (the state and its number) where a HashMap&lt;Long, Integer&gt;
+ * entry takes about 70 with its node and boxes, and there are no objects for the garbage collector to follow.
+ * The table doubles when it's three quarters full, up to the most slots that fit in its memory cap.
+ * </p>
+ *
+ * <p>
+ * Once the cap is reached and the table is three quarters full, what happens depends on its mode. A strict
+ * table refuses new states, so the search knows it can't go on. A lossy table makes room by dropping the state
+ * in the new state's first slot: the search forgets it reached that state and may expand it again later, which
+ * costs time but never gives a wrong answer for a search that doesn't need to recognise every state it saw.
+ * </p>
+ *
+ * <p>
+ * Only used by one thread.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.0
+ */
+public class StateTable {
+    /** What {@link #get(long)} returns for a state that isn't in the table. */
+    public static final int MISSING = -1;
+    /** The memory of one slot, in bytes. */
+    public static final int SLOT_BYTES = 12;
+
+    private static final long FREE = -1;
+    private static final int MIN_SLOTS = 16;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private long[] states;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int maxSlots;
+    private boolean lossy;
+    private long dropped;
+
+    /**
+     * Constructs an empty table.
+     *
+     * @param maxBytes the most memory the slots may take, at least {@link #SLOT_BYTES} * 16.
+     * @param lossy true to drop states once it's full, false to refuse new ones.
+     * @throws IllegalArgumentException if the cap is too small for 16 slots.
+     */
+    public StateTable(long maxBytes, boolean lossy){
+        if (maxBytes < (long) SLOT_BYTES * MIN_SLOTS){
+            throw new IllegalArgumentException("A state table needs at least " + SLOT_BYTES * MIN_SLOTS + " bytes");
+        }
+        this.maxSlots = (int) Math.min(MAX_SLOTS, Long.highestOneBit(maxBytes / SLOT_BYTES));
+        this.lossy = lossy;
+        allocate(Math.min(1024, maxSlots));
+    }
+
+    /**
+     * Returns the number given to a state.
+     *
+     * @param state a packed state, not negative.
+     * @return its number, MISSING if it isn't in the table.
+     */
+    public int get(long state){
+        for (int slot = home(state); ; slot = (slot + 1) & mask){
+            long found = states[slot];
+            if (found == state){
+                return values[slot];
+            }
+            if (found == FREE){
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Adds a state with its number, or changes the number of a state already in the table.
+     *
+     * <p>
+     * post-condition: get(state) returns value, unless it returns false
+     * </p>
+     *
+     * @param state a packed state, not negative.
+     * @param value its number.
+     * @return false if the table is strict and full, so the state isn't in it.
+     */
+    public boolean put(long state, int value){
+        int slot = home(state);
+        while (states[slot] != FREE && states[slot] != state){
+            slot = (slot + 1) & mask;
+        }
+        if (states[slot] == FREE){
+            if (size >= threshold()){
+                if (states.length < maxSlots){
+                    allocate(states.length * 2);
+                    return put(state, value);
+                }
+                if (!lossy){
+                    return false;
+                }
+                // take the place of whatever is in the first slot, the slots stay as full as before
+                slot = home(state);
+                dropped++;
+                size--;
+            }
+            size++;
+        }
+        states[slot] = state;
+        values[slot] = value;
+        return true;
+    }
+
+    /**
+     * Returns the number of states in the table.
+     *
+     * @return the states kept.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns the number of states a lossy table dropped to make room.
+     *
+     * @return the states forgotten.
+     */
+    public long getDropped(){
+        return dropped;
+    }
+
+    /**
+     * Returns the memory the slots take now.
+     *
+     * @return bytes.
+     */
+    public long getMemoryBytes(){
+        return (long) states.length * SLOT_BYTES;
+    }
+
+    /**
+     * Checks if the table reached its memory cap and is as full as it gets.
+     *
+     * @return true if a new state has to be refused or take another's place.
+     */
+    public boolean isFull(){
+        return states.length == maxSlots && size >= threshold();
+    }
+
+    private int threshold(){
+        return states.length / 4 * 3;
+    }
+
+    private int home(long state){
+        return hash(state) & mask;
+    }
+
+    /**
+     * Spreads the bits of a state (the mix of SplitMix64), so the cell in the low bits doesn't pick the slot alone.
+     *
+     * @param state a packed state.
+     * @return the hash, whose low bits pick the first slot.
+     */
+    static int hash(long state){
+        long h = state;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (h ^ (h >>> 31));
+    }
+
+    /**
+     * Moves every state into new arrays with a number of slots.
+     *
+     * @param slots a power of two, more than the states.
+     */
+    private void allocate(int slots){
+        long[] oldStates = states;
+        int[] oldValues = values;
+        states = new long[slots];
+        values = new int[slots];
+        Arrays.fill(states, FREE);
+        mask = slots - 1;
+        if (oldStates == null){
+            return;
+        }
+        for (int i = 0; i < oldStates.length; i++){
+            if (oldStates[i] != FREE){
+                int slot = home(oldStates[i]);
+                while (states[slot] != FREE){
+                    slot = (slot + 1) & mask;
+                }
+                states[slot] = oldStates[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
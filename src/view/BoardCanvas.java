@@ -0,0 +1,610 @@
+package view;
+
+import model.Cell;
+import model.Maps;
+
+import engine.GameSnapshot;
+
+import java.util.Arrays;
+
+import java.awt.Color;
+import java.awt.DisplayMode;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Paints the whole game board on a single component.
+ *
+ * <p>
+ * This is the alternative to the grid of JLabels in {@link GUI}. Every sprite is pre-rendered into one
+ * tile atlas image at the current cell size (taken from the {@link SpriteCache}), and everything is drawn
+ * with unscaled drawImage blits out of that atlas. The atlas is only rebuilt when the cell size changes.
+ * </p>
+ *
+ * <p>
+ * The board is drawn in two layers. The tiles (walls, floors, water, fire, ice, force floors) almost never
+ * change, so they are rendered once per view into an off-screen background image, and only a cell whose
+ * tile kind changed is redrawn into it. Doors, items, the player and the enemies are composited on top of it
+ * every paint, so the cost of a frame depends on how many things move rather than on the size of the map.
+ * When the view scrolls, the background is shifted and only the cells scrolled into view are drawn.
+ * </p>
+ *
+ * <p>
+ * Everything is drawn from the {@link GameSnapshot} given to {@link #show(GameSnapshot)}, never from the model.
+ * A character that moved one cell on the last tick is drawn between its two cells, interpolated by how much
+ * of the tick has passed when the frame is painted. Snapshots only come once per tick, so while a character
+ * is between cells a timer repaints the character cells at the display's refresh rate, until the frame
+ * that draws them on their new cells. The move is therefore shown over one tick, starting when the tick
+ * is published.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @author Anton Luis Galido
+ * @version 1.5
+ */
+public class BoardCanvas extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    private static final Color GRID_COLOR = Color.WHITE; // same as the border of the JLabel grid
+    private static final Color CELL_BACKGROUND = new Color(238, 238, 238); // default JLabel background
+    private static final int DEFAULT_REFRESH_RATE = 60; // frames per second when the display doesn't say
+
+    private GameSnapshot snapshot; // what is being drawn, valid until the GUI takes the next one
+    private long shownView; // the view of the snapshot shown, see GameSnapshot.getView()
+    private short[] shownCells; // copy of the cells shown, the previous snapshot is reused once the next is taken
+    private int[] characterCells; // cells the characters were drawn over (both ends of a move)
+    private int characterCellCount;
+    private Timer animation; // repaints the characters while they're between cells
+    private Runnable afterMoveShown; // run once a paint draws the player on the cell of the shown snapshot
+    private Runnable afterNextPaint; // the same for older snapshots, a newer one starts from where they ended
+    private GraphicsConfiguration config; // null when running headless
+    private SpriteCache sprites;
+    private BufferedImage atlas; // every sprite side by side, one slot per symbol
+    private int atlasCellSize; // the cell size the atlas was built for
+    private int[] slotOf; // symbol -> slot in the atlas, -1 if there's no sprite for it
+
+    private BufferedImage background; // the tile layer of the whole view at the current cell size
+    private long backgroundView; // the view the background was rendered from
+    private Maps backgroundMap; // its map and window origin, to scroll it instead of rendering it again
+    private int backgroundOriginX;
+    private int backgroundOriginY;
+    private int backgroundCellSize;
+    private byte[] backgroundKinds; // tile kind of each cell as drawn in the background
+    private int[] entityCells; // indices of the cells that have a door or an item
+
+    /**
+     * Constructs the canvas, it draws nothing until it's shown a snapshot.
+     *
+     * @param sprites the sprite cache providing the sprites scaled to the cell size.
+     */
+    public BoardCanvas(SpriteCache sprites){
+        this.sprites = sprites;
+        this.config = GraphicsEnvironment.isHeadless() ? null
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        this.slotOf = new int[Character.MAX_VALUE + 1];
+        this.shownCells = new short[0];
+        this.characterCells = new int[0];
+        this.animation = new Timer(1000 / refreshRate(), e -> animationFrame());
+        setOpaque(true);
+        setPreferredSize(new Dimension(800, 800));
+    }
+
+    /**
+     * Returns the refresh rate of the screen the canvas is shown on.
+     *
+     * @return frames per second, DEFAULT_REFRESH_RATE when headless or unknown.
+     */
+    private int refreshRate(){
+        if (config == null){
+            return DEFAULT_REFRESH_RATE;
+        }
+        int rate = config.getDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+    }
+
+    /**
+     * Draws every sprite, already scaled to the cell size, into one image so drawing anything is
+     * one unscaled blit from a single source.
+     *
+     * @param size the cell size.
+     */
+    private void buildAtlas(int size){
+        int inner = spriteSize(size);
+
+        atlas = createImage(inner * sprites.getSymbols().size(), inner, Transparency.TRANSLUCENT);
+        Arrays.fill(slotOf, -1);
+
+        Graphics2D g = atlas.createGraphics();
+        int slot = 0;
+        for (char symbol : sprites.getSymbols()){
+            ImageIcon icon = sprites.get(symbol, inner);
+            if (icon != null){
+                g.drawImage(icon.getImage(), slot * inner, 0, null);
+            }
+            slotOf[symbol] = slot;
+            slot++;
+        }
+        g.dispose();
+        atlasCellSize = size;
+    }
+
+    /**
+     * Returns the size of a sprite inside a cell, leaving 1 pixel on every side for the grid lines.
+     *
+     * @param size the cell size.
+     * @return the sprite size.
+     */
+    private static int spriteSize(int size){
+        return Math.max(1, size - 2);
+    }
+
+    /**
+     * Creates an image in the screen's format when there is a screen.
+     *
+     * @param width image width.
+     * @param height image height.
+     * @param transparency the Transparency constant.
+     * @return the new image.
+     */
+    private BufferedImage createImage(int width, int height, int transparency){
+        if (config != null){
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+            transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Rebuilds the atlas and the background from the sprite cache on the next paint, done when the
+     * sprites finished loading.
+     */
+    public void reloadSprites(){
+        atlasCellSize = 0;
+        backgroundCellSize = 0;
+        background = null; // the tiles kept in it are the old sprites
+        repaint();
+    }
+
+    /**
+     * Repaints the whole board.
+     */
+    public void repaintAll(){
+        repaint();
+    }
+
+    /**
+     * Switches to a newer snapshot and repaints what looks different from the one shown before.
+     *
+     * <p>
+     * Only the snapshot's dirty cells are looked at (every cell when it says they all are). Cells whose
+     * tile changed are redrawn into the background first. Cells whose door or item changed, and the cells
+     * a character is or was on, are repainted. A new view (another level, or the window scrolled) is
+     * repainted whole.
+     * The previous snapshot may already be reused by the simulation, so it is compared with the copies
+     * kept here instead.
+     * </p>
+     *
+     * @param next the snapshot to draw.
+     */
+    public void show(GameSnapshot next){
+        if (afterMoveShown != null){
+            afterNextPaint = afterNextPaint == null ? afterMoveShown : both(afterNextPaint, afterMoveShown);
+            afterMoveShown = null;
+        }
+        boolean sameView = snapshot != null && next.getView() == shownView;
+        snapshot = next;
+        int size = getCellSize();
+        int rows = next.getHeight();
+        int cols = next.getWidth();
+
+        if (!sameView || next.getView() != backgroundView || size != backgroundCellSize || size != atlasCellSize){
+            keepShownCells();
+            keepCharacterCells();
+            repaint();
+            animate();
+            return;
+        }
+
+        Graphics2D g = null;
+        if (next.isAllDirty()){
+            for (int x = 0; x < rows; x++){
+                for (int y = 0; y < cols; y++){
+                    g = showCell(g, x, y, size);
+                }
+            }
+        }
+        else {
+            for (int n = 0; n < next.getDirtyCount(); n++){
+                g = showCell(g, next.getDirtyX(n), next.getDirtyY(n), size);
+            }
+        }
+        if (g != null){
+            g.dispose();
+        }
+
+        // where the characters were drawn, then where they are drawn now
+        for (int n = 0; n < characterCellCount; n++){
+            repaintCell(characterCells[n] / cols, characterCells[n] % cols, size);
+        }
+        keepCharacterCells();
+        for (int n = 0; n < characterCellCount; n++){
+            repaintCell(characterCells[n] / cols, characterCells[n] % cols, size);
+        }
+        animate();
+    }
+
+    /**
+     * Runs a task once a frame showing the player where the current snapshot has them finished painting,
+     * which is after the move was animated when they stepped to a next cell. If a newer snapshot is shown
+     * first, the task runs after its first paint instead, as that starts from the cell the move ended on.
+     *
+     * @param task the task, run on the Swing thread.
+     */
+    public void whenMoveShown(Runnable task){
+        afterMoveShown = afterMoveShown == null ? task : both(afterMoveShown, task);
+    }
+
+    private static Runnable both(Runnable first, Runnable second){
+        return () -> {
+            first.run();
+            second.run();
+        };
+    }
+
+    /**
+     * Starts repainting the characters at the display rate if one of them is between two cells.
+     */
+    private void animate(){
+        boolean moving = isStep(snapshot.getPreviousPlayerX(), snapshot.getPreviousPlayerY(), snapshot.getPlayerX(), snapshot.getPlayerY());
+        for (int i = 0; i < snapshot.getEnemyCount() && !moving; i++){
+            moving = isStep(snapshot.getPreviousEnemyX(i), snapshot.getPreviousEnemyY(i), snapshot.getEnemyX(i), snapshot.getEnemyY(i));
+        }
+        if (moving){
+            animation.start();
+        }
+    }
+
+    /**
+     * Repaints the cells the characters move over, and stops once that repaint draws them on their new cells.
+     */
+    private void animationFrame(){
+        int size = getCellSize();
+        int cols = snapshot.getWidth();
+        for (int n = 0; n < characterCellCount; n++){
+            repaintCell(characterCells[n] / cols, characterCells[n] % cols, size);
+        }
+        if (snapshot.getInterpolation(System.nanoTime()) >= 1){
+            animation.stop(); // the paint comes later, so it's at the end of the move too
+        }
+    }
+
+    /**
+     * Checks if a character moved to a next cell, the only moves that are interpolated.
+     *
+     * @param fromX the row on the previous tick.
+     * @param fromY the column on the previous tick.
+     * @param toX the row now.
+     * @param toY the column now.
+     * @return true if it moved exactly one cell.
+     */
+    private static boolean isStep(int fromX, int fromY, int toX, int toY){
+        return Math.abs(toX - fromX) + Math.abs(toY - fromY) == 1;
+    }
+
+    /**
+     * Repaints a cell if it's different from the one shown, redrawing its tile into the background first
+     * if that changed.
+     *
+     * @param g the graphics of the background, null if it wasn't needed yet.
+     * @param x the x coordinate (row) of the cell.
+     * @param y the y coordinate (column) of the cell.
+     * @param size the cell size.
+     * @return the graphics of the background, created if the tile was redrawn.
+     */
+    private Graphics2D showCell(Graphics2D g, int x, int y, int size){
+        int cols = snapshot.getWidth();
+        short cell = snapshot.getCell(x, y);
+        if (cell == shownCells[x * cols + y]){
+            return g;
+        }
+
+        int kind = Cell.tileKind(cell);
+        if (backgroundKinds[x * cols + y] != kind){
+            if (g == null){
+                g = background.createGraphics();
+            }
+            drawBackgroundCell(g, x, y, kind, size);
+            backgroundKinds[x * cols + y] = (byte) kind;
+        }
+        shownCells[x * cols + y] = cell;
+        repaintCell(x, y, size);
+        return g;
+    }
+
+    /**
+     * Copies the cells of the shown snapshot.
+     */
+    private void keepShownCells(){
+        int count = snapshot.getWidth() * snapshot.getHeight();
+        if (shownCells.length != count){
+            shownCells = new short[count];
+        }
+        for (int x = 0; x < snapshot.getHeight(); x++){
+            for (int y = 0; y < snapshot.getWidth(); y++){
+                shownCells[x * snapshot.getWidth() + y] = snapshot.getCell(x, y);
+            }
+        }
+        shownView = snapshot.getView();
+    }
+
+    /**
+     * Remembers the cells the characters of the shown snapshot are drawn over, both the cell they
+     * came from and the one they're on (they're drawn in between while interpolating).
+     */
+    private void keepCharacterCells(){
+        int cols = snapshot.getWidth();
+        int needed = 2 * (snapshot.getEnemyCount() + 1);
+        if (characterCells.length < needed){
+            characterCells = new int[needed];
+        }
+
+        characterCellCount = 0;
+        characterCells[characterCellCount++] = snapshot.getPreviousPlayerX() * cols + snapshot.getPreviousPlayerY();
+        characterCells[characterCellCount++] = snapshot.getPlayerX() * cols + snapshot.getPlayerY();
+        for (int i = 0; i < snapshot.getEnemyCount(); i++){
+            characterCells[characterCellCount++] = snapshot.getPreviousEnemyX(i) * cols + snapshot.getPreviousEnemyY(i);
+            characterCells[characterCellCount++] = snapshot.getEnemyX(i) * cols + snapshot.getEnemyY(i);
+        }
+    }
+
+    /**
+     * Repaints a single cell of the board.
+     *
+     * @param x the x coordinate (row) of the cell.
+     * @param y the y coordinate (column) of the cell.
+     * @param size the cell size.
+     */
+    private void repaintCell(int x, int y, int size){
+        repaint(y * size, x * size, size, size);
+    }
+
+    /**
+     * Returns the size in pixels of one cell, so the whole view fits the component.
+     *
+     * @return the cell size.
+     */
+    private int getCellSize(){
+        return Math.max(1, Math.min(getWidth() / snapshot.getWidth(), getHeight() / snapshot.getHeight()));
+    }
+
+    /**
+     * Renders the tile layer of the whole view, done when the view or the cell size changes.
+     *
+     * <p>
+     * When the view only scrolled over the same map, the part of the old background still in view is
+     * moved instead, so only the cells scrolled in are drawn.
+     * </p>
+     *
+     * @param snapshot the snapshot to render.
+     * @param size the cell size.
+     */
+    private void buildBackground(GameSnapshot snapshot, int size){
+        int rows = snapshot.getHeight();
+        int cols = snapshot.getWidth();
+        int dx = snapshot.getOriginX() - backgroundOriginX;
+        int dy = snapshot.getOriginY() - backgroundOriginY;
+        boolean scrolled = background != null && snapshot.getMap() == backgroundMap && size == backgroundCellSize
+            && backgroundKinds.length == rows * cols && background.getWidth() == cols * size
+            && Math.abs(dx) < rows && Math.abs(dy) < cols;
+
+        Graphics2D g;
+        if (scrolled){
+            g = background.createGraphics();
+            g.copyArea(0, 0, cols * size, rows * size, -dy * size, -dx * size);
+            byte[] kinds = new byte[rows * cols];
+            for (int x = 0; x < rows; x++){
+                for (int y = 0; y < cols; y++){
+                    int oldX = x + dx;
+                    int oldY = y + dy;
+                    boolean kept = oldX >= 0 && oldX < rows && oldY >= 0 && oldY < cols;
+                    kinds[x * cols + y] = kept ? backgroundKinds[oldX * cols + oldY] : -1;
+                }
+            }
+            backgroundKinds = kinds;
+        }
+        else {
+            background = createImage(cols * size, rows * size, Transparency.OPAQUE);
+            backgroundKinds = new byte[rows * cols];
+            Arrays.fill(backgroundKinds, (byte) -1);
+            g = background.createGraphics();
+            g.setColor(GRID_COLOR);
+            g.fillRect(0, 0, cols * size, rows * size);
+        }
+
+        int entities = 0;
+        entityCells = new int[rows * cols];
+        for (int x = 0; x < rows; x++){
+            for (int y = 0; y < cols; y++){
+                short cell = snapshot.getCell(x, y);
+                int kind = Cell.tileKind(cell);
+                if (backgroundKinds[x * cols + y] != kind){
+                    drawBackgroundCell(g, x, y, kind, size);
+                    backgroundKinds[x * cols + y] = (byte) kind;
+                }
+
+                if (Cell.doorColor(cell) != Cell.NO_DOOR || Cell.itemKind(cell) != Cell.NO_ITEM){
+                    entityCells[entities++] = x * cols + y;
+                }
+            }
+        }
+        g.dispose();
+
+        entityCells = Arrays.copyOf(entityCells, entities);
+        backgroundView = snapshot.getView();
+        backgroundMap = snapshot.getMap();
+        backgroundOriginX = snapshot.getOriginX();
+        backgroundOriginY = snapshot.getOriginY();
+        backgroundCellSize = size;
+    }
+
+    /**
+     * Draws one tile into the background image.
+     *
+     * @param g the graphics of the background image.
+     * @param x the x coordinate (row) of the cell.
+     * @param y the y coordinate (column) of the cell.
+     * @param kind the tile kind.
+     * @param size the cell size.
+     */
+    private void drawBackgroundCell(Graphics2D g, int x, int y, int kind, int size){
+        // 1 pixel gap on every side keeps the white grid lines of the JLabel version
+        g.setColor(CELL_BACKGROUND);
+        g.fillRect(y * size + 1, x * size + 1, spriteSize(size), spriteSize(size));
+        if (kind != Cell.NO_TILE){
+            drawSprite(g, Cell.tileSymbol(kind), y * size, x * size, size);
+        }
+    }
+
+    /**
+     * Blits the sprite of a symbol from the atlas into a cell.
+     *
+     * @param g the graphics to draw with.
+     * @param symbol the symbol of the sprite.
+     * @param left the pixel column of the cell's left edge.
+     * @param top the pixel row of the cell's top edge.
+     * @param size the cell size.
+     */
+    private void drawSprite(Graphics g, char symbol, int left, int top, int size){
+        int slot = slotOf[symbol];
+        if (slot < 0){
+            return;
+        }
+
+        int inner = spriteSize(size);
+        int dx = left + 1;
+        int dy = top + 1;
+        int sx = slot * inner;
+        g.drawImage(atlas, dx, dy, dx + inner, dy + inner, sx, 0, sx + inner, inner, null);
+    }
+
+    /**
+     * Paints the background for the clip, then the doors, items, player and enemies on top.
+     *
+     * @param graphics the graphics to paint with.
+     */
+    @Override
+    protected void paintComponent(Graphics graphics){
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null){
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        graphics.setColor(GRID_COLOR);
+        graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (snapshot == null){
+            return;
+        }
+
+        int size = getCellSize();
+        if (size != atlasCellSize){
+            buildAtlas(size);
+        }
+        if (snapshot.getView() != backgroundView || size != backgroundCellSize){
+            buildBackground(snapshot, size);
+        }
+
+        graphics.drawImage(background,
+            clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+            clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, null);
+
+        int cols = snapshot.getWidth();
+        for (int i : entityCells){
+            int x = i / cols;
+            int y = i % cols;
+            if (!intersects(clip, x, y, size)){
+                continue;
+            }
+
+            short cell = snapshot.getCell(x, y);
+            if (Cell.doorColor(cell) != Cell.NO_DOOR){
+                drawSprite(graphics, Cell.doorSymbol(Cell.doorColor(cell)), y * size, x * size, size);
+            }
+            else if (!Cell.isItemCollected(cell)){
+                drawSprite(graphics, Cell.itemSymbol(Cell.itemKind(cell)), y * size, x * size, size);
+            }
+        }
+
+        double alpha = snapshot.getInterpolation(System.nanoTime());
+        drawCharacter(graphics, clip, snapshot.getPlayerSprite(), snapshot.getPreviousPlayerX(), snapshot.getPreviousPlayerY(),
+            snapshot.getPlayerX(), snapshot.getPlayerY(), alpha, size);
+        for (int i = 0; i < snapshot.getEnemyCount(); i++){
+            drawCharacter(graphics, clip, snapshot.getEnemySprite(i), snapshot.getPreviousEnemyX(i), snapshot.getPreviousEnemyY(i),
+                snapshot.getEnemyX(i), snapshot.getEnemyY(i), alpha, size);
+        }
+
+        // queued, so they run once this paint is on screen
+        if (intersects(clip, snapshot.getPlayerX(), snapshot.getPlayerY(), size)){
+            if (afterNextPaint != null){
+                SwingUtilities.invokeLater(afterNextPaint);
+                afterNextPaint = null;
+            }
+            if (afterMoveShown != null && (alpha >= 1 || !isStep(snapshot.getPreviousPlayerX(),
+                    snapshot.getPreviousPlayerY(), snapshot.getPlayerX(), snapshot.getPlayerY()))){
+                SwingUtilities.invokeLater(afterMoveShown);
+                afterMoveShown = null;
+            }
+        }
+    }
+
+    /**
+     * Draws a character between the cell it was on last tick and the one it's on now.
+     * Moves longer than one cell (teleports, restarts) aren't interpolated.
+     *
+     * @param g the graphics to draw with.
+     * @param clip the clip rectangle.
+     * @param symbol the sprite symbol.
+     * @param fromX the row on the previous tick.
+     * @param fromY the column on the previous tick.
+     * @param toX the row now.
+     * @param toY the column now.
+     * @param alpha how far between the ticks the frame is, from 0 to 1.
+     * @param size the cell size.
+     */
+    private void drawCharacter(Graphics g, Rectangle clip, char symbol, int fromX, int fromY, int toX, int toY, double alpha, int size){
+        if (!isStep(fromX, fromY, toX, toY)){
+            fromX = toX;
+            fromY = toY;
+        }
+        if (!intersects(clip, fromX, fromY, size) && !intersects(clip, toX, toY, size)){
+            return;
+        }
+
+        int left = (int) Math.round((fromY + (toY - fromY) * alpha) * size);
+        int top = (int) Math.round((fromX + (toX - fromX) * alpha) * size);
+        drawSprite(g, symbol, left, top, size);
+    }
+
+    /**
+     * Checks if a cell overlaps the clip.
+     *
+     * @param clip the clip rectangle.
+     * @param x the x coordinate (row) of the cell.
+     * @param y the y coordinate (column) of the cell.
+     * @param size the cell size.
+     * @return true if any part of the cell is inside the clip.
+     */
+    private static boolean intersects(Rectangle clip, int x, int y, int size){
+        return y * size < clip.x + clip.width && (y + 1) * size > clip.x
+            && x * size < clip.y + clip.height && (x + 1) * size > clip.y;
+    }
+}
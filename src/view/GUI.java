@@ -1,20 +1,37 @@
 
 package view;
 
-import model.Enemy;
 import model.Game;
-import model.Level;
-import model.Inventory;
+import model.Maps;
+
+import engine.GameSnapshot;
+import engine.HeadlessEngine;
+import engine.SimulationLoop;
 
 //for image dictionary
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 import java.awt.GridLayout;
+import java.awt.Component;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 //for keyboard listener
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
@@ -25,8 +42,9 @@ import javax.swing.JLabel;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.JOptionPane;
-import javax.swing.Timer;
 import javax.swing.BoxLayout;
+import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 import javax.swing.JButton;
 
 //for images
@@ -40,7 +58,20 @@ import javax.swing.ImageIcon;
  * Updates the display according to the game state.
  * </p>
  * 
- * @version 1.0
+ * <p>
+ * The game itself runs on the {@link SimulationLoop} thread. The GUI only draws the snapshots the
+ * loop publishes and sends it the player's input, so nothing here reads the model directly.
+ * </p>
+ * 
+ * <p>
+ * The board is a camera over the map: whenever it's resized, the simulation is told how many cells of
+ * about 32 pixels fit in it, and the snapshots only hold that window around the player.
+ * A map that fits is shown whole and scaled up to fill the board like before, a bigger one scrolls with
+ * the player. Either way there's one label (or one canvas cell) per cell on screen, so drawing costs
+ * the same for a 20x20 level and a 100000x100000 world.
+ * </p>
+ * 
+ * @version 1.3
  * 
  * @author Melangelo Guanzon
  * @author Anton Luis Galido
@@ -48,14 +79,24 @@ import javax.swing.ImageIcon;
  * 
  */
 public class GUI {
-
-    private Timer gameTimer;
-    private Game game; //holds the model (Game class)
+    private static final int PLACEHOLDER_SIZE = 32; // same as the sprites
+    private static final int VIEW_CELL_SIZE = 32; // maps too big for the window are shown with cells of about this size
+
+    private SimulationLoop simulation; //runs the model (Game class) on its own thread
+    private GameSnapshot shown; //the snapshot currently drawn, valid until the next one is taken
+    private char[] shownSymbols; //the symbol drawn in each label of the grid
+    private AtomicBoolean renderPending; //true while a render is queued on the Swing thread
+    private boolean dialogOpen; //a level complete or game over dialog is showing
+    private boolean awaitingResume; //a command was posted after a dialog, wait until the level runs again
     private Map<Character, ImageIcon> imageMap; //creates key value pairs for each character pertaining to associated image
+    private SpriteCache sprites; //the images scaled to the size of the cells
+    private int iconSize; //the size the label icons were last drawn at
+    private CompletableFuture<Map<Character, BufferedImage>> spriteLoad; //the sprites being decoded in the background
 
     private JFrame frame; //window of the program
     private JPanel gridPanel; // panel that holds the grid of tiles
     private JLabel[][] tiles; //2d array of Jlabels representing all tiles
+    private BoardCanvas canvas; //single component board, used instead of the JLabel grid when selected
 
     private int rows;
     private int cols;
@@ -66,42 +107,83 @@ public class GUI {
     private JLabel bootsLabel;
     private JButton restartButton;
 
+    private InputLatencyTracker latency; //key press to screen measurements
+    private JLabel latencyOverlay; //debug overlay showing them, toggled with F3
+    private Timer latencyOverlayTimer; //refreshes the overlay text while it's shown
+
     /**
-     * Constructs the GUI and initializes all of the components.
+     * Constructs the GUI with the JLabel grid and initializes all of the components.
      * 
      * <p>
      * precondition: game object is initialized.
-     * postcondition: JFrame and all panels/labels are initialized
+     * postcondition: JFrame and all panels/labels are initialized and the game is running
      * </p>
      * @param game the game model controlling all the game logic.
      */
     public GUI(Game game) {
-        this.game = game;
-        this.rows = game.getCurrentLevel().getMap().getHeight();
-        this.cols = game.getCurrentLevel().getMap().getWidth();
+        this(game, false);
+    }
+
+    /**
+     * Constructs the GUI running the game at the default tick rate.
+     * 
+     * <p>
+     * precondition: game object is initialized.
+     * postcondition: JFrame and all panels/labels (or the canvas) are initialized and the game is running
+     * </p>
+     * @param game the game model controlling all the game logic.
+     * @param useCanvas true to paint the board on a single {@link BoardCanvas}, false for the JLabel grid.
+     */
+    public GUI(Game game, boolean useCanvas) {
+        this(new SimulationLoop(new HeadlessEngine(game)), useCanvas);
+    }
+
+    /**
+     * Constructs the GUI and initializes all of the components, then starts the simulation.
+     * 
+     * <p>
+     * precondition: the simulation is not started yet.
+     * postcondition: JFrame and all panels/labels (or the canvas) are initialized and the simulation is running
+     * </p>
+     * @param simulation the loop running the game.
+     * @param useCanvas true to paint the board on a single {@link BoardCanvas}, false for the JLabel grid.
+     */
+    public GUI(SimulationLoop simulation, boolean useCanvas) {
+        Maps map = simulation.getEngine().getGame().getMap(); //not started yet, so the model can still be read here
+        this.simulation = simulation;
+        this.rows = Math.min(map.getHeight(), simulation.getViewRows()); //big maps are shown through a window
+        this.cols = Math.min(map.getWidth(), simulation.getViewCols());
+        this.renderPending = new AtomicBoolean(false);
         loadImages();
+        sprites = new SpriteCache(imageMap);
 
         frame = new JFrame("Chip's Challenge! 🤓");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); //close the app when 'X' is clicked
 
 
-        // Each cell in the grid will hold one JLabel
-        gridPanel = new JPanel(new GridLayout(rows, cols));
-        tiles = new JLabel[rows][cols];
-
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-
-                JLabel label = new JLabel();
-                label.setOpaque(true); // Make the label opaque so background color is visible
-
-                // Add a white border to each label for visual separation
-                label.setBorder(BorderFactory.createLineBorder(Color.WHITE));
-                label.setHorizontalAlignment(JLabel.CENTER);
-
-                tiles[x][y] = label;
-                gridPanel.add(label);
-            }
+        if (useCanvas){
+            canvas = new BoardCanvas(sprites);
+        }
+        else {
+            gridPanel = new JPanel();
+            buildGrid();
+
+            // the icons are scaled to the cells, so they have to be redrawn when the window is resized
+            gridPanel.addComponentListener(new ComponentAdapter(){
+                @Override
+                public void componentResized(ComponentEvent e){
+                    updateViewSize(gridPanel);
+                    refreshMap();
+                }
+            });
+        }
+        if (canvas != null){
+            canvas.addComponentListener(new ComponentAdapter(){
+                @Override
+                public void componentResized(ComponentEvent e){
+                    updateViewSize(canvas);
+                }
+            });
         }
 
 
@@ -149,8 +231,22 @@ public class GUI {
         infoPanel.add(Box.createVerticalGlue());
 
         frame.setLayout(new java.awt.BorderLayout());
-        frame.add(gridPanel, java.awt.BorderLayout.CENTER);
+        frame.add(useCanvas ? canvas : gridPanel, java.awt.BorderLayout.CENTER);
         frame.add(infoPanel, java.awt.BorderLayout.EAST);
+
+        //debug overlay on top of the board, hidden until F3 is pressed
+        latency = new InputLatencyTracker();
+        latencyOverlay = new JLabel();
+        latencyOverlay.setOpaque(true);
+        latencyOverlay.setBackground(new Color(0, 0, 0, 170));
+        latencyOverlay.setForeground(Color.GREEN);
+        latencyOverlay.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        latencyOverlay.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        JPanel glassPane = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        glassPane.setOpaque(false);
+        glassPane.add(latencyOverlay);
+        frame.setGlassPane(glassPane);
+        latencyOverlayTimer = new Timer(250, e -> latencyOverlay.setText(latency.getSummary()));
         
         frame.setMinimumSize(new java.awt.Dimension(900, 800));
         frame.setPreferredSize(new java.awt.Dimension(1000, 850));
@@ -158,20 +254,30 @@ public class GUI {
 
         frame.setLocationRelativeTo(null);
 
+        simulation.addListener(snapshot -> {
+            // coalesce: if the Swing thread is behind, it just draws the latest snapshot once
+            if (renderPending.compareAndSet(false, true)){
+                SwingUtilities.invokeLater(this::render);
+            }
+        });
+        simulation.start();
         refreshMap();
         
-        frame.setVisible(true);
-        frame.setResizable(true);
+        frame.addWindowListener(new WindowAdapter(){
+            @Override
+            public void windowOpened(WindowEvent e){
+                System.out.printf("Startup: first frame shown after %d ms%n", ManagementFactory.getRuntimeMXBean().getUptime());
+            }
 
-        gameTimer = new Timer(300, e -> {
-            if (game.isRunning() && game.isPlayerAlive()){
-                game.updateEnemies();
-                checkCollisions();
-                refreshMap();
-                checkGameState();
+            @Override
+            public void windowDeactivated(WindowEvent e){
+                simulation.releaseKeys(); //the key releases go to the other window now
             }
         });
-        gameTimer.start();
+        frame.setVisible(true);
+        frame.setResizable(true);
+
+        spriteLoad.thenAccept(loaded -> SwingUtilities.invokeLater(() -> showSprites(loaded)));
     }
 
     /**
@@ -212,153 +318,310 @@ public class GUI {
     }
 
     /**
-     * Checks if there's a collision between the player and enemy
+     * Returns the simulation the GUI is showing, to send it input.
+     * 
+     * @return the simulation loop.
+     */
+    public SimulationLoop getSimulation(){
+        return simulation;
+    }
+
+    /**
+     * Draws the latest snapshot published by the simulation, then checks the game state.
      * 
      * <p>
-     * Pre-condition: game and player initialized  
-     * Post-condition: player is killed if collision detected.
+     * precondition: called on the Swing thread
      * </p>
-     * 
      */
-    public void checkCollisions(){
-        for (Enemy enemy : game.getEnemies()){
-            if (enemy.getXPosition() == game.getPlayer().getXPosition() &&
-                enemy.getYPosition() == game.getPlayer().getYPosition()) {
-                    game.getPlayer().killPlayer("caught by enemy");
-                }
+    private void render(){
+        renderPending.set(false);
+        refreshChangedCells();
+        latency.snapshotShown(shown, canvas);
+        checkGameState(shown);
+    }
+
+    /**
+     * Shows or hides the input latency overlay.
+     */
+    public void toggleLatencyOverlay(){
+        boolean visible = !frame.getGlassPane().isVisible();
+
+        latencyOverlay.setText(latency.getSummary());
+        frame.getGlassPane().setVisible(visible);
+        if (visible){
+            latencyOverlayTimer.start();
+        } else {
+            latencyOverlayTimer.stop();
+        }
+    }
+
+    /**
+     * Writes the input latency histograms to input-latency.txt in the working directory.
+     */
+    public void dumpLatency(){
+        File file = new File("input-latency.txt");
+        try {
+            latency.dump(file);
+            System.out.println("Input latency written to " + file.getAbsolutePath());
+        } catch (IOException e){
+            System.err.println("Could not write " + file + ": " + e.getMessage());
         }
     }
-    
 
 
     /**
      * Loads all the images to the image dictionary.
      * 
      * This is the logic that maps the character Array from previous MCO project, to image icons.
+     * 
+     * <p>
+     * precondition: none
+     * postcondition: every symbol has a flat colored placeholder right away, and the real sprites
+     * replace them once {@link SpriteAtlas} has decoded them on a background thread.
+     * </p>
      */
     public void loadImages(){
         imageMap = new HashMap<>();
-        try {
-            //player
-            imageMap.put('u', new ImageIcon("resources/characters/chipForward.png"));
-            imageMap.put('s', new ImageIcon("resources/characters/chipStanding.png")); //s for south
-            imageMap.put('l', new ImageIcon("resources/characters/chipLeft.png"));
-            imageMap.put('r', new ImageIcon("resources/characters/chipRight.png"));
-            imageMap.put('1', new ImageIcon("resources/characters/drown.png")); 
-            imageMap.put('2', new ImageIcon("resources/characters/burn.png"));
-            imageMap.put('3', new ImageIcon("resources/characters/chipSwimRight.png"));
-            imageMap.put('4', new ImageIcon("resources/characters/chipSwimLeft.png"));
-            imageMap.put('5', new ImageIcon("resources/characters/chipSwimForward.png"));
-            imageMap.put('6', new ImageIcon("resources/characters/chipSwim.png"));
-
-            //enemy 
-            imageMap.put('↑', new ImageIcon("resources/characters/monsterUp.png"));
-            imageMap.put('↓', new ImageIcon("resources/characters/monster.png")); //s for south
-            imageMap.put('←', new ImageIcon("resources/characters/monsterLeft.png"));
-            imageMap.put('→', new ImageIcon("resources/characters/monsterRight.png"));
-
-            //tiles
-            imageMap.put('#', new ImageIcon("resources/tiles/wall.png")); 
-            imageMap.put('.', new ImageIcon("resources/tiles/floor.png"));
-            imageMap.put('F', new ImageIcon("resources/tiles/fire.png"));
-            imageMap.put('W', new ImageIcon("resources/tiles/water.png"));
-            imageMap.put('E', new ImageIcon("resources/tiles/exitEnabled.png"));
-            imageMap.put('O', new ImageIcon("resources/tiles/teleporterUnlocked.png"));
-            imageMap.put('I', new ImageIcon("resources/tiles/ice.png"));
-
-
-            //items
-            imageMap.put('k', new ImageIcon("resources/items/redKey.png"));
-            imageMap.put('K', new ImageIcon("resources/items/blueKey.png"));
-            imageMap.put('B', new ImageIcon("resources/items/fireboots.png"));
-            imageMap.put('P', new ImageIcon("resources/items/flippers.png"));
-            imageMap.put('M', new ImageIcon("resources/items/Microchip.png"));
-            imageMap.put('T', new ImageIcon("resources/items/teleporterBoots.png"));
-
-            //doors
-            imageMap.put('d', new ImageIcon("resources/doors/redDoor.png"));
-            imageMap.put('D', new ImageIcon("resources/doors/blueDoor.png"));
-
-            //force floors
-            imageMap.put('^', new ImageIcon("resources/tiles/forceUp.png"));
-            imageMap.put('>', new ImageIcon("resources/tiles/forceRight.png"));
-            imageMap.put('<', new ImageIcon("resources/tiles/forceLeft.png"));
-            imageMap.put('v', new ImageIcon("resources/tiles/forceDown.png"));
-        } catch(Exception e){
-            System.err.println("Error loading images. Check file paths and image folder");
-            e.printStackTrace();
-            
-            JOptionPane.showMessageDialog(null, "Error loading game images.\n" + e.getMessage(), "Image Load Error", JOptionPane.ERROR_MESSAGE);
+        for (char symbol : SpriteAtlas.getSymbols()){
+            imageMap.put(symbol, createPlaceholder(symbol));
+        }
+
+        spriteLoad = SpriteAtlas.loadAsync(); //shown at the end of the constructor, once the components exist
+    }
+
+    /**
+     * Replaces the placeholders with the decoded sprites and redraws the board.
+     * 
+     * <p>
+     * precondition: called on the event dispatch thread
+     * postcondition: the image dictionary holds the loaded sprites and the board is redrawn with them
+     * </p>
+     * 
+     * @param loaded the decoded sprites by symbol.
+     */
+    private void showSprites(Map<Character, BufferedImage> loaded){
+        if (loaded.isEmpty()){
+            JOptionPane.showMessageDialog(null, "Error loading game images.\nCheck the resources folder.", "Image Load Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        for (Map.Entry<Character, BufferedImage> entry : loaded.entrySet()){
+            imageMap.put(entry.getKey(), new ImageIcon(entry.getValue()));
+        }
+        sprites.clear();
+        if (canvas != null){
+            canvas.reloadSprites();
         }
+        refreshMap();
+
+        System.out.printf("Startup: %d sprites ready after %d ms%n", loaded.size(), ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    /**
+     * Creates the flat colored square shown for a symbol until its sprite is loaded.
+     * 
+     * @param symbol the symbol.
+     * @return the placeholder icon.
+     */
+    private static ImageIcon createPlaceholder(char symbol){
+        Color color;
+        switch (symbol){
+            case '#': color = Color.DARK_GRAY; break;
+            case 'W': color = new Color(40, 90, 200); break;
+            case 'F': color = new Color(220, 90, 30); break;
+            case 'I': color = new Color(190, 230, 250); break;
+            case '.': color = Color.LIGHT_GRAY; break;
+            default: color = Color.GRAY; break;
+        }
+
+        BufferedImage image = new BufferedImage(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+        g.dispose();
+        return new ImageIcon(image);
+    }
+
+    /**
+     * Tells the simulation how many cells the board can show, rounding up so the cells are at most
+     * VIEW_CELL_SIZE pixels and the board is filled.
+     * 
+     * @param board the grid panel or the canvas.
+     */
+    private void updateViewSize(Component board){
+        if (board.getWidth() <= 0 || board.getHeight() <= 0){
+            return;
+        }
+        int viewRows = (board.getHeight() + VIEW_CELL_SIZE - 1) / VIEW_CELL_SIZE;
+        int viewCols = (board.getWidth() + VIEW_CELL_SIZE - 1) / VIEW_CELL_SIZE;
+        simulation.setViewSize(viewRows, viewCols);
     }
 
     /**
      * Redraws the game grid depending on the current map state including all items, the player, enemies, etc.
      * 
      * <p>
-     * precondition: game and map initialized
+     * precondition: the simulation is started
      * postcondition: gridPanel displays updated tiles , characters, items
      * </p>
      */
     public void refreshMap(){
-        char symbol = '.';
+        GameSnapshot snapshot = simulation.getLatest();
+        if (snapshot == null){
+            return; //resized before the simulation started, the first refresh comes right after
+        }
 
-        for (int y = 0; y < rows; y++){
-            for (int x = 0; x < cols; x++){
+        if (canvas != null){
+            canvas.show(snapshot);
+            canvas.repaintAll();
+        }
+        else {
+            if (snapshot.getHeight() != rows || snapshot.getWidth() != cols){
+                rows = snapshot.getHeight(); //the levels and views don't all have the same size
+                cols = snapshot.getWidth();
+                buildGrid();
+            }
+            iconSize = getIconSize();
+            shownSymbols = new char[rows * cols];
+            for (int x = 0; x < rows; x++){
+                for (int y = 0; y < cols; y++){
+                    refreshCell(snapshot, x, y);
+                }
+            }
+        }
+        shown = snapshot;
+        updateInfoPanel(snapshot);
+    }
 
-                boolean enemyHere = false;
+    /**
+     * Redraws only the cells that look different in the latest snapshot than in the one drawn before.
+     * 
+     * <p>
+     * Only the snapshot's dirty cells are looked at, the cells changed since the snapshot drawn before.
+     * Taking the latest snapshot hands the previous one back to the simulation, so what was drawn is
+     * compared with the symbols kept in shownSymbols rather than with the previous snapshot.
+     * When the view scrolls or the level changes every cell is dirty, and the labels that now show
+     * something else are the ones redrawn. Falls back to a full {@link #refreshMap()} when the grid has to be rebuilt for another
+     * number of cells or another icon size (the canvas handles both itself).
+     * </p>
+     */
+    public void refreshChangedCells(){
+        GameSnapshot snapshot = simulation.getLatest();
 
-                for (Enemy enemy : game.getEnemies()){
-                    if (enemy.getXPosition() == x && enemy.getYPosition() == y){
-                        symbol = enemy.getSpriteChar();
-                        enemyHere = true;
-                        break;
-                    }
-                }
+        if (shown == null || (canvas == null && (snapshot.getHeight() != rows || snapshot.getWidth() != cols
+                || getIconSize() != iconSize))){
+            refreshMap();
+            return;
+        }
 
-                if (!enemyHere){
-                    if (game.getPlayer().getXPosition() == x && game.getPlayer().getYPosition() == y){//is player here
-                        symbol =  game.getPlayer().getPlayerOrientation();
-                    }
-                    else if (game.getMap().getDoorAt(x, y) != null){ //is there a door here
-                        symbol = game.getMap().getDoorAt(x, y).getSymbol();
-                    }
-                    else if (game.getMap().getItemAt(x, y) != null && !game.getMap().getItemAt(x, y).getIsCollected()){
-                        symbol = game.getMap().getItemAt(x, y).getSymbol(); //is there an item here
-                    }
-                    else if (game.getMap().getTile(x, y) != null){
-                        symbol = game.getMap().getTile(x, y).getSymbol(); //is this a tile
-                    }
+        if (canvas != null){
+            canvas.show(snapshot);
+        }
+        else if (snapshot.isAllDirty()){
+            for (int x = 0; x < rows; x++){
+                for (int y = 0; y < cols; y++){
+                    refreshChangedCell(snapshot, x, y);
                 }
+            }
+        }
+        else {
+            for (int n = 0; n < snapshot.getDirtyCount(); n++){
+                refreshChangedCell(snapshot, snapshot.getDirtyX(n), snapshot.getDirtyY(n));
+            }
+        }
+        shown = snapshot;
+        updateInfoPanel(snapshot);
+    }
 
-                ImageIcon icon = imageMap.get(symbol); //store the image extracted from dictionary as icon
-                tiles[y][x].setIcon(icon); //use setIcon to paint image on current element
+    /**
+     * Redraws a single cell of the grid if it shows something else now.
+     * 
+     * @param snapshot the snapshot being displayed.
+     * @param x the row of the cell.
+     * @param y the column of the cell.
+     */
+    private void refreshChangedCell(GameSnapshot snapshot, int x, int y){
+        if (snapshot.symbolAt(x, y) != shownSymbols[x * cols + y]){
+            refreshCell(snapshot, x, y);
+        }
+    }
+
+    /**
+     * Redraws a single cell of the grid.
+     * 
+     * @param snapshot the snapshot being displayed.
+     * @param x the row of the cell.
+     * @param y the column of the cell.
+     */
+    private void refreshCell(GameSnapshot snapshot, int x, int y){
+        char symbol = snapshot.symbolAt(x, y);
+        ImageIcon icon = sprites.get(symbol, iconSize); //the image from the dictionary scaled to the cell
+        tiles[x][y].setIcon(icon); //use setIcon to paint image on current element
+        shownSymbols[x * cols + y] = symbol;
+    }
+
+    /**
+     * Fills the grid panel with one label per cell, rows by cols.
+     * 
+     * <p>
+     * postcondition: tiles[x][y] is the label of row x and column y
+     * </p>
+     */
+    private void buildGrid(){
+        gridPanel.removeAll();
+        gridPanel.setLayout(new GridLayout(rows, cols));
+        tiles = new JLabel[rows][cols];
+
+        // Each cell in the grid will hold one JLabel, added row by row
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < cols; y++) {
+
+                JLabel label = new JLabel();
+                label.setOpaque(true); // Make the label opaque so background color is visible
+
+                // Add a white border to each label for visual separation
+                label.setBorder(BorderFactory.createLineBorder(Color.WHITE));
+                label.setHorizontalAlignment(JLabel.CENTER);
+
+                tiles[x][y] = label;
+                gridPanel.add(label);
             }
         }
-        updateInfoPanel();
+        gridPanel.revalidate();
+    }
+
+    /**
+     * Returns the size the icons should have to fill a label of the grid.
+     * 
+     * @return icon size in pixels.
+     */
+    private int getIconSize(){
+        int cellSize = Math.min(gridPanel.getWidth() / cols, gridPanel.getHeight() / rows);
+        return Math.max(1, cellSize - 2); // minus the 1 pixel border on each side
     }
 
     /**
      * Updates the information panel that shows chips, boots, keys, and level num.
+     * 
+     * @param snapshot the snapshot being displayed.
      */
-    public void updateInfoPanel(){
-        Inventory inv = game.getPlayer().getInventory();
+    public void updateInfoPanel(GameSnapshot snapshot){
         String boots = "";
 
-        levelLabel.setText("Level " + game.getCurrentLevel().getLevelNumber());
-        chipsLabel.setText("Chips: " + game.getPlayer().getMicrochips() + "/" + game.getCurrentLevel().getRequiredChips());
+        levelLabel.setText("Level " + snapshot.getLevelNumber());
+        chipsLabel.setText("Chips: " + snapshot.getChips() + "/" + snapshot.getRequiredChips());
         
-        keysLabel.setText("Keys R: " + inv.getRedKeys() + " B: " + inv.getBlueKeys());
+        keysLabel.setText("Keys R: " + snapshot.getRedKeys() + " B: " + snapshot.getBlueKeys());
 
-        if (inv.hasBoots("flippers")){
+        if (snapshot.hasFlippers()){
             boots += "Flippers ";
         }
 
-        if (inv.hasBoots("fireboots")){
+        if (snapshot.hasFireBoots()){
             boots += "Fireboots ";
         }
 
-        if (inv.hasBoots("teleportboots")){
+        if (snapshot.hasTeleportBoots()){
             boots += "teleportboots";
         }
         
@@ -369,50 +632,70 @@ public class GUI {
      * Checks whether the player finished the level or died.
      * 
      * Then displays the appropriate messages and handles level transitions or even reset.
+     * The simulation keeps its own time while a dialog is open, but the level isn't running
+     * so nothing moves until the choice is posted back to it.
      * 
      * <p>
-     * Pre-condition: game is running  
+     * Pre-condition: called on the Swing thread
      * </p>
      * 
+     * @param snapshot the snapshot being displayed.
      */
-    public void checkGameState(){
+    public void checkGameState(GameSnapshot snapshot){
         int currentLevel, choice;
-        if (game.isLevelCompleted(game.getPlayer())){
-            gameTimer.stop();
+        HeadlessEngine.Status status = snapshot.getStatus();
 
-            currentLevel = game.getCurrentLevel().getLevelNumber();
-            if (currentLevel < 2){
-                choice = JOptionPane.showConfirmDialog(frame, "level " + currentLevel + " Complete! Proceed to next level?", "Level Complete!", JOptionPane.YES_NO_OPTION);
+        if (status == HeadlessEngine.Status.RUNNING){
+            awaitingResume = false;
+            return;
+        }
+        if (dialogOpen || awaitingResume){
+            return; //the dialog pumps events, so renders can arrive while it's showing
+        }
 
-                if (choice == JOptionPane.YES_OPTION){
-                    game.nextLevel();
-                    refreshMap();
-                    gameTimer.start();
-                } else {
-                    game.endGame();
-                    frame.dispose();
-                }
+        dialogOpen = true;
+        simulation.releaseKeys(); //the dialog takes the key releases
+        if (status == HeadlessEngine.Status.LEVEL_COMPLETE){
+            currentLevel = snapshot.getLevelNumber();
+            choice = JOptionPane.showConfirmDialog(frame, "level " + currentLevel + " Complete! Proceed to next level?", "Level Complete!", JOptionPane.YES_NO_OPTION);
+
+            if (choice == JOptionPane.YES_OPTION){
+                resume(engine -> engine.nextLevel());
             } else {
-                JOptionPane.showMessageDialog(frame, "Congratulations! You've completed all levels!", "Game Complete!", JOptionPane.INFORMATION_MESSAGE);
-                frame.dispose();
+                quit();
             }
         }
-
-        if (!game.isPlayerAlive()){
-            gameTimer.stop();
-
-
-
+        else if (status == HeadlessEngine.Status.GAME_COMPLETE){
+            JOptionPane.showMessageDialog(frame, "Congratulations! You've completed all levels!", "Game Complete!", JOptionPane.INFORMATION_MESSAGE);
+            frame.dispose();
+        }
+        else if (status == HeadlessEngine.Status.DEAD){
             choice = JOptionPane.showConfirmDialog(frame, "You died! Restart level?", "Game Over", JOptionPane.YES_NO_OPTION);
 
             if (choice == JOptionPane.YES_OPTION){
-                game.resetGame();
-                refreshMap();
-                gameTimer.start();
+                resume(engine -> engine.reset());
             } else {
-                game.endGame();
-                frame.dispose();
+                quit();
             }
         }
+        dialogOpen = false;
+    }
+
+    /**
+     * Posts the command chosen in a dialog to the simulation.
+     * 
+     * @param command what to do with the engine (next level or restart).
+     */
+    private void resume(Consumer<HeadlessEngine> command){
+        awaitingResume = true;
+        simulation.post(() -> command.accept(simulation.getEngine()));
+    }
+
+    /**
+     * Ends the game and closes the window.
+     */
+    private void quit(){
+        simulation.post(() -> simulation.getEngine().getGame().endGame());
+        frame.dispose();
     }
 }
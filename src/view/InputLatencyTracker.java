@@ -0,0 +1,100 @@
+package view;
+
+import engine.GameSnapshot;
+import engine.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures how long a key press takes to show up on screen.
+ *
+ * <p>
+ * The controller stamps each key press with System.nanoTime, the simulation carries the stamp of the
+ * last key it applied (and when the model finished applying it) in its snapshots, and the GUI hands every
+ * snapshot it draws to {@link #snapshotShown(GameSnapshot, BoardCanvas)}. The first time a new key press
+ * shows up, the time to the model update is recorded right away. The time to the screen is recorded once
+ * the frame that shows the player where the key put them has completed its paint. With the grid of labels
+ * that's the first frame of the snapshot: Swing queues its repaint when the labels are changed, so a task
+ * queued behind it runs once it's done. The canvas animates a step over the next tick, so it runs the task
+ * after the paint that draws the player on the new cell (see {@link BoardCanvas#whenMoveShown(Runnable)}).
+ * </p>
+ *
+ * <p>
+ * When the renderer skips snapshots, only the last key press of the skipped ones is measured.
+ * Only used on the Swing thread.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.1
+ */
+public class InputLatencyTracker {
+    private LatencyHistogram toModel; // key press to the model update
+    private LatencyHistogram toScreen; // key press to the completed paint
+    private long lastSequence;
+
+    /**
+     * Constructs a tracker with empty histograms.
+     */
+    public InputLatencyTracker(){
+        this.toModel = new LatencyHistogram(100_000, 10_000); // 0.1 ms buckets up to 1 s
+        this.toScreen = new LatencyHistogram(100_000, 10_000);
+    }
+
+    /**
+     * Records the latency of the key press shown by a snapshot, if it's a new one.
+     *
+     * <p>
+     * pre-condition: the components were already updated for the snapshot (so their repaint is queued)
+     * </p>
+     *
+     * @param snapshot the snapshot just drawn.
+     * @param canvas the canvas it was drawn on, null if it was drawn on the grid of labels.
+     */
+    public void snapshotShown(GameSnapshot snapshot, BoardCanvas canvas){
+        if (snapshot.getInputSequence() == lastSequence){
+            return;
+        }
+        lastSequence = snapshot.getInputSequence();
+
+        long pressed = snapshot.getInputNanos(); // the snapshot is reused later, so keep the values
+        toModel.record(snapshot.getInputAppliedNanos() - pressed);
+        Runnable shown = () -> toScreen.record(System.nanoTime() - pressed);
+        if (canvas != null){
+            canvas.whenMoveShown(shown);
+        }
+        else {
+            SwingUtilities.invokeLater(shown);
+        }
+    }
+
+    /**
+     * Returns a one line summary for the overlay.
+     *
+     * @return the summary.
+     */
+    public String getSummary(){
+        return String.format("key to screen: p50 %.1f  p99 %.1f  max %.1f ms (%d)   key to model: p50 %.1f ms",
+            toScreen.getPercentile(0.5) / 1e6, toScreen.getPercentile(0.99) / 1e6, toScreen.getMax() / 1e6,
+            toScreen.getCount(), toModel.getPercentile(0.5) / 1e6);
+    }
+
+    /**
+     * Writes both histograms to a file.
+     *
+     * @param file the file to write.
+     * @throws IOException if it can't be written.
+     */
+    public void dump(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")){
+            out.println("# key press to completed paint");
+            toScreen.print(out);
+            out.println();
+            out.println("# key press to model update");
+            toModel.print(out);
+        }
+    }
+}
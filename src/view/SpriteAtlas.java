@@ -0,0 +1,343 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the game sprites from one packed image and its index.
+ *
+ * <p>
+ * The atlas is {@code resources/sprites.png} with every sprite packed into it, and {@code resources/sprites.idx}
+ * giving the rectangle of each symbol, one line per sprite: {@code <symbol as hex code point> <x> <y> <width> <height> <name>}.
+ * Lines starting with '#' are comments. Both are read from the classpath so the game also runs from a jar.
+ * Decoding one PNG instead of 35 small ones avoids most of the per-file overhead of ImageIO.
+ * </p>
+ *
+ * <p>
+ * If the atlas isn't there (e.g. the resources were edited and the atlas wasn't packed again), the separate
+ * PNGs are decoded instead, in parallel on a thread pool.
+ * </p>
+ *
+ * <p>
+ * Packing the atlas (from src): java view.SpriteAtlas
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.0
+ */
+public class SpriteAtlas {
+    public static final String IMAGE_PATH = "resources/sprites.png";
+    public static final String INDEX_PATH = "resources/sprites.idx";
+
+    // the symbol of each sprite and the PNG it is packed from
+    private static final char[] SYMBOLS = {
+        //player
+        'u', 's', 'l', 'r', '1', '2', '3', '4', '5', '6',
+        //enemy
+        '↑', '↓', '←', '→',
+        //tiles
+        '#', '.', 'F', 'W', 'E', 'O', 'I',
+        //items
+        'k', 'K', 'B', 'P', 'M', 'T',
+        //doors
+        'd', 'D',
+        //force floors
+        '^', '>', '<', 'v'
+    };
+    private static final String[] PATHS = {
+        "resources/characters/chipForward.png",
+        "resources/characters/chipStanding.png",
+        "resources/characters/chipLeft.png",
+        "resources/characters/chipRight.png",
+        "resources/characters/drown.png",
+        "resources/characters/burn.png",
+        "resources/characters/chipSwimRight.png",
+        "resources/characters/chipSwimLeft.png",
+        "resources/characters/chipSwimForward.png",
+        "resources/characters/chipSwim.png",
+
+        "resources/characters/monsterUp.png",
+        "resources/characters/monster.png",
+        "resources/characters/monsterLeft.png",
+        "resources/characters/monsterRight.png",
+
+        "resources/tiles/wall.png",
+        "resources/tiles/tile.png",
+        "resources/tiles/fire.png",
+        "resources/tiles/water.png",
+        "resources/tiles/exitEnabled.png",
+        "resources/tiles/teleporterUnlocked.png",
+        "resources/tiles/ice.png",
+
+        "resources/items/redKey.png",
+        "resources/items/blueKey.png",
+        "resources/items/fireboots.png",
+        "resources/items/flippers.png",
+        "resources/items/microchip.png",
+        "resources/items/teleporterBoots.png",
+
+        "resources/doors/redDoor.png",
+        "resources/doors/blueDoor.png",
+
+        "resources/tiles/forceUp.png",
+        "resources/tiles/forceRight.png",
+        "resources/tiles/forceLeft.png",
+        "resources/tiles/forceDown.png"
+    };
+
+    private SpriteAtlas(){
+    }
+
+    /**
+     * Returns every symbol that has a sprite.
+     *
+     * @return copy of the symbols.
+     */
+    public static char[] getSymbols(){
+        return SYMBOLS.clone();
+    }
+
+    /**
+     * Starts loading the sprites on a background thread.
+     *
+     * <p>
+     * post-condition: the future completes with every sprite that could be decoded, by symbol.
+     * It never completes exceptionally, missing sprites are reported on System.err and left out.
+     * </p>
+     *
+     * @return the sprites once decoded.
+     */
+    public static CompletableFuture<Map<Character, BufferedImage>> loadAsync(){
+        return CompletableFuture.supplyAsync(SpriteAtlas::load);
+    }
+
+    /**
+     * Loads the sprites from the atlas, or from the separate PNGs if there's no atlas.
+     *
+     * @return the sprites by symbol.
+     */
+    public static Map<Character, BufferedImage> load(){
+        try {
+            Map<Character, BufferedImage> sprites = loadAtlas();
+            if (sprites != null){
+                return sprites;
+            }
+        } catch (IOException e){
+            System.err.println("Could not read the sprite atlas, loading the separate images: " + e.getMessage());
+        }
+        return loadSeparately();
+    }
+
+    /**
+     * Decodes the atlas and cuts it into sprites.
+     *
+     * @return the sprites by symbol, null if the atlas isn't on the classpath.
+     * @throws IOException if the atlas or its index can't be read.
+     */
+    public static Map<Character, BufferedImage> loadAtlas() throws IOException {
+        InputStream index = open(INDEX_PATH);
+        InputStream image = open(IMAGE_PATH);
+        if (index == null || image == null){
+            close(index);
+            close(image);
+            return null;
+        }
+
+        BufferedImage atlas;
+        try {
+            atlas = ImageIO.read(image);
+        } finally {
+            image.close();
+        }
+        if (atlas == null){
+            throw new IOException(IMAGE_PATH + " is not a supported image");
+        }
+
+        Map<Character, BufferedImage> sprites = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))){
+            String line;
+            while ((line = reader.readLine()) != null){
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                try {
+                    char symbol = (char) Integer.parseInt(parts[0], 16);
+                    int x = Integer.parseInt(parts[1]);
+                    int y = Integer.parseInt(parts[2]);
+                    int width = Integer.parseInt(parts[3]);
+                    int height = Integer.parseInt(parts[4]);
+                    sprites.put(symbol, atlas.getSubimage(x, y, width, height));
+                } catch (RuntimeException e){
+                    throw new IOException("Bad line in " + INDEX_PATH + ": " + line, e);
+                }
+            }
+        }
+        return sprites;
+    }
+
+    /**
+     * Decodes the separate PNGs in parallel.
+     *
+     * @return the sprites that could be decoded, by symbol.
+     */
+    public static Map<Character, BufferedImage> loadSeparately(){
+        int threads = Math.min(SYMBOLS.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<Character, BufferedImage> sprites = new HashMap<>();
+
+        try {
+            List<Future<BufferedImage>> decoded = new ArrayList<>(SYMBOLS.length);
+            for (int i = 0; i < SYMBOLS.length; i++){
+                String path = PATHS[i];
+                decoded.add(pool.submit(() -> read(path)));
+            }
+
+            for (int i = 0; i < SYMBOLS.length; i++){
+                try {
+                    BufferedImage sprite = decoded.get(i).get();
+                    if (sprite != null){
+                        sprites.put(SYMBOLS[i], sprite);
+                    }
+                    else {
+                        System.err.println("Missing image: " + PATHS[i]);
+                    }
+                } catch (Exception e){
+                    System.err.println("Could not load " + PATHS[i] + ": " + e);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return sprites;
+    }
+
+    /**
+     * Decodes one image from the classpath.
+     *
+     * @param path the resource path.
+     * @return the image, null if there is no such resource.
+     * @throws IOException if it can't be decoded.
+     */
+    private static BufferedImage read(String path) throws IOException {
+        InputStream in = open(path);
+        if (in == null){
+            return null;
+        }
+        try {
+            return ImageIO.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a resource from the classpath, falling back to the working directory when running from src.
+     *
+     * @param path the resource path.
+     * @return the stream, null if it doesn't exist.
+     * @throws IOException if the file exists but can't be opened.
+     */
+    private static InputStream open(String path) throws IOException {
+        InputStream in = SpriteAtlas.class.getResourceAsStream("/" + path);
+        if (in == null && new File(path).isFile()){
+            in = new FileInputStream(path);
+        }
+        return in;
+    }
+
+    private static void close(InputStream in) throws IOException {
+        if (in != null){
+            in.close();
+        }
+    }
+
+    /**
+     * Packs the separate PNGs into the atlas and writes its index.
+     *
+     * <p>
+     * The sprites are laid out in rows from the tallest to the shortest, wrapping at a width that keeps
+     * the atlas roughly square.
+     * </p>
+     *
+     * @param args unused.
+     * @throws IOException if the atlas can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<Character, BufferedImage> sprites = loadSeparately();
+        if (sprites.size() != SYMBOLS.length){
+            System.err.println("Some images are missing, not packing the atlas");
+            System.exit(1);
+        }
+
+        Integer[] order = new Integer[SYMBOLS.length];
+        long area = 0;
+        for (int i = 0; i < SYMBOLS.length; i++){
+            order[i] = i;
+            BufferedImage sprite = sprites.get(SYMBOLS[i]);
+            area += (long) sprite.getWidth() * sprite.getHeight();
+        }
+        Arrays.sort(order, (a, b) -> sprites.get(SYMBOLS[b]).getHeight() - sprites.get(SYMBOLS[a]).getHeight());
+
+        int maxWidth = (int) Math.ceil(Math.sqrt(area));
+        int[] xs = new int[SYMBOLS.length];
+        int[] ys = new int[SYMBOLS.length];
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        int atlasWidth = 0;
+        for (int i : order){
+            BufferedImage sprite = sprites.get(SYMBOLS[i]);
+            if (x > 0 && x + sprite.getWidth() > maxWidth){
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            xs[i] = x;
+            ys[i] = y;
+            x += sprite.getWidth();
+            rowHeight = Math.max(rowHeight, sprite.getHeight());
+            atlasWidth = Math.max(atlasWidth, x);
+        }
+
+        BufferedImage atlas = new BufferedImage(atlasWidth, y + rowHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        try (PrintWriter index = new PrintWriter(INDEX_PATH, "UTF-8")){
+            index.println("# symbol(hex) x y width height name -- generated by view.SpriteAtlas, do not edit");
+            for (int i = 0; i < SYMBOLS.length; i++){
+                BufferedImage sprite = sprites.get(SYMBOLS[i]);
+                g.drawImage(sprite, xs[i], ys[i], null);
+
+                String name = PATHS[i].substring(PATHS[i].lastIndexOf('/') + 1, PATHS[i].length() - ".png".length());
+                index.printf("%04x %d %d %d %d %s%n", (int) SYMBOLS[i], xs[i], ys[i], sprite.getWidth(), sprite.getHeight(), name);
+            }
+        }
+        g.dispose();
+        ImageIO.write(atlas, "png", new File(IMAGE_PATH));
+
+        System.out.printf("Packed %d sprites into %s (%dx%d)%n", SYMBOLS.length, IMAGE_PATH, atlas.getWidth(), atlas.getHeight());
+    }
+}
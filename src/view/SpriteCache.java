@@ -0,0 +1,174 @@
+package view;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Keeps the sprites scaled to the cell sizes the board is being drawn at.
+ *
+ * <p>
+ * Scaling a sprite every time it's painted would rescale every PNG on every frame. Instead each
+ * (symbol, cell size) pair is scaled once with high quality filtering and kept here, so painting
+ * is a plain copy no matter how big the window is. The cache is bounded and drops the least recently
+ * used sizes first, which matters when the window is being dragged through many sizes.
+ * </p>
+ *
+ * @author Melangelo Guanzon
+ * @version 1.0
+ */
+public class SpriteCache {
+    private static final int DEFAULT_CAPACITY = 256; // about 7 cell sizes worth of sprites
+
+    private Map<Character, ImageIcon> imageMap; // the original sprites
+    private LinkedHashMap<Long, ImageIcon> scaled; // access ordered, so the eldest entry is the least recently used
+    private GraphicsConfiguration config; // null when running headless
+
+    /**
+     * Constructs a cache with the default capacity.
+     *
+     * @param imageMap the original sprites for each symbol.
+     */
+    public SpriteCache(Map<Character, ImageIcon> imageMap){
+        this(imageMap, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a cache holding at most the given number of scaled sprites.
+     *
+     * @param imageMap the original sprites for each symbol.
+     * @param capacity the maximum number of scaled sprites kept.
+     */
+    public SpriteCache(Map<Character, ImageIcon> imageMap, int capacity){
+        this.imageMap = imageMap;
+        this.scaled = new LinkedHashMap<Long, ImageIcon>(capacity, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ImageIcon> eldest){
+                return size() > capacity;
+            }
+        };
+        this.config = GraphicsEnvironment.isHeadless() ? null
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * Returns the sprite of a symbol scaled to a square of the given size.
+     *
+     * <p>
+     * The same ImageIcon instance is returned for as long as it stays cached, so JLabels
+     * given the same icon again don't repaint.
+     * </p>
+     *
+     * @param symbol the symbol of the sprite.
+     * @param size the width and height in pixels.
+     * @return the scaled sprite, null if there's no image for the symbol.
+     */
+    public ImageIcon get(char symbol, int size){
+        ImageIcon original = imageMap.get(symbol);
+        if (original == null || original.getIconWidth() <= 0 || size <= 0){
+            return null;
+        }
+
+        long key = ((long) symbol << 32) | size;
+        ImageIcon icon = scaled.get(key);
+        if (icon == null){
+            icon = new ImageIcon(scale(original.getImage(), original.getIconWidth(), original.getIconHeight(), size));
+            scaled.put(key, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Returns the symbols that have a sprite.
+     *
+     * @return the set of symbols.
+     */
+    public Set<Character> getSymbols(){
+        return imageMap.keySet();
+    }
+
+    /**
+     * Drops every scaled sprite, done when the original sprites are replaced.
+     */
+    public void clear(){
+        scaled.clear();
+    }
+
+    /**
+     * Returns the number of scaled sprites currently cached.
+     *
+     * @return cached sprite count.
+     */
+    public int size(){
+        return scaled.size();
+    }
+
+    /**
+     * Scales an image to a square with good quality.
+     *
+     * <p>
+     * Shrinking is done in steps of at most half the size with bilinear filtering, which looks as good
+     * as an area average but is much faster. Growing is a single bicubic step.
+     * </p>
+     *
+     * @param source the original image.
+     * @param width the width of the original.
+     * @param height the height of the original.
+     * @param size the target size.
+     * @return the scaled image.
+     */
+    private BufferedImage scale(Image source, int width, int height, int size){
+        Image current = source;
+        int currentWidth = width;
+        int currentHeight = height;
+
+        do {
+            int nextWidth = Math.max(size, currentWidth / 2);
+            int nextHeight = Math.max(size, currentHeight / 2);
+            if (currentWidth <= size){
+                nextWidth = size;
+            }
+            if (currentHeight <= size){
+                nextHeight = size;
+            }
+
+            BufferedImage next = createImage(nextWidth, nextHeight);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                nextWidth > currentWidth ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            g.dispose();
+
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != size || currentHeight != size);
+
+        return (BufferedImage) current;
+    }
+
+    /**
+     * Creates a translucent image in the screen's format when there is a screen.
+     *
+     * @param width image width.
+     * @param height image height.
+     * @return the new image.
+     */
+    private BufferedImage createImage(int width, int height){
+        if (config != null){
+            return config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+}